@@ -104,3 +104,10 @@ source step_a107_add_permission_admin_access.sql;
 source step_a108_audit_dicom_type_and_dicom_data.sql;
 source step_a109_update_user_settings_table_constraints_and_add_usergroups_permissions.sql;
 source step_a110_update_operations_table_change_ope_for_to_enum.sql;
+source step_a111_add_lot_code_sequence.sql;
+source step_a112_add_patient_search_index.sql;
+source step_a113_add_admission_search_indexes.sql;
+source step_a114_add_admission_ward_indexes.sql;
+source step_a115_add_movement_monthly_totals.sql;
+source step_a116_add_patient_search_index_status.sql;
+source step_a117_add_lot_stock_snapshot.sql;
@@ -0,0 +1,8 @@
+-- Counter used to generate the codes of the automatic lots
+CREATE TABLE OH_MEDICALDSRLOT_SEQUENCE (
+  LTS_NAME varchar(20) NOT NULL,
+  LTS_NEXT_VALUE bigint NOT NULL,
+  PRIMARY KEY (LTS_NAME)
+) ENGINE = INNODB DEFAULT CHARACTER SET utf8;
+
+INSERT INTO OH_MEDICALDSRLOT_SEQUENCE (LTS_NAME, LTS_NEXT_VALUE) VALUES ('LOT_CODE', 1);
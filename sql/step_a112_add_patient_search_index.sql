@@ -0,0 +1,9 @@
+-- Search index of the patients: the three characters long grams of the searchable fields.
+-- The grams are lower case and without accents, as the utf8_general_ci collation of PSG_GRAM compares them.
+-- It is filled by the application at its first start (see PatientSearchIndexInitializer) and then kept up to date when the patients are saved.
+CREATE TABLE OH_PATIENT_SEARCH_GRAM (
+  PSG_GRAM varchar(3) NOT NULL,
+  PSG_PAT_ID int(11) NOT NULL,
+  PRIMARY KEY (PSG_GRAM, PSG_PAT_ID),
+  KEY IDX_PATIENT_SEARCH_GRAM_PAT_ID (PSG_PAT_ID)
+) ENGINE = INNODB DEFAULT CHARACTER SET utf8 COLLATE utf8_general_ci;
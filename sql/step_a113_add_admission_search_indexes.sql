@@ -0,0 +1,4 @@
+-- Indexes used by the admitted patients search: current admission lookup and admission/discharge date ranges
+CREATE INDEX IDX_ADMISSION_PAT_ID_IN ON OH_ADMISSION (ADM_PAT_ID, ADM_IN);
+CREATE INDEX IDX_ADMISSION_DATE_ADM ON OH_ADMISSION (ADM_DATE_ADM);
+CREATE INDEX IDX_ADMISSION_DATE_DIS ON OH_ADMISSION (ADM_DATE_DIS);
@@ -0,0 +1,3 @@
+-- Indexes used by the ward census: used beds and yearly progressive number per ward
+CREATE INDEX IDX_ADMISSION_WRD_ID_IN ON OH_ADMISSION (ADM_WRD_ID_A, ADM_IN, ADM_DELETED);
+CREATE INDEX IDX_ADMISSION_WRD_ID_DATE_ADM ON OH_ADMISSION (ADM_WRD_ID_A, ADM_DATE_ADM);
@@ -0,0 +1,16 @@
+-- Total quantity and number of stock movements per medical, ward, movement type and month, kept up to date with each stock movement
+CREATE TABLE OH_MEDICALDSRSTOCKMOV_MONTHLY (
+  MMM_MDSR_ID int(11) NOT NULL,
+  MMM_WRD_ID_A char(3) NOT NULL,
+  MMM_MMVT_ID_A varchar(10) NOT NULL,
+  MMM_PERIOD int(11) NOT NULL,
+  MMM_QTY bigint(20) NOT NULL,
+  MMM_COUNT int(11) NOT NULL,
+  PRIMARY KEY (MMM_MDSR_ID, MMM_WRD_ID_A, MMM_MMVT_ID_A, MMM_PERIOD),
+  KEY IDX_MEDICALDSRSTOCKMOV_MONTHLY_PERIOD (MMM_PERIOD)
+) ENGINE = INNODB DEFAULT CHARACTER SET utf8;
+
+INSERT INTO OH_MEDICALDSRSTOCKMOV_MONTHLY (MMM_MDSR_ID, MMM_WRD_ID_A, MMM_MMVT_ID_A, MMM_PERIOD, MMM_QTY, MMM_COUNT)
+  SELECT MMV_MDSR_ID, IFNULL(MMV_WRD_ID_A, ''), MMV_MMVT_ID_A, YEAR(MMV_DATE) * 100 + MONTH(MMV_DATE), SUM(MMV_QTY), COUNT(*)
+  FROM OH_MEDICALDSRSTOCKMOV
+  GROUP BY MMV_MDSR_ID, IFNULL(MMV_WRD_ID_A, ''), MMV_MMVT_ID_A, YEAR(MMV_DATE) * 100 + MONTH(MMV_DATE);
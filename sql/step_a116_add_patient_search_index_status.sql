@@ -0,0 +1,7 @@
+-- State of the patient search index (see step_a112), a single row.
+-- PSI_COMPLETE is set by the application once all the patients are indexed; until then the searches do not read OH_PATIENT_SEARCH_GRAM.
+CREATE TABLE OH_PATIENT_SEARCH_INDEX (
+  PSI_ID int(11) NOT NULL,
+  PSI_COMPLETE tinyint(1) NOT NULL DEFAULT 0,
+  PRIMARY KEY (PSI_ID)
+) ENGINE = INNODB;
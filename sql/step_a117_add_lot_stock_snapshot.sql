@@ -0,0 +1,20 @@
+-- Current quantity of each lot in the main store (empty ward code) and in each ward, kept up to date with each stock and ward movement
+CREATE TABLE OH_MEDICALDSRLOTSTOCK (
+  LST_MDSR_ID int(11) NOT NULL,
+  LST_LT_ID_A varchar(50) NOT NULL,
+  LST_WRD_ID_A char(3) NOT NULL,
+  LST_QTY double NOT NULL,
+  PRIMARY KEY (LST_MDSR_ID, LST_LT_ID_A, LST_WRD_ID_A),
+  KEY IDX_MEDICALDSRLOTSTOCK_LT_ID_A (LST_LT_ID_A)
+) ENGINE = INNODB DEFAULT CHARACTER SET utf8;
+
+INSERT INTO OH_MEDICALDSRLOTSTOCK (LST_MDSR_ID, LST_LT_ID_A, LST_WRD_ID_A, LST_QTY)
+  SELECT MMV_MDSR_ID, MMV_LT_ID_A, '', SUM(IF(MMVT_TYPE LIKE '+%', MMV_QTY, -MMV_QTY))
+  FROM OH_MEDICALDSRSTOCKMOV JOIN OH_MEDICALDSRSTOCKMOVTYPE ON MMV_MMVT_ID_A = MMVT_ID_A
+  WHERE MMV_LT_ID_A IS NOT NULL
+  GROUP BY MMV_MDSR_ID, MMV_LT_ID_A;
+
+INSERT INTO OH_MEDICALDSRLOTSTOCK (LST_MDSR_ID, LST_LT_ID_A, LST_WRD_ID_A, LST_QTY)
+  SELECT MDSRWRD_MDSR_ID, IFNULL(MDSRWRD_LT_ID_A, ''), MDSRWRD_WRD_ID_A, SUM(MDSRWRD_IN_QTI - MDSRWRD_OUT_QTI)
+  FROM OH_MEDICALDSRWARD
+  GROUP BY MDSRWRD_MDSR_ID, IFNULL(MDSRWRD_LT_ID_A, ''), MDSRWRD_WRD_ID_A;
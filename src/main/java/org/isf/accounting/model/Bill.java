@@ -32,6 +32,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
@@ -45,6 +48,18 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 @Entity
 @Table(name = "OH_BILLS")
+@NamedEntityGraph(name = Bill.GRAPH_LIST, attributeNodes = {
+		@NamedAttributeNode("list"), @NamedAttributeNode(value = "billPatient", subgraph = "patient"),
+		@NamedAttributeNode(value = "admission", subgraph = "admission")
+}, subgraphs = {
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")),
+		@NamedSubgraph(name = "admission", attributeNodes = {
+				@NamedAttributeNode("ward"), @NamedAttributeNode("admissionType"), @NamedAttributeNode("diseaseIn"),
+				@NamedAttributeNode("diseaseOut1"), @NamedAttributeNode("diseaseOut2"), @NamedAttributeNode("diseaseOut3"),
+				@NamedAttributeNode("disType"), @NamedAttributeNode("pregTreatmentType"), @NamedAttributeNode("deliveryType"),
+				@NamedAttributeNode("deliveryResult")
+		})
+})
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "BLL_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "BLL_CREATED_DATE", updatable = false))
@@ -53,6 +68,11 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @AttributeOverride(name = "lastModifiedDate", column = @Column(name = "BLL_LAST_MODIFIED_DATE"))
 public class Bill extends Auditable<String> implements Cloneable, Comparable<Bill> {
 
+	/**
+	 * Fetch plan of the bill lists: the price list, the patient and the admission with its associations are joined to the bills select.
+	 */
+	public static final String GRAPH_LIST = "Bill.list";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "BLL_ID")
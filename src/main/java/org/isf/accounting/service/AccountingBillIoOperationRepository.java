@@ -25,6 +25,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.isf.accounting.model.Bill;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -33,21 +35,28 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AccountingBillIoOperationRepository extends JpaRepository<Bill, Integer> {
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Bill> findByStatusOrderByDateDesc(String status);
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Bill> findByStatusAndBillPatientCodeOrderByDateDesc(String status, int patientId);
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Bill> findAllByOrderByDateDesc();
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Bill> findByBillPatientCode(int patientCode);
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.date >= :dateFrom and b.date < :dateTo")
 	List<Bill> findByDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.billPatient.id = :patientCode and b.date >= :dateFrom and b.date < :dateTo")
 	List<Bill> findByDateAndPatient(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo,
 					@Param("patientCode") Integer patientCode);
 
+	@EntityGraph(value = Bill.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.status='O' and b.billPatient.id = :patID")
 	List<Bill> findAllPendindBillsByBillPatient(@Param("patID") int patID);
 
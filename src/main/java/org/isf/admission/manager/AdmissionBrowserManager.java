@@ -25,6 +25,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.isf.admission.model.Admission;
 import org.isf.admission.model.AdmittedPatient;
@@ -91,6 +92,22 @@ public class AdmissionBrowserManager {
 		return ioOperations.getAdmittedPatients(searchTerms, admissionRange, dischargeRange);
 	}
 
+	/**
+	 * Returns a page of the patients based on the applied filters, ordered by descending patient code.
+	 *
+	 * @param admissionRange (two-dimensions array) the patient admission dates range, both {@code null} if no filter have to be applied.
+	 * @param dischargeRange (two-dimensions array) the patient admission dates range, both {@code null} if no filter have to be applied.
+	 * @param searchTerms the search terms to use for filter the patient list, {@code null} if no filter have to be applied.
+	 * @param page the page number, starting from 0.
+	 * @param size the page size.
+	 * @return the requested page of the filtered patient list.
+	 * @throws OHServiceException if an error occurs during database request.
+	 */
+	public List<AdmittedPatient> getAdmittedPatients(LocalDateTime[] admissionRange, LocalDateTime[] dischargeRange, String searchTerms, int page,
+					int size) throws OHServiceException {
+		return ioOperations.getAdmittedPatients(searchTerms, admissionRange, dischargeRange, page, size);
+	}
+
 	public AdmittedPatient loadAdmittedPatients(int patientId) {
 		return ioOperations.loadAdmittedPatient(patientId);
 	}
@@ -258,6 +275,16 @@ public class AdmissionBrowserManager {
 		return ioOperations.getUsedWardBed(wardId);
 	}
 
+	/**
+	 * Counts the number of used beds in every ward with at least one patient admitted.
+	 *
+	 * @return a map of the number of used beds keyed by ward id.
+	 * @throws OHServiceException
+	 */
+	public Map<String, Integer> getUsedWardBeds() throws OHServiceException {
+		return ioOperations.getUsedWardBeds();
+	}
+
 	/**
 	 * Deletes the patient photo.
 	 *
@@ -33,6 +33,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.SqlResultSetMapping;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
@@ -58,6 +61,20 @@ entities={
 		@EntityResult(entityClass=Patient.class),
 		@EntityResult(entityClass=Admission.class)}
 )
+@NamedEntityGraph(name = Admission.GRAPH_LIST, attributeNodes = {
+		@NamedAttributeNode("ward"), @NamedAttributeNode(value = "patient", subgraph = "patient"), @NamedAttributeNode("admissionType"),
+		@NamedAttributeNode("diseaseIn"), @NamedAttributeNode("diseaseOut1"), @NamedAttributeNode("diseaseOut2"), @NamedAttributeNode("diseaseOut3"),
+		@NamedAttributeNode("disType"), @NamedAttributeNode("pregTreatmentType"), @NamedAttributeNode("deliveryType"), @NamedAttributeNode("deliveryResult")
+}, subgraphs = @NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")))
+@NamedEntityGraph(name = Admission.GRAPH_DETAIL, attributeNodes = {
+		@NamedAttributeNode("ward"), @NamedAttributeNode(value = "patient", subgraph = "patient"), @NamedAttributeNode("admissionType"),
+		@NamedAttributeNode(value = "diseaseIn", subgraph = "disease"), @NamedAttributeNode(value = "diseaseOut1", subgraph = "disease"),
+		@NamedAttributeNode(value = "diseaseOut2", subgraph = "disease"), @NamedAttributeNode(value = "diseaseOut3", subgraph = "disease"),
+		@NamedAttributeNode("disType"), @NamedAttributeNode("pregTreatmentType"), @NamedAttributeNode("deliveryType"), @NamedAttributeNode("deliveryResult")
+}, subgraphs = {
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")),
+		@NamedSubgraph(name = "disease", attributeNodes = @NamedAttributeNode("diseaseType"))
+})
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name="createdBy", column=@Column(name="ADM_CREATED_BY", updatable = false))
 @AttributeOverride(name="createdDate", column=@Column(name="ADM_CREATED_DATE", updatable = false))
@@ -66,6 +83,16 @@ entities={
 @AttributeOverride(name="lastModifiedDate", column=@Column(name="ADM_LAST_MODIFIED_DATE"))
 public class Admission extends Auditable<String> implements Comparable<Admission> {
 
+	/**
+	 * Fetch plan of the admission lists: all the associations are joined to the admissions select.
+	 */
+	public static final String GRAPH_LIST = "Admission.list";
+
+	/**
+	 * Fetch plan of a single admission (detail view and print): the list plan plus the disease types.
+	 */
+	public static final String GRAPH_DETAIL = "Admission.detail";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "ADM_ID")
@@ -34,6 +34,9 @@ public interface AdmissionIoOperationRepositoryCustom {
 	List<AdmittedPatient> findPatientAdmissionsBySearchAndDateRanges(String searchTerms, LocalDateTime[] admissionRange, LocalDateTime[] dischargeRange)
 			throws OHServiceException;
 
+	List<AdmittedPatient> findPatientAdmissionsBySearchAndDateRanges(String searchTerms, LocalDateTime[] admissionRange, LocalDateTime[] dischargeRange,
+			int page, int size) throws OHServiceException;
+
 	class PatientAdmission {
 		/**
 		 * @see Patient#getCode()
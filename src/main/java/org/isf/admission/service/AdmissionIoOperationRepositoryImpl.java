@@ -23,7 +23,10 @@ package org.isf.admission.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -32,6 +35,8 @@ import jakarta.persistence.Query;
 import org.isf.admission.model.Admission;
 import org.isf.admission.model.AdmittedPatient;
 import org.isf.patient.model.Patient;
+import org.isf.patient.service.PatientSearchGramIoOperationRepository;
+import org.isf.patient.service.PatientSearchIndex;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.time.TimeTools;
 import org.springframework.transaction.annotation.Transactional;
@@ -39,88 +44,118 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class AdmissionIoOperationRepositoryImpl implements AdmissionIoOperationRepositoryCustom {
 
-	private static String nativeQueryTerms = "SELECT * from OH_PATIENT as p  "
-					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) ) as a on p.PAT_ID = a.ADM_PAT_ID "
-					+ " where ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )"
-					+ " and ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :param0 ) "
-					+ " order by p.PAT_ID desc";
+	/**
+	 * Patients with their current admission (the latest one still in progress, if any), looked up by primary key for each patient.
+	 */
+	private static final String NATIVE_QUERY_ADMITTED_PATIENTS = "SELECT p.*, a.* from OH_PATIENT as p "
+					+ " left join OH_ADMISSION as a on a.ADM_ID = (select max(c.ADM_ID) from OH_ADMISSION as c where c.ADM_PAT_ID = p.PAT_ID"
+					+ " and c.ADM_IN = 1 and ( (c.ADM_DELETED='N') or (c.ADM_DELETED is null ) ) ) ";
 
-	private static String nativeQueryRanges = "SELECT * from OH_PATIENT as p  "
-					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) ) as a on p.PAT_ID = a.ADM_PAT_ID "
-					+ " where (p.PAT_ID IN (SELECT ADM_PAT_ID from OH_ADMISSION where param1))"
-					+ " and ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :param0 ) "
-					+ " order by p.PAT_ID desc";
+	private static final String PATIENT_NOT_DELETED = " ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) ) ";
 
-	private static String nativeQueryCode = "SELECT * from OH_PATIENT as p  "
-					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) order by ADM_ID desc) as a on p.PAT_ID = a.ADM_PAT_ID "
-					+ " where p.PAT_ID = :param0 "
-					+ " and ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )";
+	private static final String PATIENT_MATCHES_TERMS = " ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :terms ) ";
 
-	private static final String YYYY_MM_DD = "yyyy-MM-dd";
+	/**
+	 * Patients having all the grams of the search terms in the patient search index: a necessary condition for {@link #PATIENT_MATCHES_TERMS}, as a
+	 * term never contains spaces and so is contained in a single indexed token.
+	 */
+	private static final String PATIENT_HAS_GRAMS = " p.PAT_ID in (select g.PSG_PAT_ID from OH_PATIENT_SEARCH_GRAM as g where g.PSG_GRAM in (:grams)"
+					+ " group by g.PSG_PAT_ID having count(*) = :gramCount) ";
+
+	private static final String ORDER_BY_PATIENT = " order by p.PAT_ID desc";
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	private final PatientSearchGramIoOperationRepository searchGramRepository;
+
+	public AdmissionIoOperationRepositoryImpl(PatientSearchGramIoOperationRepository searchGramRepository) {
+		this.searchGramRepository = searchGramRepository;
+	}
+
 	@Override
 	public List<AdmittedPatient> findPatientAdmissionsBySearchAndDateRanges(String searchTerms, LocalDateTime[] admissionRange,
 					LocalDateTime[] dischargeRange) throws OHServiceException {
+		return parseResultSet(createSearchQuery(searchTerms, admissionRange, dischargeRange));
+	}
+
+	@Override
+	public List<AdmittedPatient> findPatientAdmissionsBySearchAndDateRanges(String searchTerms, LocalDateTime[] admissionRange,
+					LocalDateTime[] dischargeRange, int page, int size) throws OHServiceException {
+		Query nativeQuery = createSearchQuery(searchTerms, admissionRange, dischargeRange);
+		nativeQuery.setFirstResult(page * size);
+		nativeQuery.setMaxResults(size);
+		return parseResultSet(nativeQuery);
+	}
+
+	/**
+	 * Builds the search query: the statement only depends on which filters are used, all the values are bound as parameters and date ranges are
+	 * applied to the stored date time values, so that the statement can be cached and the admission dates indexes can be used.
+	 */
+	private Query createSearchQuery(String searchTerms, LocalDateTime[] admissionRange, LocalDateTime[] dischargeRange) {
 		String[] terms = getTermsToSearch(searchTerms);
-		List<AdmittedPatient> admittedPatients = new ArrayList<>();
 		if (terms.length == 1) {
 			try {
 				int code = Integer.parseInt(terms[0]);
-				Query nativeQuery = this.entityManager.createNativeQuery(nativeQueryCode, "AdmittedPatient");
-				nativeQuery.setParameter("param0", code);
-
-				return parseResultSet(admittedPatients, nativeQuery);
-
+				Query nativeQuery = this.entityManager.createNativeQuery(NATIVE_QUERY_ADMITTED_PATIENTS
+								+ " where p.PAT_ID = :code and" + PATIENT_NOT_DELETED, "AdmittedPatient");
+				nativeQuery.setParameter("code", code);
+				return nativeQuery;
 			} catch (NumberFormatException nfe) {
 				// used to see if the search parameter is a patient code (number)
 			}
 		}
 
+		Map<String, Object> parameters = new HashMap<>();
+		StringBuilder sql = new StringBuilder(NATIVE_QUERY_ADMITTED_PATIENTS).append(" where ");
 		if ((admissionRange != null && (admissionRange[0] != null || admissionRange[1] != null)) ||
 						(dischargeRange != null && (dischargeRange[0] != null || dischargeRange[1] != null))) {
-			StringBuilder rangePredicate = new StringBuilder("( (ADM_DELETED='N') or (ADM_DELETED is null ) )");
+			sql.append(" exists (select r.ADM_ID from OH_ADMISSION as r where r.ADM_PAT_ID = p.PAT_ID")
+							.append(" and ( (r.ADM_DELETED='N') or (r.ADM_DELETED is null ) )");
 			if (admissionRange != null) {
-
-				if (admissionRange[0] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_ADM) >= '").append(TimeTools.formatDateTime(admissionRange[0], YYYY_MM_DD))
-									.append('\'');
-				}
-				if (admissionRange[1] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_ADM) <= '").append(TimeTools.formatDateTime(admissionRange[1], YYYY_MM_DD))
-									.append('\'');
-				}
+				appendDayRange(sql, parameters, "r.ADM_DATE_ADM", "admission", admissionRange);
 			}
 			if (dischargeRange != null) {
-
-				if (dischargeRange[0] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_DIS) >= '").append(TimeTools.formatDateTime(dischargeRange[0], YYYY_MM_DD))
-									.append('\'');
-				}
-				if (dischargeRange[1] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_DIS) <= '").append(TimeTools.formatDateTime(dischargeRange[1], YYYY_MM_DD))
-									.append('\'');
-				}
+				appendDayRange(sql, parameters, "r.ADM_DATE_DIS", "discharge", dischargeRange);
 			}
-			Query nativeQuery = this.entityManager.createNativeQuery(nativeQueryRanges.replace("param1", rangePredicate.toString()), "AdmittedPatient");
-			String paramTerms = like(terms);
-			nativeQuery.setParameter("param0", paramTerms);
-
-			return parseResultSet(admittedPatients, nativeQuery);
-
+			sql.append(" ) ");
 		} else {
+			sql.append(PATIENT_NOT_DELETED);
+		}
+		if (terms.length > 0) {
+			sql.append(" and ").append(PATIENT_MATCHES_TERMS);
+			parameters.put("terms", like(terms));
+			Set<String> grams = PatientSearchIndex.getGrams(terms);
+			if (!grams.isEmpty() && searchGramRepository.isComplete()) {
+				// narrows the patients scanned by the terms to the ones found in the search index
+				sql.append(" and ").append(PATIENT_HAS_GRAMS);
+				parameters.put("grams", grams);
+				parameters.put("gramCount", grams.size());
+			}
+		}
+		sql.append(ORDER_BY_PATIENT);
 
-			Query nativeQuery = this.entityManager.createNativeQuery(nativeQueryTerms, "AdmittedPatient");
-			String paramTerms = like(terms);
-			nativeQuery.setParameter("param0", paramTerms);
+		Query nativeQuery = this.entityManager.createNativeQuery(sql.toString(), "AdmittedPatient");
+		parameters.forEach(nativeQuery::setParameter);
+		return nativeQuery;
+	}
 
-			return parseResultSet(admittedPatients, nativeQuery);
+	/**
+	 * Appends the bounds of a range of days: from the beginning of the first day included, to the beginning of the day after the last one excluded.
+	 */
+	private void appendDayRange(StringBuilder sql, Map<String, Object> parameters, String column, String name, LocalDateTime[] range) {
+		if (range[0] != null) {
+			sql.append(" and ").append(column).append(" >= :").append(name).append("From");
+			parameters.put(name + "From", TimeTools.getBeginningOfDay(range[0]));
+		}
+		if (range[1] != null) {
+			sql.append(" and ").append(column).append(" < :").append(name).append("To");
+			parameters.put(name + "To", TimeTools.getBeginningOfNextDay(range[1]));
 		}
 	}
 
-	private List<AdmittedPatient> parseResultSet(List<AdmittedPatient> admittedPatients, Query nativeQuery) throws OHServiceException {
+	private List<AdmittedPatient> parseResultSet(Query nativeQuery) {
+		List<AdmittedPatient> admittedPatients = new ArrayList<>();
 		List<Object[]> results = nativeQuery.getResultList();
 		results.stream().forEach(resultRecord -> {
 			Patient patientRecord = (Patient) resultRecord[0];
@@ -28,7 +28,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Hibernate;
 import org.isf.admission.model.Admission;
@@ -111,6 +113,22 @@ public class AdmissionIoOperations {
 		return repository.findPatientAdmissionsBySearchAndDateRanges(searchTerms, admissionRange, dischargeRange);
 	}
 
+	/**
+	 * Returns a page of the patients based on the applied filters, ordered by descending patient code.
+	 *
+	 * @param admissionRange (two-dimensions array) the patient admission dates range, both {@code null} if no filter is to be applied.
+	 * @param dischargeRange (two-dimensions array) the patient discharge dates range, both {@code null} if no filter is to be applied.
+	 * @param searchTerms the search terms to use for filter the patient list, {@code null} if no filter is to be applied.
+	 * @param page the page number, starting from 0.
+	 * @param size the page size.
+	 * @return the requested page of the filtered patient list.
+	 * @throws OHServiceException if an error occurs during database request.
+	 */
+	public List<AdmittedPatient> getAdmittedPatients(String searchTerms, LocalDateTime[] admissionRange, LocalDateTime[] dischargeRange, int page,
+					int size) throws OHServiceException {
+		return repository.findPatientAdmissionsBySearchAndDateRanges(searchTerms, admissionRange, dischargeRange, page, size);
+	}
+
 	/**
 	 * Load patient together with the profile photo, or {@code null} if there is no patient with the given id
 	 */
@@ -239,9 +257,9 @@ public class AdmissionIoOperations {
 			last = now.with(lastDayOfYear()).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
 		}
 
-		List<Admission> admissions = repository.findAllWhereWardAndDates(wardId, first, last);
-		if (!admissions.isEmpty()) {
-			next = admissions.get(0).getYProg() + 1;
+		Integer maxYProg = repository.findMaxYProgWhereWardAndDates(wardId, first, last);
+		if (maxYProg != null) {
+			next = maxYProg + 1;
 		}
 
 		return next;
@@ -296,8 +314,21 @@ public class AdmissionIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the bed count.
 	 */
 	public int getUsedWardBed(String wardId) throws OHServiceException {
-		List<Admission> admissionList = repository.findAllWhereWardIn(wardId);
-		return admissionList.size();
+		return (int) repository.countAllWhereWardIn(wardId);
+	}
+
+	/**
+	 * Counts the number of used beds in every ward with at least one patient admitted.
+	 *
+	 * @return a map of the number of used beds keyed by ward id.
+	 * @throws OHServiceException if an error occurs retrieving the bed counts.
+	 */
+	public Map<String, Integer> getUsedWardBeds() throws OHServiceException {
+		Map<String, Integer> usedBeds = new HashMap<>();
+		for (Object[] row : repository.countAllAdmittedGroupByWard()) {
+			usedBeds.put((String) row[0], ((Number) row[1]).intValue());
+		}
+		return usedBeds;
 	}
 
 	/**
@@ -0,0 +1,263 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.dicom.manager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.isf.dicom.model.FileDicom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports a directory of DICOM (or JPEG) files.
+ * <p>
+ * The files are decoded and thumbnailed in parallel on a small pool of threads, while the calling thread saves them in batches through the
+ * configured {@link DicomManagerInterface}, so the storage is only ever accessed by one thread. At most {@code maxPendingFiles} files are being
+ * decoded or waiting to be saved at any time, which bounds the memory used by big series. A file that cannot be read or saved is reported to the
+ * {@link Listener} and does not stop the import of the others.
+ */
+public class DicomImportPipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DicomImportPipeline.class);
+
+	public static final int DEFAULT_DECODE_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+	public static final int DEFAULT_MAX_PENDING_FILES = 16;
+	public static final int DEFAULT_BATCH_SIZE = 8;
+
+	private static final AtomicInteger IMPORT_COUNT = new AtomicInteger();
+
+	/**
+	 * Receives the progress of an import, always on the thread that called
+	 * {@link DicomImportPipeline#importDirectory(FileDicom, File, int, Listener)}.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called each time a file has been saved, skipped or has failed.
+		 *
+		 * @param processed the number of files processed so far
+		 * @param total the number of files to import
+		 */
+		void fileProcessed(int processed, int total);
+
+		/**
+		 * Called when a file cannot be imported, before {@link #fileProcessed(int, int)}.
+		 *
+		 * @param file the file
+		 * @param exception the reason
+		 */
+		default void fileFailed(File file, Exception exception) {
+		}
+	}
+
+	private final int decodeThreads;
+	private final int maxPendingFiles;
+	private final int batchSize;
+
+	public DicomImportPipeline() {
+		this(DEFAULT_DECODE_THREADS, DEFAULT_MAX_PENDING_FILES, DEFAULT_BATCH_SIZE);
+	}
+
+	public DicomImportPipeline(int decodeThreads, int maxPendingFiles, int batchSize) {
+		this.decodeThreads = Math.max(1, decodeThreads);
+		this.maxPendingFiles = Math.max(this.decodeThreads, maxPendingFiles);
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Imports all the files of a directory and of its subdirectories.
+	 *
+	 * @param template the values set by the user (type, series, description...), copied into each file
+	 * @param directory the directory
+	 * @param patient the patient code
+	 * @param listener the progress listener
+	 * @return the number of files saved
+	 * @throws InterruptedException if the calling thread is interrupted, in which case the import stops
+	 */
+	public int importDirectory(FileDicom template, File directory, int patient, Listener listener) throws InterruptedException {
+		List<File> files = new ArrayList<>();
+		scan(directory, files);
+		if (files.isEmpty()) {
+			return 0;
+		}
+		Import dicomImport = new Import(files.size(), listener);
+
+		int importNumber = IMPORT_COUNT.incrementAndGet();
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(decodeThreads, files.size()), runnable -> {
+			Thread thread = new Thread(runnable, "dicom-import-" + importNumber + '-' + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			CompletionService<DecodedFile> decoder = new ExecutorCompletionService<>(pool);
+			List<DecodedFile> batch = new ArrayList<>(batchSize);
+			int submitted = 0;
+			int completed = 0;
+			while (completed < files.size()) {
+				while (submitted < files.size() && submitted - completed < maxPendingFiles) {
+					File file = files.get(submitted++);
+					decoder.submit(() -> decode(template, file, patient));
+				}
+				DecodedFile decoded = takeDecoded(decoder);
+				completed++;
+				if (decoded.failure != null) {
+					dicomImport.failed(decoded.file, decoded.failure);
+				} else if (decoded.detail == null) {
+					dicomImport.processed();
+				} else {
+					batch.add(decoded);
+					if (batch.size() >= batchSize) {
+						dicomImport.save(batch);
+						batch.clear();
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				dicomImport.save(batch);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return dicomImport.saved;
+	}
+
+	private static void scan(File directory, List<File> files) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children, Comparator.comparing(File::getName));
+		for (File child : children) {
+			if (child.isDirectory()) {
+				scan(child, files);
+			} else {
+				files.add(child);
+			}
+		}
+	}
+
+	private static DecodedFile takeDecoded(CompletionService<DecodedFile> decoder) throws InterruptedException {
+		try {
+			return decoder.take().get();
+		} catch (ExecutionException e) {
+			// decode() catches exceptions, so only errors get here
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static DecodedFile decode(FileDicom template, File file, int patient) {
+		FileDicom detail = copy(template);
+		try {
+			return new DecodedFile(file, SourceFiles.readDicom(detail, file, patient) ? detail : null, null);
+		} catch (Exception e) {
+			return new DecodedFile(file, null, e);
+		}
+	}
+
+	private static FileDicom copy(FileDicom template) {
+		return new FileDicom(template.getPatId(), null, template.getIdFile(), template.getFileName(), template.getDicomAccessionNumber(),
+				template.getDicomInstitutionName(), template.getDicomPatientID(), template.getDicomPatientName(), template.getDicomPatientAddress(),
+				template.getDicomPatientAge(), template.getDicomPatientSex(), template.getDicomPatientBirthDate(), template.getDicomStudyId(),
+				template.getDicomStudyDate(), template.getDicomStudyDescription(), template.getDicomSeriesUID(), template.getDicomSeriesInstanceUID(),
+				template.getDicomSeriesNumber(), template.getDicomSeriesDescriptionCodeSequence(), template.getDicomSeriesDate(),
+				template.getDicomSeriesDescription(), template.getDicomInstanceUID(), template.getModality(), template.getDicomThumbnail(),
+				template.getDicomType());
+	}
+
+	private static class DecodedFile {
+
+		private final File file;
+		private final FileDicom detail;
+		private final Exception failure;
+
+		DecodedFile(File file, FileDicom detail, Exception failure) {
+			this.file = file;
+			this.detail = detail;
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * The progress of one import, only used by the calling thread.
+	 */
+	private static class Import {
+
+		private final int total;
+		private final Listener listener;
+		private int processed;
+		private int saved;
+
+		Import(int total, Listener listener) {
+			this.total = total;
+			this.listener = listener;
+		}
+
+		void save(List<DecodedFile> batch) {
+			List<FileDicom> details = new ArrayList<>(batch.size());
+			for (DecodedFile decoded : batch) {
+				details.add(decoded.detail);
+			}
+			try {
+				SourceFiles.saveDicoms(details);
+			} catch (Exception e) {
+				LOGGER.debug("Batch of {} DICOM files not saved, saving them one by one", batch.size(), e);
+				for (DecodedFile decoded : batch) {
+					try {
+						SourceFiles.saveDicom(decoded.detail);
+					} catch (Exception ex) {
+						failed(decoded.file, ex);
+						continue;
+					}
+					saved++;
+					processed();
+				}
+				return;
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				saved++;
+				processed();
+			}
+		}
+
+		void failed(File file, Exception exception) {
+			LOGGER.error("Unable to import DICOM file '{}': {}", file, exception.getMessage());
+			listener.fileFailed(file, exception);
+			processed();
+		}
+
+		void processed() {
+			processed++;
+			listener.fileProcessed(processed, total);
+		}
+	}
+}
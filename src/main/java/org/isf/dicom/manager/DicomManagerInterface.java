@@ -21,6 +21,8 @@
  */
 package org.isf.dicom.manager;
 
+import java.util.List;
+
 import org.isf.dicom.model.FileDicom;
 import org.isf.utils.exception.OHServiceException;
 
@@ -108,4 +110,16 @@ public interface DicomManagerInterface {
 	 * @throws OHServiceException
 	 */
 	void saveFile(FileDicom dicom) throws OHServiceException;
+
+	/**
+	 * Save a batch of DICOM files and metadata
+	 *
+	 * @param dicoms
+	 * @throws OHServiceException
+	 */
+	default void saveFiles(List<FileDicom> dicoms) throws OHServiceException {
+		for (FileDicom dicom : dicoms) {
+			saveFile(dicom);
+		}
+	}
 }
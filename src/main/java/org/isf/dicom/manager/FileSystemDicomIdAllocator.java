@@ -0,0 +1,152 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.dicom.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates the ids of the files stored by {@link FileSystemDicomManager}, emulating an SQL sequence.
+ * <p>
+ * The ids are reserved by blocks: the sequence file only records the last reserved id, and is updated once per block under a file lock, so
+ * that several processes sharing the storage never get the same id. Within a block ids are handed out from memory without locking. The
+ * sequence file is replaced atomically, so a crash can only lose the unused ids of a block, never give an id twice.
+ * <p>
+ * The sequence file keeps the format used so far (a serialized long), so existing storages go on from their last id.
+ */
+class FileSystemDicomIdAllocator {
+
+	static final int DEFAULT_BLOCK_SIZE = 1000;
+
+	/**
+	 * A JVM cannot hold two locks on the same file, so the reservations of all the allocators of the process are serialized here first.
+	 */
+	private static final Object RESERVATION_LOCK = new Object();
+
+	private final Path sequenceFile;
+	private final Path lockFile;
+	private final Path tmpFile;
+	private final int blockSize;
+
+	private volatile Block block = new Block(1, 0);
+
+	FileSystemDicomIdAllocator(File sequenceFile) {
+		this(sequenceFile, DEFAULT_BLOCK_SIZE);
+	}
+
+	FileSystemDicomIdAllocator(File sequenceFile, int blockSize) {
+		this.sequenceFile = sequenceFile.toPath();
+		this.lockFile = new File(sequenceFile.getPath() + ".lock").toPath();
+		this.tmpFile = new File(sequenceFile.getPath() + ".tmp").toPath();
+		this.blockSize = Math.max(1, blockSize);
+	}
+
+	/**
+	 * @return a new id, never returned before by any allocator of the same sequence file
+	 * @throws IOException if a new block cannot be reserved
+	 */
+	long nextId() throws IOException {
+		while (true) {
+			Block current = block;
+			long id = current.next.getAndIncrement();
+			if (id <= current.last) {
+				return id;
+			}
+			synchronized (this) {
+				if (block == current) {
+					block = reserveBlock();
+				}
+			}
+		}
+	}
+
+	private Block reserveBlock() throws IOException {
+		synchronized (RESERVATION_LOCK) {
+			try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					FileLock lock = lockChannel.lock()) {
+				long lastReserved = readLastReserved();
+				long newLastReserved = lastReserved + blockSize;
+				writeLastReserved(newLastReserved);
+				return new Block(lastReserved + 1, newLastReserved);
+			}
+		}
+	}
+
+	private long readLastReserved() throws IOException {
+		if (!Files.exists(sequenceFile)) {
+			return 0;
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Files.readAllBytes(sequenceFile)))) {
+			return ois.readLong();
+		} catch (IOException e) {
+			// never start again from 0: that would overwrite the files already stored
+			throw new IOException("Unreadable DICOM sequence file " + sequenceFile, e);
+		}
+	}
+
+	private void writeLastReserved(long lastReserved) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeLong(lastReserved);
+		}
+		try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		try {
+			Files.move(tmpFile, sequenceFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpFile, sequenceFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * A range of reserved ids, {@code next} being the next one to hand out.
+	 */
+	private static class Block {
+
+		private final AtomicLong next;
+		private final long last;
+
+		Block(long first, long last) {
+			this.next = new AtomicLong(first);
+			this.last = last;
+		}
+	}
+}
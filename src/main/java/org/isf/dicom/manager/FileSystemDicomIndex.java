@@ -0,0 +1,381 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.dicom.manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk index of the DICOM files of a patient stored by {@link FileSystemDicomManager}.
+ * <p>
+ * For each series it keeps the id and instance UID of every file, plus the metadata and the thumbnail of its first file. This is all the
+ * patient's series list needs, so it is loaded by reading one file instead of listing every series folder and parsing a {@code .properties}
+ * and a {@code .thumn} file per series. The index is updated by {@code saveFile}, {@code saveFiles} and {@code deleteSeries}; when it is missing or unreadable it
+ * is rebuilt from the folders, so deleting it is enough to resynchronize it.
+ * <p>
+ * Several processes may share the same storage folder, so every load-modify-save of the index, and every rebuild, is done while holding a
+ * lock on the {@code dicom.index.lock} file of the patient, see {@link #update(File, Update)}.
+ */
+class FileSystemDicomIndex {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemDicomIndex.class);
+
+	static final String FILE_NAME = "dicom.index";
+
+	private static final String LOCK_FILE_NAME = FILE_NAME + ".lock";
+
+	/**
+	 * A JVM cannot hold two locks on the same file, so the updates of all the indexes of the process are serialized here first.
+	 */
+	private static final Object UPDATE_LOCK = new Object();
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final File patientDir;
+	private final File file;
+	private final SortedMap<String, Series> seriesByNumber = new TreeMap<>();
+	private boolean modified;
+
+	private FileSystemDicomIndex(File patientDir) {
+		this.patientDir = patientDir;
+		this.file = new File(patientDir, FILE_NAME);
+	}
+
+	/**
+	 * A change to the index of a patient, applied by {@link #update(File, Update)}.
+	 */
+	interface Update {
+
+		void apply(FileSystemDicomIndex index) throws IOException;
+	}
+
+	/**
+	 * Reads the index of a patient, rebuilding it from the folders if it is missing or unreadable.
+	 * <p>
+	 * The index is always replaced atomically, so reading it needs no lock; only a rebuild is done under the lock.
+	 *
+	 * @param patientDir the patient folder
+	 * @return the index
+	 * @throws IOException if the folders cannot be read
+	 */
+	static FileSystemDicomIndex load(File patientDir) throws IOException {
+		FileSystemDicomIndex index = new FileSystemDicomIndex(patientDir);
+		if (index.file.isFile()) {
+			try {
+				index.read();
+				return index;
+			} catch (IOException exception) {
+				LOGGER.warn("Unreadable DICOM index {}, rebuilding it: {}", index.file, exception.getMessage());
+			}
+		}
+		return withLock(patientDir, () -> readOrRebuild(patientDir));
+	}
+
+	/**
+	 * Reads the index of a patient and applies a change to it, holding the lock of the patient so that no other thread or process changes
+	 * the index in between.
+	 *
+	 * @param patientDir the patient folder
+	 * @param update the change, made through {@link #add} or {@link #removeSeries}; the index is saved once afterwards, if it changed
+	 * @throws IOException if the index cannot be read or written
+	 */
+	static void update(File patientDir, Update update) throws IOException {
+		withLock(patientDir, () -> {
+			FileSystemDicomIndex index = readOrRebuild(patientDir);
+			update.apply(index);
+			if (index.modified) {
+				index.save();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Rebuilds the index of a patient from the folders, discarding the current one.
+	 *
+	 * @param patientDir the patient folder
+	 * @throws IOException if the folders cannot be read or the index cannot be written
+	 */
+	static void rebuild(File patientDir) throws IOException {
+		withLock(patientDir, () -> {
+			FileSystemDicomIndex index = new FileSystemDicomIndex(patientDir);
+			index.rebuild();
+			index.save();
+			return index;
+		});
+	}
+
+	private static FileSystemDicomIndex readOrRebuild(File patientDir) throws IOException {
+		FileSystemDicomIndex index = new FileSystemDicomIndex(patientDir);
+		if (index.file.isFile()) {
+			try {
+				index.read();
+				return index;
+			} catch (IOException exception) {
+				LOGGER.warn("Unreadable DICOM index {}, rebuilding it: {}", index.file, exception.getMessage());
+				index.seriesByNumber.clear();
+			}
+		}
+		index.rebuild();
+		index.save();
+		return index;
+	}
+
+	private interface LockedAction<T> {
+
+		T run() throws IOException;
+	}
+
+	private static <T> T withLock(File patientDir, LockedAction<T> action) throws IOException {
+		synchronized (UPDATE_LOCK) {
+			try (FileChannel lockChannel = FileChannel.open(new File(patientDir, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+					FileLock lock = lockChannel.lock()) {
+				return action.run();
+			}
+		}
+	}
+
+	Collection<Series> getSeries() {
+		return seriesByNumber.values();
+	}
+
+	Series getSeries(String seriesNumber) {
+		return seriesByNumber.get(seriesNumber);
+	}
+
+	/**
+	 * Adds a file to the index. Only to be called from an {@link #update(File, Update)}, which saves the index.
+	 *
+	 * @param seriesNumber the series of the file
+	 * @param idFile the id of the file
+	 * @param instanceUID the instance UID of the file
+	 * @param metadata the content of its {@code .properties} file
+	 * @param thumbnail the content of its {@code .thumn} file
+	 */
+	void add(String seriesNumber, long idFile, String instanceUID, Properties metadata, byte[] thumbnail) {
+		seriesByNumber.computeIfAbsent(seriesNumber, Series::new).add(idFile, instanceUID, metadata, thumbnail);
+		modified = true;
+	}
+
+	/**
+	 * Removes a series from the index. Only to be called from an {@link #update(File, Update)}, which saves the index.
+	 *
+	 * @param seriesNumber the series
+	 */
+	void removeSeries(String seriesNumber) {
+		if (seriesByNumber.remove(seriesNumber) != null) {
+			modified = true;
+		}
+	}
+
+	private void rebuild() throws IOException {
+		File[] seriesDirs = patientDir.listFiles(File::isDirectory);
+		if (seriesDirs == null) {
+			return;
+		}
+		for (File seriesDir : seriesDirs) {
+			Series series = new Series(seriesDir.getName());
+			File[] propertiesFiles = seriesDir.listFiles((dir, name) -> name.endsWith(".properties"));
+			for (File propertiesFile : propertiesFiles == null ? new File[0] : propertiesFiles) {
+				String name = propertiesFile.getName();
+				long idFile;
+				try {
+					idFile = Long.parseLong(name.substring(0, name.indexOf('.')));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				Properties metadata = new Properties();
+				try (FileReader fr = new FileReader(propertiesFile)) {
+					metadata.load(fr);
+				}
+				series.instances.put(idFile, metadata.getProperty("dicomInstanceUID"));
+				if (series.instances.firstKey() == idFile) {
+					series.firstMetadata = metadata;
+				}
+			}
+			if (!series.instances.isEmpty()) {
+				File thumbnail = new File(seriesDir, series.instances.firstKey() + ".thumn");
+				series.firstThumbnail = thumbnail.isFile() ? Files.readAllBytes(thumbnail.toPath()) : null;
+				seriesByNumber.put(series.number, series);
+			}
+		}
+	}
+
+	private void read() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unknown format");
+			}
+			int seriesCount = in.readInt();
+			for (int i = 0; i < seriesCount; i++) {
+				Series series = new Series(readString(in));
+				int instancesCount = in.readInt();
+				for (int j = 0; j < instancesCount; j++) {
+					series.instances.put(in.readLong(), readString(in));
+				}
+				int metadataCount = in.readInt();
+				series.firstMetadata = new Properties();
+				for (int j = 0; j < metadataCount; j++) {
+					series.firstMetadata.setProperty(readString(in), readString(in));
+				}
+				int thumbnailLength = in.readInt();
+				if (thumbnailLength >= 0) {
+					series.firstThumbnail = new byte[thumbnailLength];
+					in.readFully(series.firstThumbnail);
+				}
+				seriesByNumber.put(series.number, series);
+			}
+		}
+	}
+
+	/**
+	 * Writes the index in a temporary file first, so that it is never seen half written.
+	 */
+	private void save() throws IOException {
+		File tmp = new File(patientDir, FILE_NAME + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(seriesByNumber.size());
+			for (Series series : seriesByNumber.values()) {
+				writeString(out, series.number);
+				out.writeInt(series.instances.size());
+				for (Map.Entry<Long, String> instance : series.instances.entrySet()) {
+					out.writeLong(instance.getKey());
+					writeString(out, instance.getValue());
+				}
+				out.writeInt(series.firstMetadata.size());
+				for (String key : series.firstMetadata.stringPropertyNames()) {
+					writeString(out, key);
+					writeString(out, series.firstMetadata.getProperty(key));
+				}
+				if (series.firstThumbnail == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(series.firstThumbnail.length);
+					out.write(series.firstThumbnail);
+				}
+			}
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The files of a series.
+	 */
+	static class Series {
+
+		private final String number;
+		private final SortedMap<Long, String> instances = new TreeMap<>();
+		private Properties firstMetadata = new Properties();
+		private byte[] firstThumbnail;
+
+		Series(String number) {
+			this.number = number;
+		}
+
+		private void add(long idFile, String instanceUID, Properties metadata, byte[] thumbnail) {
+			instances.put(idFile, instanceUID);
+			if (instances.firstKey() == idFile) {
+				firstMetadata = metadata;
+				firstThumbnail = thumbnail;
+			}
+		}
+
+		String getNumber() {
+			return number;
+		}
+
+		/**
+		 * @return the ids of the files, in ascending order
+		 */
+		Long[] getIdFiles() {
+			return instances.keySet().toArray(new Long[0]);
+		}
+
+		int getFramesCount() {
+			return instances.size();
+		}
+
+		boolean containsInstance(String instanceUID) {
+			return instances.containsValue(instanceUID);
+		}
+
+		/**
+		 * @return the content of the {@code .properties} file of the first file
+		 */
+		Properties getFirstMetadata() {
+			return firstMetadata;
+		}
+
+		/**
+		 * @return the content of the {@code .thumn} file of the first file, or {@code null}
+		 */
+		byte[] getFirstThumbnail() {
+			return firstThumbnail;
+		}
+	}
+}
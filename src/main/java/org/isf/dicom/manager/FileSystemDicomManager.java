@@ -22,33 +22,34 @@
 package org.isf.dicom.manager;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Vector;
 
 import javax.sql.rowset.serial.SerialBlob;
-import javax.sql.rowset.serial.SerialException;
 
 import org.isf.dicom.model.DicomData;
 import org.isf.dicom.model.FileDicom;
 import org.isf.generaldata.MessageBundle;
+import org.isf.utils.db.FileBlob;
 import org.isf.utils.exception.OHDicomException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
@@ -77,7 +78,7 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 	 * Root dir for data storage
 	 */
 	private File dir;
-	private FilterSerieDetail dsf = new FilterSerieDetail();
+	private volatile FileSystemDicomIdAllocator idAllocator;
 
 	/**
 	 * Constructor
@@ -99,6 +100,7 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 	 */
 	public void setDir(Properties externalPrp) {
 		this.dir = new File(externalPrp.getProperty("dicom.storage.filesystem"));
+		this.idAllocator = null;
 	}
 
 	/**
@@ -116,29 +118,8 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 			if (seriesNumber == null || seriesNumber.trim().isEmpty() || seriesNumber.equalsIgnoreCase("null")) {
 				return null;
 			}
-			File df = getSerieDir(patientID, seriesNumber, false);
-
-			File[] files = df.listFiles(dsf);
-
-			long[] _longs = new long[files.length];
-
-			for (int i = 0; i < _longs.length; i++) {
-
-				try {
-					_longs[i] = Long.parseLong(files[i].getName().substring(0, files[i].getName().indexOf('.')));
-				} catch (Exception e) {
-				}
-			}
-
-			Arrays.sort(_longs);
-
-			Long[] _Longs = new Long[_longs.length];
-
-			for (int i = 0; i < _Longs.length; i++) {
-				_Longs[i] = _longs[i];
-			}
-
-			return _Longs;
+			FileSystemDicomIndex.Series series = loadIndex(patientID).getSeries(seriesNumber);
+			return series == null ? new Long[0] : series.getIdFiles();
 		} catch (Exception exception) {
 			throw new OHDicomException(exception,
 			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
@@ -170,6 +151,7 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 			if (!deleteFolder.delete()) {
 				throw new OHDicomException(new OHExceptionMessage("File deletion for " + deleteFolder.getName() + " failed."));
 			}
+			FileSystemDicomIndex.update(getPatientDir(patientId), index -> index.removeSeries(seriesNumber));
 
 		} catch (Exception exception) {
 			throw new OHDicomException(exception,
@@ -223,17 +205,14 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 	@Override
 	public FileDicom[] loadPatientFiles(int patientId) throws OHDicomException {
 		try {
-			File df = getPatientDir(patientId);
-			File[] series = df.listFiles();
-			FileDicom[] db = new FileDicom[series.length];
-
-			for (int i = 0; i < series.length; i++) {
-				long idFile = getFirst(series[i]);
-				db[i] = loadMetadata(idFile, patientId, series[i].getName());
+			List<FileDicom> db = new ArrayList<>();
+			for (FileSystemDicomIndex.Series series : loadIndex(patientId).getSeries()) {
+				FileDicom fileDicom = loadMetadata(series);
+				if (fileDicom != null) {
+					db.add(fileDicom);
+				}
 			}
-
-			db = compact(db);
-			return db;
+			return compact(db);
 		} catch (Exception exception) {
 			throw new OHDicomException(exception,
 			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
@@ -252,84 +231,140 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 			return;
 		}
 		try {
-			int patId = dicom.getPatId();
-			String seriesNumber = dicom.getDicomSeriesNumber();
-			String dicomInstanceUID = dicom.getDicomInstanceUID();
+			IndexEntry entry = writeFile(dicom);
+			FileSystemDicomIndex.update(getPatientDir(dicom.getPatId()), entry::addTo);
+		} catch (Exception exception) {
+			throw new OHDicomException(exception,
+			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
+		}
+	}
 
-			// some times this number could be null, it's wrong, but I add
-			// line to avoid exception
-			if (seriesNumber == null || seriesNumber.trim().isEmpty() || seriesNumber.equalsIgnoreCase("null")) {
-				seriesNumber = SourceFiles.generateSeriesNumber(patId);
-				dicom.setDicomSeriesNumber(seriesNumber);
-				dicom.setDicomSeriesInstanceUID("<org_root>."+seriesNumber);
+	/**
+	 * Save a batch of DICOM files and metadata, updating the index of each patient once for the whole batch
+	 *
+	 * @param dicoms
+	 * @throws OHDicomException
+	 */
+	@Override
+	public void saveFiles(List<FileDicom> dicoms) throws OHDicomException {
+		Map<Integer, List<IndexEntry>> entriesByPatient = new LinkedHashMap<>();
+		Exception failure = null;
+		try {
+			for (FileDicom dicom : dicoms) {
+				List<IndexEntry> entries = entriesByPatient.computeIfAbsent(dicom.getPatId(), patId -> new ArrayList<>());
+				if (!exist(dicom) && entries.stream().noneMatch(entry -> entry.isSameFile(dicom))) {
+					entries.add(writeFile(dicom));
+				}
 			}
-
-			long idFile = nextId();
-			// dicomInstanceUID is used to identify a unique file in the series (like DM_FILE_ID in the DB)
-			// so cannot be empty and will be used only for this cycle
-			if (dicomInstanceUID == null || dicomInstanceUID.isEmpty()) {
-				dicomInstanceUID = seriesNumber + '.' + idFile;
-				dicom.setDicomInstanceUID(dicomInstanceUID);
+		} catch (Exception exception) {
+			failure = exception;
+		}
+		// the files already written are indexed even if the batch failed, so that saving them again one by one skips them
+		try {
+			for (Map.Entry<Integer, List<IndexEntry>> patientEntries : entriesByPatient.entrySet()) {
+				if (!patientEntries.getValue().isEmpty()) {
+					FileSystemDicomIndex.update(getPatientDir(patientEntries.getKey()), index -> {
+						for (IndexEntry entry : patientEntries.getValue()) {
+							entry.addTo(index);
+						}
+					});
+				}
 			}
+		} catch (IOException exception) {
+			if (failure == null) {
+				failure = exception;
+			} else {
+				failure.addSuppressed(exception);
+			}
+		}
+		if (failure != null) {
+			throw new OHDicomException(failure,
+			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", failure.getMessage())));
+		}
+	}
+
+	/*
+	 * Write the data, metadata and thumbnail files of a DICOM, returning what the index of the patient has to know about it
+	 */
+	private IndexEntry writeFile(FileDicom dicom) throws IOException, SQLException {
+		int patId = dicom.getPatId();
+		String seriesNumber = dicom.getDicomSeriesNumber();
+		String dicomInstanceUID = dicom.getDicomInstanceUID();
 
-			File df = getSerieDir(patId, seriesNumber, true);
-			File properties = new File(df, idFile + ".properties");
-			try (FileOutputStream fos = new FileOutputStream(properties, false);	PrintStream ps = new PrintStream(fos)) {
-				ps.println("idFile =" + idFile);
-				ps.println("patId =" + patId);
-				ps.println("fileName =" + dicom.getFileName());
-				ps.println("dicomAccessionNumber =" + dicom.getDicomAccessionNumber());
-				ps.println("dicomInstitutionName =" + dicom.getDicomInstitutionName());
-				ps.println("dicomPatientID =" + dicom.getDicomPatientID());
-				ps.println("dicomPatientName =" + dicom.getDicomPatientName());
-				ps.println("dicomPatientAddress =" + dicom.getDicomPatientAddress());
-				ps.println("dicomPatientAge =" + dicom.getDicomPatientAge());
-				ps.println("dicomPatientSex =" + dicom.getDicomPatientSex());
-				ps.println("dicomPatientBirthDate =" + dicom.getDicomPatientBirthDate());
-				ps.println("dicomStudyId =" + dicom.getDicomStudyId());
-				ps.println("dicomStudyDate =" + dicom.getDicomStudyDate().atZone(ZoneId.systemDefault()).format(DATE_TIME_FORMATTER));
-				ps.println("dicomStudyDescription =" + dicom.getDicomStudyDescription());
-				ps.println("dicomSeriesUID =" + dicom.getDicomSeriesUID());
-				ps.println("dicomSeriesInstanceUID =" + dicom.getDicomSeriesInstanceUID());
-				ps.println("dicomSeriesNumber =" + dicom.getDicomSeriesNumber());
-				ps.println("dicomSeriesDescriptionCodeSequence =" + dicom.getDicomSeriesDescriptionCodeSequence());
-				ps.println("dicomSeriesDate =" + dicom.getDicomSeriesDate().atZone(ZoneId.systemDefault()).format(DATE_TIME_FORMATTER));
-				ps.println("dicomSeriesDescription =" + dicom.getDicomSeriesDescription());
-				// dicomInstanceUID is used to identify a unique file in the series
-				// so cannot be empty and will be used only for this cycle
-				ps.println("dicomInstanceUID =" + dicomInstanceUID);
-				ps.println("modality =" + dicom.getModality());
-				ps.flush();
+		// some times this number could be null, it's wrong, but I add
+		// line to avoid exception
+		if (seriesNumber == null || seriesNumber.trim().isEmpty() || seriesNumber.equalsIgnoreCase("null")) {
+			seriesNumber = SourceFiles.generateSeriesNumber(patId);
+			dicom.setDicomSeriesNumber(seriesNumber);
+			dicom.setDicomSeriesInstanceUID("<org_root>."+seriesNumber);
+		}
+
+		long idFile = nextId();
+		// dicomInstanceUID is used to identify a unique file in the series (like DM_FILE_ID in the DB)
+		// so cannot be empty and will be used only for this cycle
+		if (dicomInstanceUID == null || dicomInstanceUID.isEmpty()) {
+			dicomInstanceUID = seriesNumber + '.' + idFile;
+			dicom.setDicomInstanceUID(dicomInstanceUID);
+		}
+
+		Map<String, String> metadata = new LinkedHashMap<>();
+		metadata.put("idFile", String.valueOf(idFile));
+		metadata.put("patId", String.valueOf(patId));
+		metadata.put("fileName", dicom.getFileName());
+		metadata.put("dicomAccessionNumber", dicom.getDicomAccessionNumber());
+		metadata.put("dicomInstitutionName", dicom.getDicomInstitutionName());
+		metadata.put("dicomPatientID", dicom.getDicomPatientID());
+		metadata.put("dicomPatientName", dicom.getDicomPatientName());
+		metadata.put("dicomPatientAddress", dicom.getDicomPatientAddress());
+		metadata.put("dicomPatientAge", dicom.getDicomPatientAge());
+		metadata.put("dicomPatientSex", dicom.getDicomPatientSex());
+		metadata.put("dicomPatientBirthDate", dicom.getDicomPatientBirthDate());
+		metadata.put("dicomStudyId", dicom.getDicomStudyId());
+		metadata.put("dicomStudyDate", dicom.getDicomStudyDate().atZone(ZoneId.systemDefault()).format(DATE_TIME_FORMATTER));
+		metadata.put("dicomStudyDescription", dicom.getDicomStudyDescription());
+		metadata.put("dicomSeriesUID", dicom.getDicomSeriesUID());
+		metadata.put("dicomSeriesInstanceUID", dicom.getDicomSeriesInstanceUID());
+		metadata.put("dicomSeriesNumber", dicom.getDicomSeriesNumber());
+		metadata.put("dicomSeriesDescriptionCodeSequence", dicom.getDicomSeriesDescriptionCodeSequence());
+		metadata.put("dicomSeriesDate", dicom.getDicomSeriesDate().atZone(ZoneId.systemDefault()).format(DATE_TIME_FORMATTER));
+		metadata.put("dicomSeriesDescription", dicom.getDicomSeriesDescription());
+		// dicomInstanceUID is used to identify a unique file in the series
+		// so cannot be empty and will be used only for this cycle
+		metadata.put("dicomInstanceUID", dicomInstanceUID);
+		metadata.put("modality", dicom.getModality());
+
+		File df = getSerieDir(patId, seriesNumber, true);
+		File properties = new File(df, idFile + ".properties");
+		Properties indexedMetadata = new Properties();
+		try (FileOutputStream fos = new FileOutputStream(properties, false);	PrintStream ps = new PrintStream(fos)) {
+			for (Map.Entry<String, String> entry : metadata.entrySet()) {
+				String value = String.valueOf(entry.getValue());
+				ps.println(entry.getKey() + " =" + value);
+				indexedMetadata.setProperty(entry.getKey(), value);
 			}
-			File data = new File(df, idFile + ".data");
-			Blob blob = dicom.getDicomData().getData();
-			int blobLength = (int) blob.length();
-			byte[] blobAsBytes = blob.getBytes(1, blobLength);
-			save(data, blobAsBytes);
-			File thumn = new File(df, idFile + ".thumn");
-			blob = dicom.getDicomThumbnail();
-			blobLength = (int) blob.length();
-			blobAsBytes = blob.getBytes(1, blobLength);
-			save(thumn, blobAsBytes);
-		} catch (Exception exception) {
-			throw new OHDicomException(exception,
-			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
+			ps.flush();
 		}
+		save(new File(df, idFile + ".data"), dicom.getDicomData().getData());
+		Blob thumbnail = dicom.getDicomThumbnail();
+		save(new File(df, idFile + ".thumn"), thumbnail);
+		return new IndexEntry(seriesNumber, idFile, dicomInstanceUID, indexedMetadata, thumbnail.getBytes(1, (int) thumbnail.length()));
 	}
 
 	/*
-	 * Load DICOM data + Thumbnail
+	 * Load DICOM data + Thumbnail of the first file of the series, from the index
 	 */
-	private FileDicom loadMetadata(long idFile, int patientId, String series) throws IOException, SQLException {
+	private FileDicom loadMetadata(FileSystemDicomIndex.Series series) throws SQLException {
 		// Series must exist, so we need to check it and return null in case
-		if (series == null || series.trim().isEmpty() || series.equalsIgnoreCase("null")) {
+		String seriesNumber = series.getNumber();
+		if (seriesNumber == null || seriesNumber.trim().isEmpty() || seriesNumber.equalsIgnoreCase("null")) {
 			return null;
 		}
 		FileDicom rv = new FileDicom();
-		File sd = getSerieDir(patientId, series, false);
-		rv.setFrameCount(getFramesCount(patientId, series));
-		parseDicomProperties(idFile, rv, sd);
-		rv.setDicomThumbnail(loadThumbnail(sd, idFile));
+		rv.setFrameCount(series.getFramesCount());
+		parseDicomProperties(rv, series.getFirstMetadata());
+		if (series.getFirstThumbnail() != null) {
+			rv.setDicomThumbnail(new SerialBlob(series.getFirstThumbnail()));
+		}
 		return rv;
 	}
 
@@ -343,15 +378,14 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 		}
 		FileDicom rv = new FileDicom();
 		File sd = getSerieDir(patientId, series, false);
-		parseDicomProperties(idFile, rv, sd);
+		parseDicomProperties(rv, loadMetadata(sd, idFile));
 		DicomData dicomData = new DicomData(loadDicomData(sd, idFile));
 		rv.setDicomData(dicomData);
 		dicomData.setFileDicom(rv);
 		return rv;
 	}
 
-	private void parseDicomProperties(long idFile, FileDicom rv, File sd) throws IOException {
-		Properties p = loadMetadata(sd, idFile);
+	private void parseDicomProperties(FileDicom rv, Properties p) {
 		try {
 			rv.setIdFile(Long.parseLong(p.getProperty("idFile")));
 		} catch (Exception e) {
@@ -395,33 +429,14 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 	}
 
 	/**
-	 * Load image for thumbnail
-	 * @throws SQLException 
-	 * @throws SerialException 
+	 * Load DICOM image, read from the file only when used
 	 */
-	private Blob loadThumbnail(File sd, long idFile) throws IOException, SerialException, SQLException {
-		File fdc = new File(sd, idFile + ".thumn");
-		byte[] byteArray;
-		try (FileInputStream fis = new FileInputStream(fdc)) {
-			byteArray = new byte[fis.available()];
-			fis.read(byteArray);
-		}
-		return new SerialBlob(byteArray);
-	}
-
-	/**
-	 * Load DICOM image
-	 * @throws SQLException 
-	 * @throws SerialException 
-	 */
-	private Blob loadDicomData(File sd, long idFile) throws IOException, SQLException {
+	private Blob loadDicomData(File sd, long idFile) throws IOException {
 		File fdc = new File(sd, idFile + ".data");
-		byte[] byteArray;
-		try (FileInputStream fis = new FileInputStream(fdc)) {
-			byteArray = new byte[fis.available()];
-			fis.read(byteArray);
+		if (!fdc.isFile()) {
+			throw new FileNotFoundException(fdc.getAbsolutePath());
 		}
-		return new SerialBlob(byteArray);
+		return new FileBlob(fdc);
 	}
 
 	@Override
@@ -437,18 +452,8 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 			if (diuid == null || diuid.trim().isEmpty() || diuid.equalsIgnoreCase("null")) {
 				return false;
 			}
-			File df = getSerieDir(patId, serieNumber, true);
-			File[] files = df.listFiles();
-			int i = 0;
-			while (!rv && i < files.length) {
-				String nf = files[i].getName();
-				if (nf.endsWith(".properties")) {
-					Properties p = loadMetadata(files[i]);
-					String vl = p.getProperty("dicomInstanceUID");
-					rv = diuid.equals(vl);
-				}
-				i++;
-			}
+			FileSystemDicomIndex.Series series = loadIndex(patId).getSeries(serieNumber);
+			rv = series != null && series.containsInstance(diuid);
 		} catch (Exception exception) {
 			throw new OHDicomException(exception,
 			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
@@ -464,56 +469,42 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 		return p;
 	}
 
-	private Properties loadMetadata(File mdf) throws IOException {
-		Properties p = new Properties();
-		try (FileReader fr = new FileReader(mdf)) {
-			p.load(fr);
-		}
-		return p;
+	/**
+	 * Load the index of the patient's series, rebuilding it from the folders if needed
+	 */
+	private FileSystemDicomIndex loadIndex(int patId) throws IOException {
+		return FileSystemDicomIndex.load(getPatientDir(patId));
 	}
 
 	/**
-	 * frames counter
+	 * Rebuild the index of the patient's series from the folders, e.g. after they have been changed by hand
+	 *
+	 * @param patientId
+	 * @throws OHDicomException
 	 */
-	private int getFramesCount(int patID, String serieNumber) throws IOException {
-		File df = getSerieDir(patID, serieNumber, false);
-		File[] files = df.listFiles(dsf);
-		return files.length;
+	public void rebuildIndex(int patientId) throws OHDicomException {
+		try {
+			FileSystemDicomIndex.rebuild(getPatientDir(patientId));
+		} catch (Exception exception) {
+			throw new OHDicomException(exception,
+			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
+		}
 	}
 
 	/**
 	 * emulate SQL sequence on filesystem
 	 */
-	private synchronized long nextId() throws IOException {
-		long rv = 0;
-
-		try {
-			File i = new File(dir, "dicom.storage");
-			if (i.exists()) {
-				try (FileInputStream fis = new FileInputStream(i)) {
-					try (ObjectInputStream ois = new ObjectInputStream(fis)) {
-						rv = ois.readLong();
-					}
-				}
-			}
-
-			i.delete();
-
-			i = new File(dir, "dicom.storage");
-
-			rv++;
-
-			try (FileOutputStream fos = new FileOutputStream(i)) {
-				try (ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-					oos.writeLong(rv);
-					oos.flush();
-					fos.flush();
+	private long nextId() throws IOException {
+		FileSystemDicomIdAllocator allocator = idAllocator;
+		if (allocator == null) {
+			synchronized (this) {
+				if (idAllocator == null) {
+					idAllocator = new FileSystemDicomIdAllocator(new File(dir, "dicom.storage"));
 				}
+				allocator = idAllocator;
 			}
-		} catch (Exception exc) {
-
 		}
-		return rv;
+		return allocator.nextId();
 	}
 
 	/**
@@ -558,55 +549,24 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 	}
 
 	/**
-	 * Save content in specified file
+	 * Save content in specified file, streaming it instead of loading it in memory
 	 * 
 	 * @param outFile - the file to write into
-	 * @param content - byte vector to write
+	 * @param content - the Blob to write
 	 */
-	private void save(File outFile, byte[] content) throws IOException {
-		try (FileOutputStream fos = new FileOutputStream(outFile)) {
-			fos.write(content);
-			fos.flush();
-		}
-	}
-
-	/**
-	 * Return the first idFile in the serie
-	 */
-	private long getFirst(File df) {
-		File[] files = df.listFiles(dsf);
-
-		long[] _longs = new long[files.length];
-
-		for (int i = 0; i < _longs.length; i++) {
-			try {
-				_longs[i] = Long.parseLong(files[i].getName().substring(0, files[i].getName().indexOf('.')));
-			} catch (Exception e) {
-			}
+	private void save(File outFile, Blob content) throws IOException, SQLException {
+		if (content instanceof FileBlob) {
+			Files.copy(((FileBlob) content).getFile().toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return;
 		}
-
-		Arrays.sort(_longs);
-
-		if (_longs.length > 0) {
-			return _longs[0];
+		try (InputStream in = content.getBinaryStream()) {
+			Files.copy(in, outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
-		return -1;
 	}
 
-	private FileDicom[] compact(FileDicom[] db) {
-		Vector<FileDicom> rv = new Vector<>(0);
-
-		for (FileDicom fileDicom : db) {
-			if (fileDicom != null) {
-				rv.addElement(fileDicom);
-			}
-		}
-		FileDicom[] ret = new FileDicom[rv.size()];
-		rv.sort(new DicomDateComparator());
-		Collections.reverse(rv);
-		rv.copyInto(ret);
-
-		return ret;
+	private FileDicom[] compact(List<FileDicom> db) {
+		db.sort(new DicomDateComparator().reversed());
+		return db.toArray(new FileDicom[0]);
 	}
 	
 	public static class DicomDateComparator implements Comparator<FileDicom> {
@@ -642,20 +602,6 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 		}
 	}
 
-	/**
-	 * Filter for files .thumn
-	 */
-	class FilterSerieDetail implements FilenameFilter {
-
-		@Override
-		public boolean accept(File dir, String name) {
-			if (name == null) {
-				return false;
-			}
-			return name.endsWith(".thumn");
-		}
-	}
-
 	@Override
 	public boolean exist(int patientId, String seriesNumber) throws OHServiceException {
 		File seriesFolder = null;
@@ -666,4 +612,31 @@ public class FileSystemDicomManager implements DicomManagerInterface {
 		return seriesFolder.exists();
 	}
 
+	/**
+	 * What the index of a patient keeps about a written file
+	 */
+	private static class IndexEntry {
+
+		private final String seriesNumber;
+		private final long idFile;
+		private final String instanceUID;
+		private final Properties metadata;
+		private final byte[] thumbnail;
+
+		IndexEntry(String seriesNumber, long idFile, String instanceUID, Properties metadata, byte[] thumbnail) {
+			this.seriesNumber = seriesNumber;
+			this.idFile = idFile;
+			this.instanceUID = instanceUID;
+			this.metadata = metadata;
+			this.thumbnail = thumbnail;
+		}
+
+		boolean isSameFile(FileDicom dicom) {
+			return seriesNumber.equals(dicom.getDicomSeriesNumber()) && instanceUID.equals(dicom.getDicomInstanceUID());
+		}
+
+		void addTo(FileSystemDicomIndex index) {
+			index.add(seriesNumber, idFile, instanceUID, metadata, thumbnail);
+		}
+	}
 }
@@ -22,15 +22,13 @@
 package org.isf.dicom.manager;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import javax.imageio.IIOException;
@@ -77,7 +75,7 @@ public class SourceFiles extends Thread {
 	private FileDicom fileDicom;
 	private int patient;
 	private int filesCount;
-	private int filesLoaded;
+	private volatile int filesLoaded;
 	private AbstractDicomLoader dicomLoader;
 	private AbstractThumbnailViewGui thumbnail;
 
@@ -108,7 +106,6 @@ public class SourceFiles extends Thread {
 	 * @throws Exception
 	 */
 	private void loadDicomDir(FileDicom fileDicom, File sourceFile, int patient) throws Exception {
-		File[] files = sourceFile.listFiles();
 		String seriesNumber = fileDicom.getDicomSeriesNumber();
 		if (seriesNumber == null || seriesNumber.isEmpty()) {
 			try {
@@ -118,26 +115,10 @@ public class SourceFiles extends Thread {
 				seriesNumber = "";
 			}
 		}
-		for (File value : files) {
-
-			try {
-				Thread.sleep(10);
-			} catch (Exception e) {}
-
-			if (!value.isDirectory()) {
-				try {
-					loadDicom(fileDicom, value, patient);
-				} catch (OHDicomException ohDicomException) {
-					LOGGER.error("loadDicomDir: {}", ohDicomException.getMessages().get(0).getMessage());
-				} catch (Exception e) {
-					throw e;
-				}
-				filesLoaded++;
-				dicomLoader.setLoaded(filesLoaded);
-			} else if (!".".equals(value.getName()) && !"..".equals(value.getName())) {
-				loadDicomDir(fileDicom, value, patient);
-			}
-		}
+		new DicomImportPipeline().importDirectory(fileDicom, sourceFile, patient, (processed, total) -> {
+			filesLoaded = processed;
+			dicomLoader.setLoaded(processed);
+		});
 	}
 
 	public static boolean checkSize(File sourceFile) throws OHDicomException {
@@ -191,14 +172,7 @@ public class SourceFiles extends Thread {
 			if (isJpeg) {
 				studyDate = FileTools.getTimestamp(sourceFile); //get last modified date (creation date)
 			} else if (isDicom) {
-				DicomInputStream dicomInputStream;
-				try {
-					dicomInputStream = new DicomInputStream(sourceFile);
-				} catch (DicomStreamException dicomStreamException) {
-					throw new OHDicomException(new OHExceptionMessage(
-							MessageBundle.formatMessage("angal.dicom.thefileisinanunknownformat.fmt.msg", fileName)));
-				}
-				Attributes attributes = dicomInputStream.readDataset();
+				Attributes attributes = readAttributes(sourceFile, "angal.dicom.thefileisinanunknownformat.fmt.msg");
 				seriesDate = getSeriesDateTime(attributes);
 				studyDate = getStudyDateTime(attributes);
 				if (attributes.contains(Tag.SeriesNumber)) {
@@ -249,12 +223,26 @@ public class SourceFiles extends Thread {
 	 * @param patient
 	 * @throws Exception
 	 */
-	@SuppressWarnings("unused")
-	public static synchronized void loadDicom(FileDicom dicomFileDetail, File sourceFile, int patient) throws Exception {
-		// installLibs();
+	public static void loadDicom(FileDicom dicomFileDetail, File sourceFile, int patient) throws Exception {
+		if (readDicom(dicomFileDetail, sourceFile, patient)) {
+			saveDicom(dicomFileDetail);
+		}
+	}
 
+	/**
+	 * Decodes a DICOM (or JPEG) file, makes its thumbnail and fills {@code dicomFileDetail} with its metadata, without saving it. It does not
+	 * share any state, so that several files can be read in parallel.
+	 *
+	 * @param dicomFileDetail the detail to fill, prefilled with the values set by the user
+	 * @param sourceFile the file to read
+	 * @param patient the patient code
+	 * @return {@code false} if the file is not to be imported (file system metadata)
+	 * @throws Exception if the file cannot be read
+	 */
+	@SuppressWarnings("unused")
+	static boolean readDicom(FileDicom dicomFileDetail, File sourceFile, int patient) throws Exception {
 		if (".DS_Store".equals(sourceFile.getName())) {
-			return;
+			return false;
 		}
 
 		try {
@@ -300,11 +288,8 @@ public class SourceFiles extends Thread {
 				reader = (ImageReader) iter.next();
 				param = reader.getDefaultReadParam();
 				DicomInputStream dicomStream = null;
-				ByteArrayInputStream byteArrayInputStream = null;
 				try {
-					byte[] data = Files.readAllBytes(Paths.get(sourceFile.getAbsolutePath()));
-					byteArrayInputStream = new ByteArrayInputStream(data);
-					dicomStream = new DicomInputStream(byteArrayInputStream);
+					dicomStream = new DicomInputStream(sourceFile);
 					reader.setInput(dicomStream);
 					originalImage = reader.read(0, param);
 				} catch (IOException | RuntimeException exception) {
@@ -313,7 +298,6 @@ public class SourceFiles extends Thread {
 				}
 				finally {
 					SafeClose.close(dicomStream);
-					SafeClose.close(byteArrayInputStream);
 				}
 			} else {
 				throw new OHDicomException(
@@ -353,15 +337,7 @@ public class SourceFiles extends Thread {
 				//in loadDicomDir loop this is generated because is missing in JPG/JPEG files, reset to avoid duplicates
 				studyUID = ""; 
 			} else if (isDicom) {
-
-				DicomInputStream dicomInputStream;
-				try {
-					dicomInputStream = new DicomInputStream(sourceFile);
-				} catch (DicomStreamException dicomStreamException) {
-					throw new OHDicomException(
-							new OHExceptionMessage(MessageBundle.formatMessage("angal.dicom.thefileisnotindicomformat.fmt.msg", sourceFile.getName())));
-				}
-				Attributes attributes = dicomInputStream.readDataset();
+				Attributes attributes = readAttributes(sourceFile, "angal.dicom.thefileisnotindicomformat.fmt.msg");
 
 				//overridden by the user
 				seriesDescription = seriesDescription != null ? seriesDescription : attributes.getString(Tag.SeriesDescription);
@@ -470,20 +446,62 @@ public class SourceFiles extends Thread {
 				dicomFileDetail.setModality(modality);
 			}
 			dicomFileDetail.setIdFile(0); //it will trigger the DB save with SqlDicomManager
-			try {
-				DicomManagerFactory.getManager().saveFile(dicomFileDetail);
-				//dicomFileDetail.setDicomSeriesNumber(dicom.getDicomSeriesNumber()); //series number could be generated if missing.
-			} catch (OHServiceException ex) {
-				if (ex.getMessages() != null) {
-					throw new OHDicomException(ex.getCause(), ex.getMessages());
-				}
-			}
-
+			return true;
 		} catch (OHDicomException ecc) {
 			throw ecc;
 		}
 	}
 
+	/**
+	 * Reads the DICOM attributes of a file, stopping before the pixel data so that the image is not loaded in memory.
+	 *
+	 * @param sourceFile the DICOM file
+	 * @param errorMessageKey the message to use if the file is not in DICOM format
+	 * @return the attributes
+	 * @throws IOException if the file cannot be read
+	 * @throws OHDicomException if the file is not in DICOM format
+	 */
+	private static Attributes readAttributes(File sourceFile, String errorMessageKey) throws IOException, OHDicomException {
+		try (DicomInputStream dicomInputStream = new DicomInputStream(sourceFile)) {
+			return dicomInputStream.readDatasetUntilPixelData();
+		} catch (DicomStreamException dicomStreamException) {
+			throw new OHDicomException(new OHExceptionMessage(MessageBundle.formatMessage(errorMessageKey, sourceFile.getName())));
+		}
+	}
+
+	/**
+	 * Saves a file read by {@link #readDicom(FileDicom, File, int)}.
+	 *
+	 * @param dicomFileDetail the file to save
+	 * @throws OHDicomException if the file cannot be saved
+	 */
+	static void saveDicom(FileDicom dicomFileDetail) throws OHDicomException {
+		try {
+			DicomManagerFactory.getManager().saveFile(dicomFileDetail);
+			//dicomFileDetail.setDicomSeriesNumber(dicom.getDicomSeriesNumber()); //series number could be generated if missing.
+		} catch (OHServiceException ex) {
+			if (ex.getMessages() != null) {
+				throw new OHDicomException(ex.getCause(), ex.getMessages());
+			}
+		}
+	}
+
+	/**
+	 * Saves in one go a batch of files read by {@link #readDicom(FileDicom, File, int)}.
+	 *
+	 * @param dicomFileDetails the files to save
+	 * @throws OHDicomException if the batch cannot be saved
+	 */
+	static void saveDicoms(List<FileDicom> dicomFileDetails) throws OHDicomException {
+		try {
+			DicomManagerFactory.getManager().saveFiles(dicomFileDetails);
+		} catch (OHServiceException ex) {
+			if (ex.getMessages() != null) {
+				throw new OHDicomException(ex.getCause(), ex.getMessages());
+			}
+		}
+	}
+
 	public static int checkOrientation(File sourceFile) throws ImageProcessingException, IOException {
 		Metadata metadata = ImageMetadataReader.readMetadata(sourceFile);
 		ExifIFD0Directory exifIFD0Directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
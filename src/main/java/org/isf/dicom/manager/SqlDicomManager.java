@@ -21,6 +21,8 @@
  */
 package org.isf.dicom.manager;
 
+import java.util.List;
+
 import org.isf.dicom.model.FileDicom;
 import org.isf.dicom.service.DicomIoOperations;
 import org.isf.utils.exception.OHServiceException;
@@ -142,4 +144,15 @@ public class SqlDicomManager implements DicomManagerInterface {
 		ioOperations.saveFile(dicom);
 	}
 
+	/**
+	 * Save a batch of DICOM files and metadata in one transaction
+	 *
+	 * @param dicoms
+	 * @throws OHServiceException
+	 */
+	@Override
+	public void saveFiles(List<FileDicom> dicoms) throws OHServiceException {
+		ioOperations.saveFiles(dicoms);
+	}
+
 }
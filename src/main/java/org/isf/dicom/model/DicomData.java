@@ -22,12 +22,9 @@
 package org.isf.dicom.model;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.Serializable;
 import java.sql.Blob;
 
-import javax.sql.rowset.serial.SerialBlob;
-
 import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -42,8 +39,7 @@ import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 
 import org.isf.utils.db.Auditable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.isf.utils.db.FileBlob;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
@@ -59,8 +55,6 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @AttributeOverride(name = "lastModifiedDate", column = @Column(name = "DMD_LAST_MODIFIED_DATE"))
 public class DicomData extends Auditable<String> implements Serializable {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(DicomData.class);
-
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "DMD_DATA_ID")
@@ -98,17 +92,11 @@ public class DicomData extends Auditable<String> implements Serializable {
 	}
 
 	/**
-	 * Loads bytes of DICOM file and stores it in a Blob type
+	 * Refers to the bytes of DICOM file with a Blob type, they are streamed from the file when saved
 	 *
 	 * @param dicomFile the dicomFile to set
 	 */
 	public void setData(File dicomFile) {
-		try (FileInputStream fis = new FileInputStream(dicomFile)) {
-			byte[] byteArray = new byte[fis.available()];
-			fis.read(byteArray);
-			this.data = new SerialBlob(byteArray);
-		} catch (Exception exception) {
-			LOGGER.error(exception.getMessage(), exception);
-		}
+		this.data = new FileBlob(dicomFile);
 	}
 }
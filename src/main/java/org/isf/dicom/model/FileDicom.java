@@ -268,6 +268,22 @@ public class FileDicom extends Auditable<String> {
 		this.dicomThumbnail = dicomThumbnail;
 		this.dicomType = new DicomType(dicomTypeId, dicomTypeDesc);
 	}
+
+	/**
+	 * Construct a DICOM series summary without any image (neither data nor thumbnail) for the series list
+	 */
+	public FileDicom(int patId, long idFile, String fileName, String dicomAccessionNumber, String dicomInstitutionName, String dicomPatientID,
+			String dicomPatientName, String dicomPatientAddress, String dicomPatientAge, String dicomPatientSex, String dicomPatientBirthDate,
+			String dicomStudyId, LocalDateTime dicomStudyDate, String dicomStudyDescription, String dicomSeriesUID, String dicomSeriesInstanceUID,
+			String dicomSeriesNumber, String dicomSeriesDescriptionCodeSequence, LocalDateTime dicomSeriesDate, String dicomSeriesDescription,
+			String dicomInstanceUID, String modality, String dicomTypeId, String dicomTypeDesc, Long frameCount)
+	{
+		this(patId, idFile, fileName, dicomAccessionNumber, dicomInstitutionName, dicomPatientID, dicomPatientName, dicomPatientAddress,
+				dicomPatientAge, dicomPatientSex, dicomPatientBirthDate, dicomStudyId, dicomStudyDate, dicomStudyDescription, dicomSeriesUID,
+				dicomSeriesInstanceUID, dicomSeriesNumber, dicomSeriesDescriptionCodeSequence, dicomSeriesDate, dicomSeriesDescription,
+				dicomInstanceUID, modality, (Blob) null, dicomTypeId, dicomTypeDesc);
+		this.frameCount = frameCount == null ? -1 : frameCount.intValue();
+	}
 	
 	/**
 	 * @return the dicomData
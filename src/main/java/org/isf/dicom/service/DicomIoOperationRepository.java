@@ -21,6 +21,7 @@
  */
 package org.isf.dicom.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.isf.dicom.model.FileDicom;
@@ -38,8 +39,11 @@ public interface DicomIoOperationRepository extends JpaRepository<FileDicom, Lon
 	@Query(value = "select f from FileDicom f WHERE f.patId = :id AND f.dicomSeriesNumber = :file order by f.fileName")
 	List<FileDicom> findAllWhereIdAndNumberByOrderNameAsc(@Param("id") int id, @Param("file") String file);
 
-	@Query(value = "select new org.isf.dicom.model.FileDicom(f.patId, f.idFile, f.fileName, f.dicomAccessionNumber, f.dicomInstitutionName, f.dicomPatientID, f.dicomPatientName, f.dicomPatientAddress, f.dicomPatientAge, f.dicomPatientSex, f.dicomPatientBirthDate, f.dicomStudyId, f.dicomStudyDate, f.dicomStudyDescription, f.dicomSeriesUID, f.dicomSeriesInstanceUID, f.dicomSeriesNumber, f.dicomSeriesDescriptionCodeSequence, f.dicomSeriesDate, f.dicomSeriesDescription, f.dicomInstanceUID, f.modality, f.dicomThumbnail, d.dicomTypeID, d.dicomTypeDescription) FROM FileDicom f LEFT JOIN f.dicomType d WHERE f.patId = :id group by f.dicomSeriesInstanceUID order by f.dicomSeriesDate desc")
-	List<FileDicom> findAllWhereIdGroupBySeriesInstanceUIDOrderSerDateDesc(@Param("id") int id);
+	@Query(value = "select new org.isf.dicom.model.FileDicom(f.patId, f.idFile, f.fileName, f.dicomAccessionNumber, f.dicomInstitutionName, f.dicomPatientID, f.dicomPatientName, f.dicomPatientAddress, f.dicomPatientAge, f.dicomPatientSex, f.dicomPatientBirthDate, f.dicomStudyId, f.dicomStudyDate, f.dicomStudyDescription, f.dicomSeriesUID, f.dicomSeriesInstanceUID, f.dicomSeriesNumber, f.dicomSeriesDescriptionCodeSequence, f.dicomSeriesDate, f.dicomSeriesDescription, f.dicomInstanceUID, f.modality, d.dicomTypeID, d.dicomTypeDescription, count(f)) FROM FileDicom f LEFT JOIN f.dicomType d WHERE f.patId = :id group by f.dicomSeriesInstanceUID order by f.dicomSeriesDate desc")
+	List<FileDicom> findSeriesSummariesWhereIdOrderSerDateDesc(@Param("id") int id);
+
+	@Query(value = "select f.idFile, f.dicomThumbnail from FileDicom f WHERE f.idFile in :ids")
+	List<Object[]> findThumbnailsWhereIdFileIn(@Param("ids") Collection<Long> ids);
 
 	@Query(value = "select f from FileDicom f WHERE f.patId = :id AND f.dicomSeriesNumber = :file AND f.dicomInstanceUID = :uid")
 	List<FileDicom> findAllWhereIdAndFileAndUid(@Param("id") int id, @Param("file") String file, @Param("uid") String uid);
@@ -51,7 +55,4 @@ public interface DicomIoOperationRepository extends JpaRepository<FileDicom, Lon
 	@Query(value = "SELECT COUNT(DM_FILE_SER_NUMBER) FROM OH_DICOM WHERE DM_FILE_SER_NUMBER = :dicomSeriesNumber", nativeQuery = true)
 	int seriesExists(@Param("dicomSeriesNumber") String dicomSeriesNumber);
 
-	@Query(value = "SELECT COUNT(DM_FILE_SER_INST_UID) FROM OH_DICOM WHERE DM_FILE_SER_INST_UID = :dicomSeriesNumberId AND DM_PAT_ID = :id", nativeQuery = true)
-	int countFramesInSeries(@Param("dicomSeriesNumberId") String dicomSeriesInstanceUID, @Param("id") int id);
-
 }
@@ -21,11 +21,20 @@
  */
 package org.isf.dicom.service;
 
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.sql.rowset.serial.SerialBlob;
 
 import org.isf.dicom.model.FileDicom;
+import org.isf.generaldata.MessageBundle;
 import org.isf.utils.db.TranslateOHServiceException;
+import org.isf.utils.exception.OHDicomException;
 import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,8 +45,11 @@ public class DicomIoOperations {
 
 	private DicomIoOperationRepository repository;
 
-	public DicomIoOperations(DicomIoOperationRepository dicomIoOperationRepository) {
+	private DicomThumbnailCache thumbnailCache;
+
+	public DicomIoOperations(DicomIoOperationRepository dicomIoOperationRepository, DicomThumbnailCache dicomThumbnailCache) {
 		this.repository = dicomIoOperationRepository;
+		this.thumbnailCache = dicomThumbnailCache;
 	}
 
 	/**
@@ -68,6 +80,7 @@ public class DicomIoOperations {
 	 */
 	public void deleteSeries(int patientID, String seriesNumber) throws OHServiceException {
 		repository.deleteByIdAndNumber(patientID, seriesNumber);
+		thumbnailCache.evictSeries(patientID, seriesNumber);
 	}
 
 	/**
@@ -85,21 +98,59 @@ public class DicomIoOperations {
 
 	/**
 	 * Load metadata from {@link FileDicom} files stored in database for the patient.
+	 * <p>
+	 * The series and their number of files are read with one query that leaves the blobs out; the thumbnails come from the
+	 * {@link DicomThumbnailCache}, and those not cached yet are read with one more query.
 	 * 
 	 * @param patientID
 	 * @return FileDicom array
 	 * @throws OHServiceException 
 	 */
 	public FileDicom[] loadPatientFiles(int patientID) throws OHServiceException {
-		List<FileDicom> dicomList = repository.findAllWhereIdGroupBySeriesInstanceUIDOrderSerDateDesc(patientID);
+		List<FileDicom> dicomList = repository.findSeriesSummariesWhereIdOrderSerDateDesc(patientID);
+
+		Map<Long, FileDicom> withoutThumbnail = new HashMap<>();
+		for (FileDicom dicom : dicomList) {
+			byte[] thumbnail = thumbnailCache.get(patientID, dicom.getDicomSeriesNumber(), dicom.getIdFile());
+			if (thumbnail == null) {
+				withoutThumbnail.put(dicom.getIdFile(), dicom);
+			} else {
+				setThumbnail(dicom, thumbnail);
+			}
+		}
+		if (!withoutThumbnail.isEmpty()) {
+			for (Object[] row : repository.findThumbnailsWhereIdFileIn(withoutThumbnail.keySet())) {
+				FileDicom dicom = withoutThumbnail.get((Long) row[0]);
+				byte[] thumbnail = getBytes((Blob) row[1]);
+				if (thumbnail != null) {
+					thumbnailCache.put(patientID, dicom.getDicomSeriesNumber(), dicom.getIdFile(), thumbnail);
+					setThumbnail(dicom, thumbnail);
+				}
+			}
+		}
+		return dicomList.toArray(new FileDicom[0]);
+	}
 
-		FileDicom[] dicoms = new FileDicom[dicomList.size()];	
-		for (int i = 0; i < dicomList.size(); i++) {
-			int count = repository.countFramesInSeries(dicomList.get(i).getDicomSeriesInstanceUID(), patientID);
-			dicoms[i] = dicomList.get(i);
-			dicoms[i].setFrameCount(count);
+	private static void setThumbnail(FileDicom dicom, byte[] thumbnail) throws OHDicomException {
+		try {
+			// SerialBlob copies the bytes, so the cached ones cannot be changed through the FileDicom
+			dicom.setDicomThumbnail(new SerialBlob(thumbnail));
+		} catch (SQLException exception) {
+			throw new OHDicomException(exception,
+			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
+		}
+	}
+
+	private static byte[] getBytes(Blob blob) throws OHDicomException {
+		if (blob == null) {
+			return null;
+		}
+		try {
+			return blob.getBytes(1, (int) blob.length());
+		} catch (SQLException exception) {
+			throw new OHDicomException(exception,
+			                           new OHExceptionMessage(MessageBundle.formatMessage("angal.dicommanager.genericerror.fmt.msg", exception.getMessage())));
 		}
-		return dicoms;
 	}
 
 	/**
@@ -122,9 +173,24 @@ public class DicomIoOperations {
 	 * @throws OHServiceException 
 	 */
 	public FileDicom saveFile(FileDicom dicom) throws OHServiceException {
+		thumbnailCache.evict(dicom.getIdFile());
 		return repository.save(dicom);
 	}
 
+	/**
+	 * Inserts or updates several {@link FileDicom} objects in one transaction.
+	 *
+	 * @param dicoms - the {@link FileDicom} objects to save.
+	 * @return the persisted {@link FileDicom} objects.
+	 * @throws OHServiceException
+	 */
+	public List<FileDicom> saveFiles(List<FileDicom> dicoms) throws OHServiceException {
+		for (FileDicom dicom : dicoms) {
+			thumbnailCache.evict(dicom.getIdFile());
+		}
+		return repository.saveAll(dicoms);
+	}
+
 	/**
 	 * Checks if the code is already in use.
 	 *
@@ -0,0 +1,153 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.dicom.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded LRU cache of the DICOM thumbnails shown in the series list, keyed by patient, series and file.
+ * <p>
+ * The cache is bounded by the total size of the thumbnails rather than by their number, so that a few big thumbnails cannot take the memory
+ * of many small ones. Switching back to a patient already seen in the imaging viewer then reads no blob from the database.
+ */
+@Component
+public class DicomThumbnailCache {
+
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, byte[]> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+	private long bytes;
+
+	public DicomThumbnailCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	public DicomThumbnailCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return the thumbnail, or {@code null} if it is not in the cache
+	 */
+	public synchronized byte[] get(int patientId, String seriesNumber, long idFile) {
+		return thumbnails.get(new Key(patientId, seriesNumber, idFile));
+	}
+
+	/**
+	 * Adds a thumbnail, evicting the least recently used ones if the cache gets too big. A thumbnail bigger than the whole cache is not kept.
+	 */
+	public synchronized void put(int patientId, String seriesNumber, long idFile, byte[] thumbnail) {
+		Key key = new Key(patientId, seriesNumber, idFile);
+		remove(key);
+		if (thumbnail == null || thumbnail.length > maxBytes) {
+			return;
+		}
+		thumbnails.put(key, thumbnail);
+		bytes += thumbnail.length;
+		Iterator<byte[]> eldest = thumbnails.values().iterator();
+		while (bytes > maxBytes) {
+			bytes -= eldest.next().length;
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Removes the thumbnails of a series, e.g. when it is deleted.
+	 */
+	public synchronized void evictSeries(int patientId, String seriesNumber) {
+		thumbnails.entrySet().removeIf(entry -> {
+			Key key = entry.getKey();
+			if (key.patientId == patientId && Objects.equals(key.seriesNumber, seriesNumber)) {
+				bytes -= entry.getValue().length;
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Removes the thumbnail of a file, e.g. when it is updated.
+	 */
+	public synchronized void evict(long idFile) {
+		thumbnails.entrySet().removeIf(entry -> {
+			if (entry.getKey().idFile == idFile) {
+				bytes -= entry.getValue().length;
+				return true;
+			}
+			return false;
+		});
+	}
+
+	public synchronized void clear() {
+		thumbnails.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return the total size of the cached thumbnails, in bytes
+	 */
+	public synchronized long getSize() {
+		return bytes;
+	}
+
+	private void remove(Key key) {
+		byte[] previous = thumbnails.remove(key);
+		if (previous != null) {
+			bytes -= previous.length;
+		}
+	}
+
+	private static final class Key {
+
+		private final int patientId;
+		private final String seriesNumber;
+		private final long idFile;
+
+		Key(int patientId, String seriesNumber, long idFile) {
+			this.patientId = patientId;
+			this.seriesNumber = seriesNumber;
+			this.idFile = idFile;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return patientId == other.patientId && idFile == other.idFile && Objects.equals(seriesNumber, other.seriesNumber);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(patientId, seriesNumber, idFile);
+		}
+	}
+}
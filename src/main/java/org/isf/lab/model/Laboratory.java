@@ -32,6 +32,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
@@ -45,6 +48,12 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 @Entity
 @Table(name="OH_LABORATORY")
+@NamedEntityGraph(name = Laboratory.GRAPH_LIST, attributeNodes = {
+		@NamedAttributeNode(value = "exam", subgraph = "exam"), @NamedAttributeNode(value = "patient", subgraph = "patient")
+}, subgraphs = {
+		@NamedSubgraph(name = "exam", attributeNodes = @NamedAttributeNode("examtype")),
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus"))
+})
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "LAB_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "LAB_CREATED_DATE", updatable = false))
@@ -53,6 +62,11 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @AttributeOverride(name = "lastModifiedDate", column = @Column(name = "LAB_LAST_MODIFIED_DATE"))
 public class Laboratory extends Auditable<String> {
 
+	/**
+	 * Fetch plan of the laboratory lists: the exam with its type and the patient are joined to the laboratory select.
+	 */
+	public static final String GRAPH_LIST = "Laboratory.list";
+
 	@Id
 	@GeneratedValue(strategy=GenerationType.IDENTITY)
 	@Column(name="LAB_ID")
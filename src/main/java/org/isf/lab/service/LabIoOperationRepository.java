@@ -28,39 +28,52 @@ import org.isf.lab.model.Laboratory;
 import org.isf.patient.model.Patient;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface LabIoOperationRepository extends JpaRepository<Laboratory, Integer> {
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenOrderByLabDateDesc(LocalDateTime dateFrom, LocalDateTime dateTo);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenAndExamDescriptionOrderByLabDateDesc(LocalDateTime dateFrom, LocalDateTime dateTo, String exam);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByPatient_CodeOrderByLabDate(Integer patient);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenOrderByExam_Examtype_DescriptionDesc(LocalDateTime dateFrom, LocalDateTime dateTo);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenAndExam_DescriptionContainingOrderByExam_Examtype_DescriptionDesc(LocalDateTime dateFrom, LocalDateTime dateTo,
 					String exam);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenAndPatientCode(LocalDateTime dateFrom, LocalDateTime dateTo, Integer patientCode);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Laboratory> findByLabDateBetweenAndExamDescriptionAndPatientCode(LocalDateTime dateFrom, LocalDateTime dateTo, String exam, Integer patient);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select lab from Laboratory lab where lab.labDate >= :dateFrom and lab.labDate < :dateTo order by lab.labDate desc")
 	Page<Laboratory> findByLabDateBetweenOrderByLabDateDescPage(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo,
 					Pageable pageable);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select lab from Laboratory lab where (lab.labDate >= :dateFrom and lab.labDate < :dateTo) and lab.exam.description = :exam order by lab.labDate desc")
 	Page<Laboratory> findByLabDateBetweenAndExam_DescriptionOrderByLabDateDescPage(@Param("dateFrom") LocalDateTime dateFrom,
 					@Param("dateTo") LocalDateTime dateTo, @Param("exam") String exam, Pageable pageable);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select lab from Laboratory lab where (lab.labDate >= :dateFrom and lab.labDate < :dateTo) and lab.patient = :patient order by lab.labDate desc")
 	Page<Laboratory> findByLabDateBetweenAndPatientCodePage(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo,
 					@Param("patient") Patient patient, Pageable pageable);
 
+	@EntityGraph(value = Laboratory.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select lab from Laboratory lab where (lab.labDate >= :dateFrom and lab.labDate < :dateTo) and lab.exam.description = :exam and lab.patient = :patient order by lab.labDate desc")
 	Page<Laboratory> findByLabDateBetweenAndExamDescriptionAndPatientCodePage(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo,
 					@Param("exam") String exam, @Param("patient") Patient patient, Pageable pageable);
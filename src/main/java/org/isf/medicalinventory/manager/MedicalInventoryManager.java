@@ -23,8 +23,10 @@ package org.isf.medicalinventory.manager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.isf.generaldata.GeneralData;
@@ -36,7 +38,6 @@ import org.isf.medicals.model.Medical;
 import org.isf.medicalstock.manager.MovBrowserManager;
 import org.isf.medicalstock.manager.MovStockInsertingManager;
 import org.isf.medicalstock.model.Lot;
-import org.isf.medicalstock.model.Movement;
 import org.isf.utils.exception.OHDataValidationException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
@@ -253,66 +254,54 @@ public class MedicalInventoryManager {
 
 		// TODO: To decide if to make allMedicals parameter
 		boolean allMedicals = true;
-		List<Movement> movs = new ArrayList<>();
-		List<Medical> inventoryMedicalsList = inventoryRowSearchList.stream()
-						.map(MedicalInventoryRow::getMedical)
-						.distinct()
-						.collect(Collectors.toList());
-		if (allMedicals) {
-			// Fetch all movements without filtering by medical code
-			movs.addAll(movBrowserManager.getMovements(null, null, null, null, movFrom, movTo, null, null, null, null));
-		} else {
-			// Fetch only movements concerning inventoryRowSearchList list
-			for (Medical medical : inventoryMedicalsList) {
-				movs.addAll(movBrowserManager.getMovements(medical.getCode(), null, null, null, movFrom, movTo, null, null, null, null));
+		Set<Integer> inventoryMedicalCodes = inventoryRowSearchList.stream()
+						.map(row -> row.getMedical().getCode())
+						.collect(Collectors.toSet());
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = new HashMap<>();
+		for (MedicalInventoryRow row : inventoryRowSearchList) {
+			if (row.getLot() != null) {
+				inventoryRowsByLot.put(row.getLot().getCode(), row);
 			}
 		}
 
-		// Cycle fetched movements to see if they impact inventoryRowSearchList
-		for (Movement mov : movs) {
-			Lot movLot = mov.getLot();
-			String lotCodeOfMovement = movLot.getCode();
-			String lotExpiringDate = TimeTools.formatDateTime(movLot.getDueDate(), TimeTools.DD_MM_YYYY);
-			String lotInfo = GeneralData.AUTOMATICLOT_IN ? lotExpiringDate : lotCodeOfMovement;
-			Medical medical = mov.getMedical();
-			String medicalDesc = medical.getDescription();
-			Integer medicalCode = medical.getCode();
-
-			// Fetch also empty lots because some movements may have discharged them completely
-			Optional<Lot> lot = movStockInsertingManager.getLotByMedical(medical, false).stream().filter(l -> l.getCode().equals(lotCodeOfMovement))
-							.findFirst();
-			double mainStoreQty = lot.get().getMainStoreQuantity();
+		// Lots moved since the last change, with their current quantities (also empty lots, because some movements may have discharged them completely)
+		List<Lot> movedLots = movBrowserManager.getLotsWithMovementsBetween(movFrom, movTo);
+		if (!allMedicals) {
+			// Keep only lots concerning inventoryRowSearchList list
+			movedLots.removeIf(lot -> !inventoryMedicalCodes.contains(lot.getMedical().getCode()));
+		}
 
-			// Search for the specific Lot and Medical in inventoryRowSearchList (Lot should be enough)
-			Optional<MedicalInventoryRow> matchingRow = inventoryRowSearchList.stream()
-							.filter(row -> row.getLot().getCode().equals(lotCodeOfMovement) && row.getMedical().getCode().equals(medicalCode))
-							.findFirst();
+		List<MedicalInventoryRow> rowsToSave = new ArrayList<>();
+		for (Lot lot : movedLots) {
+			String lotCode = lot.getCode();
+			String lotExpiringDate = TimeTools.formatDateTime(lot.getDueDate(), TimeTools.DD_MM_YYYY);
+			String lotInfo = GeneralData.AUTOMATICLOT_IN ? lotExpiringDate : lotCode;
+			Medical medical = lot.getMedical();
+			String medicalDesc = medical.getDescription();
+			double mainStoreQty = lot.getMainStoreQuantity();
 
-			if (matchingRow.isPresent()) {
-				MedicalInventoryRow medicalInventoryRow = matchingRow.get();
+			MedicalInventoryRow medicalInventoryRow = inventoryRowsByLot.get(lotCode);
+			if (medicalInventoryRow != null && medicalInventoryRow.getMedical().getCode().equals(medical.getCode())) {
 				double theoQty = medicalInventoryRow.getTheoreticQty();
 				if (mainStoreQty != theoQty) {
 					// Update Lot
 					medicalInventoryRow.setTheoreticQty(mainStoreQty);
-					MedicalInventoryRow updatedRow = medicalInventoryRowManager.updateMedicalInventoryRow(medicalInventoryRow);
-					if (updatedRow != null) {
-						lotUpdated = true;
-						medDescriptionForLotUpdated
-										.append("\n")
-										.append(MessageBundle.formatMessage(
-														"angal.inventory.theoreticalqtyhavebeenupdatedforsomemedical.detail.fmt.msg",
-														medicalDesc, lotInfo, theoQty, mainStoreQty, mainStoreQty - theoQty));
-					}
+					rowsToSave.add(medicalInventoryRow);
+					lotUpdated = true;
+					medDescriptionForLotUpdated
+									.append("\n")
+									.append(MessageBundle.formatMessage(
+													"angal.inventory.theoreticalqtyhavebeenupdatedforsomemedical.detail.fmt.msg",
+													medicalDesc, lotInfo, theoQty, mainStoreQty, mainStoreQty - theoQty));
 				}
 			} else {
 				// TODO: to decide if to give control to the user about this
 				double realQty = mainStoreQty;
-				MedicalInventoryRow newMedicalInventoryRow = new MedicalInventoryRow(null, mainStoreQty, realQty, inventory, medical,
-								mov.getLot());
-				medicalInventoryRowManager.newMedicalInventoryRow(newMedicalInventoryRow);
+				MedicalInventoryRow newMedicalInventoryRow = new MedicalInventoryRow(null, mainStoreQty, realQty, inventory, medical, lot);
+				rowsToSave.add(newMedicalInventoryRow);
 				inventoryRowSearchList.add(newMedicalInventoryRow);
 
-				if (!inventoryMedicalsList.contains(medical)) {
+				if (!inventoryMedicalCodes.contains(medical.getCode())) {
 					// New medical
 					medicalAdded = true;
 					medDescriptionForNewMedical
@@ -331,6 +320,9 @@ public class MedicalInventoryManager {
 				}
 			}
 		}
+		if (!rowsToSave.isEmpty()) {
+			medicalInventoryRowManager.saveMedicalInventoryRows(rowsToSave);
+		}
 		List<OHExceptionMessage> errors = new ArrayList<>();
 		if (lotUpdated) {
 			errors.add(new OHExceptionMessage(MessageBundle.getMessage("angal.inventory.validate.btn"),
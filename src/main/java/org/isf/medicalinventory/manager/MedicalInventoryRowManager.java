@@ -71,6 +71,20 @@ public class MedicalInventoryRowManager {
 		return ioOperation.updateMedicalInventoryRow(medicalInventoryRow);
 	}
 	
+	/**
+	 * Insert or update the specified {@link MedicalInventoryRow}s in a single batch.
+	 *
+	 * @param medicalInventoryRows - the {@link MedicalInventoryRow}s to save.
+	 * @return the persisted {@link MedicalInventoryRow}s.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> saveMedicalInventoryRows(List<MedicalInventoryRow> medicalInventoryRows) throws OHServiceException {
+		for (MedicalInventoryRow medicalInventoryRow : medicalInventoryRows) {
+			validateMedicalInventoryRow(medicalInventoryRow);
+		}
+		return ioOperation.saveMedicalInventoryRows(medicalInventoryRows);
+	}
+
 	/**
 	 * Delete the specified {@link MedicalInventoryRow}.
 	 * @param medicalInventoryRow - the {@link MedicalInventoryRow} to delete.
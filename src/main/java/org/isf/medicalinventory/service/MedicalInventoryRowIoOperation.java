@@ -63,6 +63,17 @@ public class MedicalInventoryRowIoOperation {
 		return repository.save(medicalInventoryRow);
 	}
 	
+	/**
+	 * Insert or update the specified {@link MedicalInventoryRow}s in a single batch.
+	 *
+	 * @param medicalInventoryRows - the {@link MedicalInventoryRow}s to save.
+	 * @return the persisted {@link MedicalInventoryRow}s.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> saveMedicalInventoryRows(List<MedicalInventoryRow> medicalInventoryRows) throws OHServiceException {
+		return repository.saveAll(medicalInventoryRows);
+	}
+
 	/**
 	 * Delete the specified {@link MedicalInventoryRow}.
 	 * @param medicalInventoryRow - the {@link MedicalInventoryRow} to delete.
@@ -32,7 +32,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface MedicalsIoOperationRepository extends JpaRepository<Medical, Integer> {
+public interface MedicalsIoOperationRepository extends JpaRepository<Medical, Integer>, MedicalsIoOperationRepositoryCustom {
 
 	@Query(value = "SELECT m FROM Medical m where m.description like :description order BY m.description")
 	List<Medical> findAllWhereDescriptionOrderByDescription(@Param("description") String description);
@@ -0,0 +1,91 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicals.service;
+
+import java.util.Optional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import org.isf.medicals.model.Medical;
+import org.isf.utils.time.TimeTools;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+public class MedicalsIoOperationRepositoryImpl implements MedicalsIoOperationRepositoryCustom {
+
+	private static final String IN_QUANTITY = "MDSR_IN_QTI";
+
+	private static final String OUT_QUANTITY = "MDSR_OUT_QTI";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final AuditorAware<String> auditorAware;
+
+	public MedicalsIoOperationRepositoryImpl(AuditorAware<String> auditorAware) {
+		this.auditorAware = auditorAware;
+	}
+
+	@Override
+	public Medical incrementInQuantity(int medicalCode, double quantity) {
+		return incrementQuantity(IN_QUANTITY, medicalCode, quantity);
+	}
+
+	@Override
+	public Medical incrementOutQuantity(int medicalCode, double quantity) {
+		return incrementQuantity(OUT_QUANTITY, medicalCode, quantity);
+	}
+
+	/**
+	 * Applies the increment in the database with a single {@code UPDATE} (no read-modify-write in memory, so concurrent increments do not conflict)
+	 * and re-reads the {@link Medical} so that the returned entity reflects the stored quantities and version.
+	 * <p>
+	 * The {@code UPDATE} bypasses the auditing listener, so it sets the last modification date and user itself, the user only when known, as the
+	 * listener does.
+	 *
+	 * @return the updated {@link Medical} or {@code null} if not found.
+	 */
+	private Medical incrementQuantity(String quantityColumn, int medicalCode, double quantity) {
+		// pending changes must reach the database before the row is updated and re-read
+		entityManager.flush();
+		Optional<String> auditor = auditorAware.getCurrentAuditor();
+		Query update = entityManager.createNativeQuery("UPDATE OH_MEDICALDSR SET " + quantityColumn + " = " + quantityColumn + " + :quantity, "
+						+ "MDSR_LOCK = MDSR_LOCK + 1, MDSR_LAST_MODIFIED_DATE = :modifiedDate"
+						+ (auditor.isPresent() ? ", MDSR_LAST_MODIFIED_BY = :modifiedBy" : "")
+						+ " WHERE MDSR_ID = :medical")
+						.setParameter("quantity", quantity)
+						.setParameter("modifiedDate", TimeTools.getNow())
+						.setParameter("medical", medicalCode);
+		auditor.ifPresent(modifiedBy -> update.setParameter("modifiedBy", modifiedBy));
+		int updated = update.executeUpdate();
+		if (updated == 0) {
+			return null;
+		}
+		Medical medical = entityManager.find(Medical.class, medicalCode);
+		entityManager.refresh(medical);
+		return medical;
+	}
+
+}
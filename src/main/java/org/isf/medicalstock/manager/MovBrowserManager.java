@@ -21,15 +21,19 @@
  */
 package org.isf.medicalstock.manager;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperations;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotStock;
 import org.isf.medicalstock.model.Movement;
-import org.isf.medicalstock.service.LotIoOperationRepository;
+import org.isf.medicalstock.model.MovementMonthlyTotal;
 import org.isf.medicalstock.service.MedicalStockIoOperations;
 import org.isf.medicalstockward.manager.MovWardBrowserManager;
 import org.isf.medicalstockward.model.MedicalWard;
@@ -40,6 +44,7 @@ import org.isf.utils.exception.OHDataValidationException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -48,18 +53,15 @@ public class MovBrowserManager {
 
 	private MedicalStockIoOperations ioOperations;
 
-	private LotIoOperationRepository lotRepository;
-
 	private MedicalsIoOperations medicalsIoOperation;
 
 	private MedicalDsrStockMovementTypeBrowserManager medicalDsrStockMovTypeManager;
 
 	private MovWardBrowserManager movWardBrowserManager;
 
-	public MovBrowserManager(MedicalStockIoOperations ioOperations, LotIoOperationRepository lotRepository, MedicalsIoOperations medicalsIoOperation,
+	public MovBrowserManager(MedicalStockIoOperations ioOperations, MedicalsIoOperations medicalsIoOperation,
 					MedicalDsrStockMovementTypeBrowserManager medicalDsrStockMovTypeManager, MovWardBrowserManager movWardBrowserManager) {
 		this.ioOperations = ioOperations;
-		this.lotRepository = lotRepository;
 		this.medicalsIoOperation = medicalsIoOperation;
 		this.medicalDsrStockMovTypeManager = medicalDsrStockMovTypeManager;
 		this.movWardBrowserManager = movWardBrowserManager;
@@ -143,6 +145,96 @@ public class MovBrowserManager {
 		return ioOperations.getMovements(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
 	}
 
+	/**
+	 * Retrieves a page of the {@link Movement}s with the specified criteria.
+	 *
+	 * @param medicalCode the medical code.
+	 * @param medicalType the medical type.
+	 * @param wardId the ward type.
+	 * @param movType the movement type.
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @param lotPrepFrom the lower bound for the lot preparation date range.
+	 * @param lotPrepTo the upper bound for the lot preparation date range.
+	 * @param lotDueFrom the lower bound for the lot due date range.
+	 * @param lotDueTo the lower bound for the lot due date range.
+	 * @param page the page number.
+	 * @param size the page size.
+	 * @return the retrieved page of movements.
+	 * @throws OHServiceException
+	 */
+	public Page<Movement> getMovementsPageable(Integer medicalCode, String medicalType,
+					String wardId, String movType, LocalDateTime movFrom, LocalDateTime movTo,
+					LocalDateTime lotPrepFrom, LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom, LocalDateTime lotDueTo, int page, int size) throws OHServiceException {
+
+		check(movFrom, movTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotPrepFrom, lotPrepTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotDueFrom, lotDueTo, "angal.medicalstock.chooseavalidduedate.msg");
+
+		return ioOperations.getMovementsPageable(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo,
+						page, size);
+	}
+
+	/**
+	 * Retrieves the {@link Movement}s with the specified criteria using keyset pagination on movement date and code (both descending).
+	 *
+	 * @param medicalCode the medical code.
+	 * @param medicalType the medical type.
+	 * @param wardId the ward type.
+	 * @param movType the movement type.
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @param lotPrepFrom the lower bound for the lot preparation date range.
+	 * @param lotPrepTo the upper bound for the lot preparation date range.
+	 * @param lotDueFrom the lower bound for the lot due date range.
+	 * @param lotDueTo the lower bound for the lot due date range.
+	 * @param lastMovement the last movement of the previous page, {@code null} for the first page.
+	 * @param size the maximum number of movements to retrieve.
+	 * @return the retrieved movements.
+	 * @throws OHServiceException
+	 */
+	public List<Movement> getMovementsAfter(Integer medicalCode, String medicalType,
+					String wardId, String movType, LocalDateTime movFrom, LocalDateTime movTo,
+					LocalDateTime lotPrepFrom, LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom, LocalDateTime lotDueTo, Movement lastMovement, int size) throws OHServiceException {
+
+		check(movFrom, movTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotPrepFrom, lotPrepTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotDueFrom, lotDueTo, "angal.medicalstock.chooseavalidduedate.msg");
+
+		return ioOperations.getMovementsAfter(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo,
+						lastMovement, size);
+	}
+
+	/**
+	 * Passes all the {@link Movement}s with the specified criteria to the specified consumer, reading them in constant memory.
+	 *
+	 * @param medicalCode the medical code.
+	 * @param medicalType the medical type.
+	 * @param wardId the ward type.
+	 * @param movType the movement type.
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @param lotPrepFrom the lower bound for the lot preparation date range.
+	 * @param lotPrepTo the upper bound for the lot preparation date range.
+	 * @param lotDueFrom the lower bound for the lot due date range.
+	 * @param lotDueTo the lower bound for the lot due date range.
+	 * @param consumer the consumer of each movement.
+	 * @throws OHServiceException
+	 */
+	public void forEachMovement(Integer medicalCode, String medicalType,
+					String wardId, String movType, LocalDateTime movFrom, LocalDateTime movTo,
+					LocalDateTime lotPrepFrom, LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom, LocalDateTime lotDueTo, Consumer<Movement> consumer) throws OHServiceException {
+
+		check(movFrom, movTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotPrepFrom, lotPrepTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotDueFrom, lotDueTo, "angal.medicalstock.chooseavalidduedate.msg");
+
+		ioOperations.forEachMovement(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo, consumer);
+	}
+
 	private void check(LocalDateTime from, LocalDateTime to, String errMsgKey) throws OHDataValidationException {
 		if (from == null || to == null) {
 			if (!(from == null && to == null)) {
@@ -152,6 +244,21 @@ public class MovBrowserManager {
 		}
 	}
 
+	/**
+	 * Retrieves the lots moved in the specified days, with their current main store and wards quantities.
+	 *
+	 * @param movFrom - the first day
+	 * @param movTo - the last day
+	 * @return the lots, ordered by medical description and expiring first.
+	 * @throws OHServiceException
+	 */
+	public List<Lot> getLotsWithMovementsBetween(LocalDateTime movFrom, LocalDateTime movTo) throws OHServiceException {
+		if (movFrom == null || movTo == null) {
+			throw new OHDataValidationException(new OHExceptionMessage(MessageBundle.getMessage("angal.medicalstock.chooseavalidmovementdate.msg")));
+		}
+		return ioOperations.getLotsWithMovementsBetween(movFrom, movTo);
+	}
+
 	/**
 	 * Get the last Movement.
 	 *
@@ -184,7 +291,7 @@ public class MovBrowserManager {
 			List<Movement> movementWithSameLot = ioOperations.getMovementByLot(lot);
 			ioOperations.deleteMovement(lastMovement);
 			if (movementWithSameLot.size() == 1) {
-				lotRepository.deleteById(lot.getCode());
+				ioOperations.deleteLot(lot);
 			}
 		} else {
 			Ward ward = lastMovement.getWard();
@@ -210,4 +317,80 @@ public class MovBrowserManager {
 			ioOperations.deleteMovement(lastMovement);
 		}
 	}
+
+	/**
+	 * Retrieves the monthly movement totals of the specified {@link Medical} between two months, both included.
+	 *
+	 * @param medical - the medical
+	 * @param monthFrom - a date in the first month
+	 * @param monthTo - a date in the last month
+	 * @return the {@link MovementMonthlyTotal}s, ordered by month, ward and movement type.
+	 * @throws OHServiceException
+	 */
+	public List<MovementMonthlyTotal> getMovementMonthlyTotals(Medical medical, LocalDate monthFrom, LocalDate monthTo) throws OHServiceException {
+		return ioOperations.getMovementMonthlyTotals(medical, monthFrom, monthTo);
+	}
+
+	/**
+	 * Computes the average monthly consumption of every medical discharged in the twelve months preceding the month of the specified date.
+	 *
+	 * @param date - the date of the report
+	 * @return the average monthly discharged quantity per medical code.
+	 * @throws OHServiceException
+	 */
+	public Map<Integer, Double> getAverageMonthlyConsumptions(LocalDate date) throws OHServiceException {
+		return ioOperations.getAverageMonthlyConsumptions(date);
+	}
+
+	/**
+	 * Recomputes all the monthly movement totals from the movements.
+	 *
+	 * @return the number of monthly totals stored.
+	 * @throws OHServiceException
+	 */
+	public int rebuildMovementMonthlyTotals() throws OHServiceException {
+		return ioOperations.rebuildMovementMonthlyTotals();
+	}
+
+	/**
+	 * Retrieves the lot stocks of the specified {@link Medical}: the quantity of each lot in the main store and in each ward.
+	 *
+	 * @param medical - the medical
+	 * @return the {@link LotStock}s, ordered by lot and ward.
+	 * @throws OHServiceException
+	 */
+	public List<LotStock> getLotStocks(Medical medical) throws OHServiceException {
+		return ioOperations.getLotStocks(medical);
+	}
+
+	/**
+	 * Retrieves the total quantity of the specified medicals, main store and wards included, from their lot stocks.
+	 *
+	 * @param medicalCodes - the medical codes
+	 * @return the total quantity per medical code, medicals without lot stocks are missing.
+	 * @throws OHServiceException
+	 */
+	public Map<Integer, Double> getStockQuantities(List<Integer> medicalCodes) throws OHServiceException {
+		return ioOperations.getStockQuantities(medicalCodes);
+	}
+
+	/**
+	 * Compares the lot stocks with the quantities computed from the movements and from the ward quantities.
+	 *
+	 * @return the {@link LotStock}s that differ from the computed ones, with the computed quantity.
+	 * @throws OHServiceException
+	 */
+	public List<LotStock> verifyLotStocks() throws OHServiceException {
+		return ioOperations.verifyLotStocks();
+	}
+
+	/**
+	 * Recomputes all the lot stocks from the movements and from the ward quantities.
+	 *
+	 * @return the number of lot stocks stored.
+	 * @throws OHServiceException
+	 */
+	public int rebuildLotStocks() throws OHServiceException {
+		return ioOperations.rebuildLotStocks();
+	}
 }
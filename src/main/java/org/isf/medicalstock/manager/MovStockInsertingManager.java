@@ -24,7 +24,9 @@ package org.isf.medicalstock.manager;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.isf.generaldata.GeneralData;
 import org.isf.generaldata.MessageBundle;
@@ -406,17 +408,27 @@ public class MovStockInsertingManager {
 				throw new OHDataValidationException(errors);
 			}
 		}
-		List<Movement> dischargingMovements = new ArrayList<>();
+		// validate the whole list first, then store it in a single batch
+		Set<String> referenceNumbers = new HashSet<>();
 		for (Movement mov : movements) {
 			try {
-				dischargingMovements.addAll(prepareDishargingMovement(mov, checkReference));
+				validateMovement(mov, checkReference);
+				if (checkReference && !referenceNumbers.add(mov.getRefNo())) {
+					// the reference number is used by a previous movement of the same list
+					throw new OHDataValidationException(new OHExceptionMessage(
+						MessageBundle.getMessage("angal.medicalstock.multiplecharging.theinsertedreferencenumberalreadyexists.msg")));
+				}
 			} catch (OHServiceException e) {
 				List<OHExceptionMessage> errors = e.getMessages();
 				errors.add(new OHExceptionMessage(mov.getMedical().getDescription()));
 				throw new OHDataValidationException(errors);
 			}
 		}
-		return dischargingMovements;
+		try {
+			return ioOperations.newMultipleDischargingMovements(movements, isAutomaticLotOut());
+		} catch (OHServiceException e) {
+			throw new OHDataValidationException(e.getMessages());
+		}
 	}
 
 	/**
@@ -432,24 +444,6 @@ public class MovStockInsertingManager {
 		return ioOperations.storeLot(lotCode, lot, medical);
 	}
 
-	/**
-	 * Prepare the insert of the specified {@link Movement}
-	 *
-	 * @param movement - the movement to store.
-	 * @param checkReference - if {@code true} every movement must have unique reference number
-	 * @throws OHServiceException
-	 */
-	private List<Movement> prepareDishargingMovement(Movement movement, boolean checkReference) throws OHServiceException {
-		validateMovement(movement, checkReference);
-		if (isAutomaticLotOut()) {
-			return ioOperations.newAutomaticDischargingMovement(movement);
-		} else {
-			List<Movement> dischargeMovement = new ArrayList<>();
-			dischargeMovement.add(ioOperations.prepareDischargingMovement(movement));
-			return dischargeMovement;
-		}
-	}
-
 	/**
 	 * Deletes the specified {@link Lot}.
 	 *
@@ -0,0 +1,68 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Named counter used to hand out blocks of values, e.g. for automatic {@link Lot} codes.
+ */
+@Entity
+@Table(name = "OH_MEDICALDSRLOT_SEQUENCE")
+public class LotSequence {
+
+	@Id
+	@Column(name = "LTS_NAME")
+	private String name;
+
+	@NotNull
+	@Column(name = "LTS_NEXT_VALUE")
+	private long nextValue;
+
+	public LotSequence() {
+	}
+
+	public LotSequence(String name, long nextValue) {
+		this.name = name;
+		this.nextValue = nextValue;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getNextValue() {
+		return nextValue;
+	}
+
+	public void setNextValue(long nextValue) {
+		this.nextValue = nextValue;
+	}
+}
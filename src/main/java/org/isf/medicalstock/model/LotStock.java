@@ -0,0 +1,86 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+
+import org.isf.ward.model.Ward;
+
+/**
+ * Current quantity of a {@link Lot} of a medical in one location, kept up to date in the same transaction of each {@link Movement} and of each
+ * change to the ward quantities.
+ * <p>
+ * The main store quantity is stored under the {@link #NO_WARD} ward code, the quantities in the wards under their own ward codes; ward
+ * quantities without a lot are stored under the {@link #NO_LOT} lot code.
+ */
+@Entity
+@Table(name = "OH_MEDICALDSRLOTSTOCK", indexes = { @Index(name = "IDX_MEDICALDSRLOTSTOCK_LT_ID_A", columnList = "LST_LT_ID_A") })
+public class LotStock {
+
+	public static final String NO_WARD = "";
+
+	public static final String NO_LOT = "";
+
+	@EmbeddedId
+	private LotStockId id;
+
+	@NotNull
+	@Column(name = "LST_QTY")
+	private double quantity;
+
+	public LotStock() {
+	}
+
+	public LotStock(LotStockId id, double quantity) {
+		this.id = id;
+		this.quantity = quantity;
+	}
+
+	public static String getLotCode(Lot lot) {
+		return lot == null || lot.getCode() == null ? NO_LOT : lot.getCode();
+	}
+
+	public static String getWardCode(Ward ward) {
+		return ward == null ? NO_WARD : ward.getCode();
+	}
+
+	public LotStockId getId() {
+		return id;
+	}
+
+	public void setId(LotStockId id) {
+		this.id = id;
+	}
+
+	public double getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(double quantity) {
+		this.quantity = quantity;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotNull;
+
+@SuppressWarnings("serial")
+@Embeddable
+public class LotStockId implements Serializable {
+
+	@NotNull
+	@Column(name = "LST_MDSR_ID")
+	private Integer medicalCode;
+
+	@NotNull
+	@Column(name = "LST_LT_ID_A", length = 50)
+	private String lotCode;
+
+	@NotNull
+	@Column(name = "LST_WRD_ID_A", length = 3)
+	private String wardCode;
+
+	public LotStockId() {
+	}
+
+	public LotStockId(Integer medicalCode, String lotCode, String wardCode) {
+		this.medicalCode = medicalCode;
+		this.lotCode = lotCode;
+		this.wardCode = wardCode;
+	}
+
+	public Integer getMedicalCode() {
+		return medicalCode;
+	}
+
+	public void setMedicalCode(Integer medicalCode) {
+		this.medicalCode = medicalCode;
+	}
+
+	public String getLotCode() {
+		return lotCode;
+	}
+
+	public void setLotCode(String lotCode) {
+		this.lotCode = lotCode;
+	}
+
+	public String getWardCode() {
+		return wardCode;
+	}
+
+	public void setWardCode(String wardCode) {
+		this.wardCode = wardCode;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(medicalCode, lotCode, wardCode);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LotStockId)) {
+			return false;
+		}
+		LotStockId other = (LotStockId) obj;
+		return Objects.equals(medicalCode, other.medicalCode) && Objects.equals(lotCode, other.lotCode) && Objects.equals(wardCode, other.wardCode);
+	}
+}
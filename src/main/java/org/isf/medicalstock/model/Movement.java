@@ -32,6 +32,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
@@ -47,6 +50,14 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 @Entity
 @Table(name = "OH_MEDICALDSRSTOCKMOV")
+@NamedEntityGraph(name = Movement.GRAPH_LIST, attributeNodes = {
+		@NamedAttributeNode("medical"), @NamedAttributeNode("type"), @NamedAttributeNode("ward"), @NamedAttributeNode("lot"),
+		@NamedAttributeNode("supplier")
+})
+@NamedEntityGraph(name = Movement.GRAPH_PRINT, attributeNodes = {
+		@NamedAttributeNode(value = "medical", subgraph = "medical"), @NamedAttributeNode("type"), @NamedAttributeNode("ward"),
+		@NamedAttributeNode("lot"), @NamedAttributeNode("supplier")
+}, subgraphs = @NamedSubgraph(name = "medical", attributeNodes = @NamedAttributeNode("type")))
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "MMV_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "MMV_CREATED_DATE", updatable = false))
@@ -55,6 +66,16 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @AttributeOverride(name = "lastModifiedDate", column = @Column(name = "MMV_LAST_MODIFIED_DATE"))
 public class Movement extends Auditable<String> {
 
+	/**
+	 * Fetch plan of the movement lists: all the associations are joined to the movements select.
+	 */
+	public static final String GRAPH_LIST = "Movement.list";
+
+	/**
+	 * Fetch plan of a single movement and of the movements report: the list plan plus the medical type.
+	 */
+	public static final String GRAPH_PRINT = "Movement.print";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "MMV_ID")
@@ -0,0 +1,99 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Total quantity and number of the {@link Movement}s of a medical, ward and movement type in a month, kept up to date in the same transaction
+ * of each {@link Movement}.
+ * <p>
+ * The month is stored as a {@code yyyyMM} period, the movements without a ward are totalled under the {@link #NO_WARD} ward code.
+ */
+@Entity
+@Table(name = "OH_MEDICALDSRSTOCKMOV_MONTHLY", indexes = { @Index(name = "IDX_MEDICALDSRSTOCKMOV_MONTHLY_PERIOD", columnList = "MMM_PERIOD") })
+public class MovementMonthlyTotal {
+
+	public static final String NO_WARD = "";
+
+	@EmbeddedId
+	private MovementMonthlyTotalId id;
+
+	@NotNull
+	@Column(name = "MMM_QTY")
+	private long quantity;
+
+	@NotNull
+	@Column(name = "MMM_COUNT")
+	private int movements;
+
+	public MovementMonthlyTotal() {
+	}
+
+	public MovementMonthlyTotal(MovementMonthlyTotalId id, long quantity, int movements) {
+		this.id = id;
+		this.quantity = quantity;
+		this.movements = movements;
+	}
+
+	public static int getPeriod(LocalDate date) {
+		return date.getYear() * 100 + date.getMonthValue();
+	}
+
+	public static MovementMonthlyTotalId getId(Movement movement) {
+		LocalDateTime date = movement.getDate();
+		String wardCode = movement.getWard() == null ? NO_WARD : movement.getWard().getCode();
+		return new MovementMonthlyTotalId(movement.getMedical().getCode(), wardCode, movement.getType().getCode(), getPeriod(date.toLocalDate()));
+	}
+
+	public MovementMonthlyTotalId getId() {
+		return id;
+	}
+
+	public void setId(MovementMonthlyTotalId id) {
+		this.id = id;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(long quantity) {
+		this.quantity = quantity;
+	}
+
+	public int getMovements() {
+		return movements;
+	}
+
+	public void setMovements(int movements) {
+		this.movements = movements;
+	}
+}
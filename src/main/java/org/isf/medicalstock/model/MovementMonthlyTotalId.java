@@ -0,0 +1,110 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotNull;
+
+@SuppressWarnings("serial")
+@Embeddable
+public class MovementMonthlyTotalId implements Serializable {
+
+	@NotNull
+	@Column(name = "MMM_MDSR_ID")
+	private Integer medicalCode;
+
+	@NotNull
+	@Column(name = "MMM_WRD_ID_A", length = 3)
+	private String wardCode;
+
+	@NotNull
+	@Column(name = "MMM_MMVT_ID_A")
+	private String movementTypeCode;
+
+	@NotNull
+	@Column(name = "MMM_PERIOD")
+	private Integer period;
+
+	public MovementMonthlyTotalId() {
+	}
+
+	public MovementMonthlyTotalId(Integer medicalCode, String wardCode, String movementTypeCode, Integer period) {
+		this.medicalCode = medicalCode;
+		this.wardCode = wardCode;
+		this.movementTypeCode = movementTypeCode;
+		this.period = period;
+	}
+
+	public Integer getMedicalCode() {
+		return medicalCode;
+	}
+
+	public void setMedicalCode(Integer medicalCode) {
+		this.medicalCode = medicalCode;
+	}
+
+	public String getWardCode() {
+		return wardCode;
+	}
+
+	public void setWardCode(String wardCode) {
+		this.wardCode = wardCode;
+	}
+
+	public String getMovementTypeCode() {
+		return movementTypeCode;
+	}
+
+	public void setMovementTypeCode(String movementTypeCode) {
+		this.movementTypeCode = movementTypeCode;
+	}
+
+	public Integer getPeriod() {
+		return period;
+	}
+
+	public void setPeriod(Integer period) {
+		this.period = period;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(medicalCode, wardCode, movementTypeCode, period);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MovementMonthlyTotalId)) {
+			return false;
+		}
+		MovementMonthlyTotalId other = (MovementMonthlyTotalId) obj;
+		return Objects.equals(medicalCode, other.medicalCode) && Objects.equals(wardCode, other.wardCode)
+						&& Objects.equals(movementTypeCode, other.movementTypeCode) && Objects.equals(period, other.period);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import org.isf.medicalstock.model.Lot;
+import org.isf.utils.exception.OHServiceException;
+
+/**
+ * Generates the codes of the {@link Lot}s created automatically (see {@link org.isf.generaldata.GeneralData#AUTOMATICLOT_IN AUTOMATICLOT_IN}).
+ * <p>
+ * The default implementation is {@link SequenceLotCodeGenerator}; a different strategy can be plugged in by declaring a {@code @Primary} bean.
+ */
+public interface LotCodeGenerator {
+
+	/**
+	 * Creates a new unique lot code.
+	 *
+	 * @return the new unique code.
+	 * @throws OHServiceException if an error occurs during the code generation.
+	 */
+	String generateLotCode() throws OHServiceException;
+
+}
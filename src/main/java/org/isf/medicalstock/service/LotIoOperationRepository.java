@@ -21,6 +21,7 @@
  */
 package org.isf.medicalstock.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.isf.medicalstock.model.Lot;
@@ -33,12 +34,31 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface LotIoOperationRepository extends JpaRepository<Lot, String> {
 
-	@Query("select l from Lot l where l.medical.code = :medical order by l.dueDate")
-	List<Lot> findByMedicalOrderByDueDate(@Param("medical") int medicalCode);
+	String MAIN_STORE_QUANTITY = "(select coalesce(sum(s.quantity), 0.0) from LotStock s " +
+					"where s.id.lotCode = l.code and s.id.wardCode = '')";
+
+	String WARDS_TOTAL_QUANTITY = "(select coalesce(sum(s.quantity), 0.0) from LotStock s " +
+					"where s.id.lotCode = l.code and s.id.wardCode <> '')";
+
+	@Query("select l, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " from Lot l " +
+					"where l.medical.code = :medical order by l.dueDate")
+	List<Object[]> findWithQuantitiesByMedicalOrderByDueDate(@Param("medical") int medicalCode);
+
+	@Query("select l, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " from Lot l " +
+					"where l.medical.code = :medical and " + MAIN_STORE_QUANTITY + " > 0 order by l.dueDate")
+	List<Object[]> findNonEmptyWithQuantitiesByMedicalOrderByDueDate(@Param("medical") int medicalCode);
+
+	@Query("select l, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " from Lot l " +
+					"where l.medical.code in :medicals and " + MAIN_STORE_QUANTITY + " > 0 order by l.dueDate")
+	List<Object[]> findNonEmptyWithQuantitiesByMedicalsOrderByDueDate(@Param("medicals") List<Integer> medicalCodes);
 
 	@Query("select coalesce(sum(case when m.type.type like '+%' then m.quantity else -m.quantity end), 0) from Movement m where m.lot = :lot")
 	Integer getMainStoreQuantity(@Param("lot") Lot lot);
 
+	@Query("select l, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " from Lot l join fetch l.medical med " +
+					"where exists (select m.code from Movement m where m.lot = l and m.date between :from and :to) order by med.description, l.dueDate")
+	List<Object[]> findWithQuantitiesByMovementDateBetween(@Param("from") LocalDateTime dateFrom, @Param("to") LocalDateTime dateTo);
+
 	@Query("select coalesce(sum(w.in_quantity - w.out_quantity),0) FROM MedicalWard w WHERE w.id.lot = :lot")
 	Double getWardsTotalQuantity(@Param("lot") Lot lot);
 
@@ -51,12 +71,4 @@ public interface LotIoOperationRepository extends JpaRepository<Lot, String> {
 			+ " join OH_MEDICALDSRSTOCKMOVTYPE on MMV_MMVT_ID_A=MMVT_ID_A "
 			+ "where LT_ID_A=:code group by LT_ID_A order by LT_DUE_DATE", nativeQuery = true)
 	List<Object[]> findAllWhereLot(@Param("code") String code);
-
-	@Query("SELECT m.lot.code, COALESCE(SUM(CASE WHEN m.type.type LIKE '+%' THEN m.quantity ELSE -m.quantity END), 0) " +
-					"FROM Movement m WHERE m.lot.code IN :lotCodes GROUP BY m.lot.code")
-	List<Object[]> getMainStoreQuantities(@Param("lotCodes") List<String> lotCodes);
-
-	@Query("SELECT w.id.lot.code, COALESCE(SUM(w.in_quantity - w.out_quantity), 0.0) " +
-					"FROM MedicalWard w WHERE w.id.lot.code IN :lotCodes GROUP BY w.id.lot.code")
-	List<Object[]> getWardsTotalQuantities(@Param("lotCodes") List<String> lotCodes);
 }
@@ -0,0 +1,66 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import java.util.List;
+
+import org.isf.medicalstock.model.LotStock;
+import org.isf.medicalstock.model.LotStockId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LotStockIoOperationRepository extends JpaRepository<LotStock, LotStockId> {
+
+	@Modifying
+	@Query(value = "INSERT INTO OH_MEDICALDSRLOTSTOCK (LST_MDSR_ID, LST_LT_ID_A, LST_WRD_ID_A, LST_QTY) VALUES (:medical, :lot, :ward, :quantity) "
+					+ "ON DUPLICATE KEY UPDATE LST_QTY = LST_QTY + :quantity", nativeQuery = true)
+	void insertOrIncrement(@Param("medical") int medicalCode, @Param("lot") String lotCode, @Param("ward") String wardCode,
+					@Param("quantity") double quantity);
+
+	@Modifying
+	@Query(value = "INSERT INTO OH_MEDICALDSRLOTSTOCK (LST_MDSR_ID, LST_LT_ID_A, LST_WRD_ID_A, LST_QTY) VALUES (:medical, :lot, :ward, :quantity) "
+					+ "ON DUPLICATE KEY UPDATE LST_QTY = :quantity", nativeQuery = true)
+	void insertOrUpdate(@Param("medical") int medicalCode, @Param("lot") String lotCode, @Param("ward") String wardCode,
+					@Param("quantity") double quantity);
+
+	@Modifying
+	@Query("delete from LotStock s where s.id.medicalCode = :medical and s.id.lotCode = :lot and s.id.wardCode = :ward")
+	void deleteByMedicalCodeAndLotCodeAndWardCode(@Param("medical") int medicalCode, @Param("lot") String lotCode, @Param("ward") String wardCode);
+
+	@Modifying
+	@Query("delete from LotStock s where s.id.lotCode = :lot")
+	void deleteByLotCode(@Param("lot") String lotCode);
+
+	@Query("select s from LotStock s where s.id.medicalCode = :medical order by s.id.lotCode, s.id.wardCode")
+	List<LotStock> findByMedicalCode(@Param("medical") int medicalCode);
+
+	@Query("select s.id.medicalCode, sum(s.quantity) from LotStock s where s.id.medicalCode in :medicals group by s.id.medicalCode")
+	List<Object[]> sumQuantitiesByMedicals(@Param("medicals") List<Integer> medicalCodes);
+
+	@Query("select s.id.medicalCode, s.id.lotCode, s.id.wardCode, s.quantity from LotStock s")
+	List<Object[]> findAllQuantities();
+
+}
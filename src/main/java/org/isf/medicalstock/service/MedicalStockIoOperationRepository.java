@@ -22,6 +22,7 @@
 package org.isf.medicalstock.service;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.isf.medicalstock.model.MedicalStock;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -32,4 +33,8 @@ public interface MedicalStockIoOperationRepository extends JpaRepository<Medical
 
 	List<MedicalStock> findByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
 
+	Optional<MedicalStock> findFirstByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
+
+	List<MedicalStock> findTop2ByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
+
 }
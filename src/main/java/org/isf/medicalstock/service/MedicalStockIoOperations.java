@@ -25,9 +25,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.isf.generaldata.GeneralData;
@@ -35,8 +39,12 @@ import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperationRepository;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotStock;
+import org.isf.medicalstock.model.LotStockId;
 import org.isf.medicalstock.model.MedicalStock;
 import org.isf.medicalstock.model.Movement;
+import org.isf.medicalstock.model.MovementMonthlyTotal;
+import org.isf.medicalstock.model.MovementMonthlyTotalId;
 import org.isf.medicalstockward.model.MedicalWard;
 import org.isf.medicalstockward.service.MedicalStockWardIoOperationRepository;
 import org.isf.medstockmovtype.model.MovementType;
@@ -48,6 +56,8 @@ import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -61,6 +71,11 @@ public class MedicalStockIoOperations {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MedicalStockIoOperations.class);
 
+	/**
+	 * Largest difference between a stored and a computed {@link LotStock} quantity considered equal: ward quantities are stored as {@code float}.
+	 */
+	private static final double LOT_STOCK_TOLERANCE = 0.001;
+
 	private MovementIoOperationRepository movRepository;
 
 	private LotIoOperationRepository lotRepository;
@@ -71,15 +86,26 @@ public class MedicalStockIoOperations {
 
 	private MedicalStockWardIoOperationRepository medicalStockWardRepository;
 
+	private MovementMonthlyTotalIoOperationRepository movementMonthlyTotalRepository;
+
+	private LotStockIoOperationRepository lotStockRepository;
+
+	private LotCodeGenerator lotCodeGenerator;
+
 	public MedicalStockIoOperations(MovementIoOperationRepository movementIoOperationRepository, LotIoOperationRepository lotIoOperationRepository,
 					MedicalsIoOperationRepository medicalsIoOperationRepository,
 					MedicalStockIoOperationRepository medicalStockIoOperationRepository,
-					MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository) {
+					MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository,
+					MovementMonthlyTotalIoOperationRepository movementMonthlyTotalIoOperationRepository,
+					LotStockIoOperationRepository lotStockIoOperationRepository, LotCodeGenerator lotCodeGenerator) {
 		this.movRepository = movementIoOperationRepository;
 		this.lotRepository = lotIoOperationRepository;
 		this.medicalRepository = medicalsIoOperationRepository;
 		this.medicalStockRepository = medicalStockIoOperationRepository;
 		this.medicalStockWardRepository = medicalStockWardIoOperationRepository;
+		this.movementMonthlyTotalRepository = movementMonthlyTotalIoOperationRepository;
+		this.lotStockRepository = lotStockIoOperationRepository;
+		this.lotCodeGenerator = lotCodeGenerator;
 	}
 
 	public enum MovementOrder {
@@ -176,6 +202,131 @@ public class MedicalStockIoOperations {
 		return dischargingMovements;
 	}
 
+	/**
+	 * Stores the specified discharging {@link Movement}s as a single batch.
+	 * <p>
+	 * Medicals and lots involved in the whole list are loaded with a few queries, lots are allocated in memory (expiring first, splitting movements
+	 * if required when {@code automaticLot} is {@code true}) and then medical quantities, stock balances, lot stocks and ward quantities are updated
+	 * once per medical, date and ward/lot instead of once per movement.
+	 *
+	 * @param movements - the discharging {@link Movement}s to store
+	 * @param automaticLot - if {@code true} lots are selected automatically, otherwise each movement must specify its own lot
+	 * @return the stored {@link Movement}s
+	 * @throws OHServiceException if a movement cannot be allocated or an error occurs during the store operation
+	 */
+	public List<Movement> newMultipleDischargingMovements(List<Movement> movements, boolean automaticLot) throws OHServiceException {
+		if (movements.isEmpty()) {
+			return new ArrayList<>();
+		}
+		List<Integer> medicalCodes = movements.stream().map(movement -> movement.getMedical().getCode()).distinct().collect(Collectors.toList());
+		Map<Integer, Medical> medicals = medicalRepository.findAllById(medicalCodes).stream()
+						.collect(Collectors.toMap(Medical::getCode, Function.identity()));
+
+		List<Movement> dischargingMovements = new ArrayList<>();
+		if (automaticLot) {
+			Map<Integer, List<Lot>> lotsByMedical = getLotsByMedicals(medicalCodes);
+			Map<Integer, Double> availableQuantities = new HashMap<>();
+			for (Movement movement : movements) {
+				Medical medical = medicals.get(movement.getMedical().getCode());
+				try {
+					if (medical == null) {
+						throw new OHServiceException(new OHExceptionMessage("Medical '" + movement.getMedical().getCode() + "' not found."));
+					}
+					double available = availableQuantities.computeIfAbsent(medical.getCode(), code -> medical.getTotalQuantity());
+					List<Lot> lots = lotsByMedical.getOrDefault(medical.getCode(), Collections.emptyList());
+					dischargingMovements.addAll(allocateDischargingMovement(movement, medical, available, lots));
+					availableQuantities.put(medical.getCode(), available - movement.getQuantity());
+				} catch (OHServiceException serviceException) {
+					List<OHExceptionMessage> errors = serviceException.getMessages();
+					errors.add(new OHExceptionMessage(movement.getMedical().getDescription()));
+					throw new OHServiceException(errors);
+				}
+			}
+		} else {
+			List<String> lotCodes = movements.stream()
+							.filter(movement -> movement.getLot() != null)
+							.map(movement -> movement.getLot().getCode())
+							.distinct()
+							.collect(Collectors.toList());
+			Map<String, Lot> lots = lotRepository.findAllById(lotCodes).stream()
+							.collect(Collectors.toMap(Lot::getCode, Function.identity()));
+			for (Movement movement : movements) {
+				String lotCode = movement.getLot() != null ? movement.getLot().getCode() : null;
+				Lot lot = lots.get(lotCode);
+				if (lot == null) {
+					List<OHExceptionMessage> errors = new ArrayList<>();
+					errors.add(new OHExceptionMessage("Lot '" + lotCode + "' not found."));
+					errors.add(new OHExceptionMessage(movement.getMedical().getDescription()));
+					throw new OHServiceException(errors);
+				}
+				movement.setLot(lot);
+				dischargingMovements.add(movement);
+			}
+		}
+
+		List<Movement> storedMovements = movRepository.saveAll(dischargingMovements);
+		updateStockQuantities(storedMovements);
+		return storedMovements;
+	}
+
+	/**
+	 * Splits the specified discharging {@link Movement} on the specified lots, expiring first, consuming the lots quantities in memory.
+	 *
+	 * @param movement - the movement to split
+	 * @param medical - the medical of the movement
+	 * @param medicalQty - the quantity of the medical still available
+	 * @param lots - the non empty lots of the medical, expiring first
+	 * @return the movements to store, one per lot used
+	 * @throws OHServiceException if the available quantity is not enough or there are no lots
+	 */
+	private List<Movement> allocateDischargingMovement(Movement movement, Medical medical, double medicalQty, List<Lot> lots) throws OHServiceException {
+		List<Movement> dischargingMovements = new ArrayList<>();
+		int qty = movement.getQuantity(); // movement initial quantity
+
+		if (qty > medicalQty) {
+			throw new OHServiceException(new OHExceptionMessage(MessageBundle.formatMessage(
+							"angal.medicalstock.multipledischarging.movementexceedstheavailablequantityformedical.fmt.msg", medicalQty,
+							medical.getDescription())));
+		}
+		if (lots.stream().noneMatch(lot -> lot.getMainStoreQuantity() > 0)) {
+			String message = MessageBundle.formatMessage(
+							"angal.medicalstock.multipledischarging.nolotswithavailablequantityfoundformedicalpleasereport.fmt.msg",
+							medical.getDescription());
+			LOGGER.error(message);
+			throw new OHServiceException(new OHExceptionMessage(message));
+		}
+		for (Lot lot : lots) {
+			int qtLot = lot.getMainStoreQuantity();
+			if (qtLot <= 0) {
+				continue;
+			}
+			Movement splitMovement = new Movement(medical, movement.getType(), movement.getWard(),
+							lot,
+							movement.getDate(),
+							Math.min(qtLot, qty),
+							null,
+							movement.getRefNo());
+			dischargingMovements.add(splitMovement);
+			lot.setMainStoreQuantity(qtLot - splitMovement.getQuantity());
+			qty = qty - splitMovement.getQuantity();
+			if (qty == 0) {
+				break;
+			}
+		}
+		return dischargingMovements;
+	}
+
+	/**
+	 * Retrieves the non empty lots of the specified medicals, expiring first, with their main store and wards quantities.
+	 *
+	 * @param medicalCodes - the medical codes
+	 * @return the lots grouped by medical code
+	 */
+	private Map<Integer, List<Lot>> getLotsByMedicals(List<Integer> medicalCodes) {
+		List<Lot> lots = toLotsWithQuantities(lotRepository.findNonEmptyWithQuantitiesByMedicalsOrderByDueDate(medicalCodes));
+		return lots.stream().collect(Collectors.groupingBy(lot -> lot.getMedical().getCode(), LinkedHashMap::new, Collectors.toList()));
+	}
+
 	/**
 	 * Stores the specified {@link Movement}.
 	 * 
@@ -258,22 +409,18 @@ public class MedicalStockIoOperations {
 	}
 
 	/**
-	 * Creates a new unique lot code.
+	 * Creates a new unique lot code using the configured {@link LotCodeGenerator}.
+	 * Codes already taken by a manually inserted lot are skipped.
 	 * 
 	 * @return the new unique code.
 	 * @throws OHServiceException if an error occurs during the code generation.
 	 */
 	protected String generateLotCode() throws OHServiceException {
-		Random random = new Random();
-		long candidateCode;
-		Lot lot;
-
+		String lotCode;
 		do {
-			candidateCode = Math.abs(random.nextLong());
-			lot = lotRepository.findById(String.valueOf(candidateCode)).orElse(null);
-		} while (lot != null);
-
-		return String.valueOf(candidateCode);
+			lotCode = lotCodeGenerator.generateLotCode();
+		} while (lotRepository.existsById(lotCode));
+		return lotCode;
 	}
 
 	/**
@@ -341,6 +488,8 @@ public class MedicalStockIoOperations {
 			Medical medical = movement.getMedical();
 			Medical updatedMedical = updateMedicalIncomingQuantity(medical.getCode(), movement.getQuantity());
 			updateMedicalStockTable(updatedMedical, movement.getDate().toLocalDate(), movement.getQuantity());
+			updateMovementMonthlyTotal(movement, movement.getQuantity(), 1);
+			updateLotStock(medical, movement.getLot(), null, movement.getQuantity());
 			return updatedMedical;
 
 		} else {
@@ -349,6 +498,8 @@ public class MedicalStockIoOperations {
 			try {
 				Medical updatedMedical = updateMedicalOutcomingQuantity(medical.getCode(), movement.getQuantity());
 				updateMedicalStockTable(updatedMedical, movement.getDate().toLocalDate(), -movement.getQuantity());
+				updateMovementMonthlyTotal(movement, movement.getQuantity(), 1);
+				updateLotStock(medical, movement.getLot(), null, -movement.getQuantity());
 				Ward ward = movement.getWard();
 				if (ward != null) {
 					// updates stock quantity for wards
@@ -362,7 +513,82 @@ public class MedicalStockIoOperations {
 	}
 
 	/**
-	 * Updates the incoming quantity for the specified medical.
+	 * Updates {@link Medical} stock quantities for the specified {@link Movement}s, aggregating them: one update per medical for incoming and
+	 * outgoing quantities, one stock balance update per medical and date, one main store lot stock update per medical and lot, one ward quantity
+	 * update per ward, medical and lot and one monthly total update per medical, ward, movement type and month.
+	 *
+	 * @param movements the movements.
+	 * @throws OHServiceException if an error occurs during the update.
+	 */
+	protected void updateStockQuantities(List<Movement> movements) throws OHServiceException {
+		Map<Integer, Double> incomingQuantities = new LinkedHashMap<>();
+		Map<Integer, Double> outgoingQuantities = new LinkedHashMap<>();
+		Map<Integer, TreeMap<LocalDate, Integer>> balanceIncrements = new LinkedHashMap<>();
+		Map<List<Object>, Movement> lotMovements = new LinkedHashMap<>();
+		Map<List<Object>, Integer> lotIncrements = new HashMap<>();
+		Map<List<Object>, Movement> wardMovements = new LinkedHashMap<>();
+		Map<List<Object>, Integer> wardQuantities = new HashMap<>();
+		Map<MovementMonthlyTotalId, Movement> monthlyMovements = new LinkedHashMap<>();
+		Map<MovementMonthlyTotalId, int[]> monthlyIncrements = new HashMap<>();
+
+		for (Movement movement : movements) {
+			int medicalCode = movement.getMedical().getCode();
+			int quantity = movement.getQuantity();
+			boolean incoming = movement.getType().getType().contains("+");
+			if (incoming) {
+				incomingQuantities.merge(medicalCode, (double) quantity, Double::sum);
+			} else {
+				outgoingQuantities.merge(medicalCode, (double) quantity, Double::sum);
+				if (movement.getWard() != null) {
+					List<Object> key = List.of(movement.getWard().getCode(), medicalCode, movement.getLot().getCode());
+					wardMovements.putIfAbsent(key, movement);
+					wardQuantities.merge(key, quantity, Integer::sum);
+				}
+			}
+			balanceIncrements.computeIfAbsent(medicalCode, code -> new TreeMap<>())
+							.merge(movement.getDate().toLocalDate(), incoming ? quantity : -quantity, Integer::sum);
+			List<Object> lotKey = List.of(medicalCode, movement.getLot().getCode());
+			lotMovements.putIfAbsent(lotKey, movement);
+			lotIncrements.merge(lotKey, incoming ? quantity : -quantity, Integer::sum);
+			MovementMonthlyTotalId monthlyTotalId = MovementMonthlyTotal.getId(movement);
+			monthlyMovements.putIfAbsent(monthlyTotalId, movement);
+			int[] monthlyIncrement = monthlyIncrements.computeIfAbsent(monthlyTotalId, id -> new int[2]);
+			monthlyIncrement[0] += quantity;
+			monthlyIncrement[1]++;
+		}
+
+		for (Map.Entry<Integer, TreeMap<LocalDate, Integer>> entry : balanceIncrements.entrySet()) {
+			int medicalCode = entry.getKey();
+			Medical updatedMedical = null;
+			if (incomingQuantities.containsKey(medicalCode)) {
+				updatedMedical = updateMedicalIncomingQuantity(medicalCode, incomingQuantities.get(medicalCode));
+			}
+			if (outgoingQuantities.containsKey(medicalCode)) {
+				updatedMedical = updateMedicalOutcomingQuantity(medicalCode, outgoingQuantities.get(medicalCode));
+			}
+			for (Map.Entry<LocalDate, Integer> increment : entry.getValue().entrySet()) {
+				updateMedicalStockTable(updatedMedical, increment.getKey(), increment.getValue());
+			}
+		}
+
+		for (Map.Entry<MovementMonthlyTotalId, Movement> entry : monthlyMovements.entrySet()) {
+			int[] monthlyIncrement = monthlyIncrements.get(entry.getKey());
+			updateMovementMonthlyTotal(entry.getValue(), monthlyIncrement[0], monthlyIncrement[1]);
+		}
+
+		for (Map.Entry<List<Object>, Movement> entry : lotMovements.entrySet()) {
+			Movement movement = entry.getValue();
+			updateLotStock(movement.getMedical(), movement.getLot(), null, lotIncrements.get(entry.getKey()));
+		}
+
+		for (Map.Entry<List<Object>, Movement> entry : wardMovements.entrySet()) {
+			Movement movement = entry.getValue();
+			updateMedicalWardQuantity(movement.getWard(), movement.getMedical(), wardQuantities.get(entry.getKey()), movement.getLot());
+		}
+	}
+
+	/**
+	 * Updates the incoming quantity for the specified medical with an atomic increment in the database.
 	 * 
 	 * @param medicalCode the medical code.
 	 * @param incrementQuantity the quantity to add.
@@ -370,16 +596,15 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
 	protected Medical updateMedicalIncomingQuantity(int medicalCode, double incrementQuantity) throws OHServiceException {
-		Medical medical = medicalRepository.findById(medicalCode).orElse(null);
+		Medical medical = medicalRepository.incrementInQuantity(medicalCode, incrementQuantity);
 		if (medical == null) {
 			throw new OHServiceException(new OHExceptionMessage("Medical '" + medicalCode + "' not found."));
 		}
-		medical.setInqty(medical.getInqty() + incrementQuantity);
-		return medicalRepository.save(medical);
+		return medical;
 	}
 
 	/**
-	 * Updates the outcoming quantity for the specified medicinal.
+	 * Updates the outcoming quantity for the specified medicinal with an atomic increment in the database.
 	 * 
 	 * @param medicalCode the medical code.
 	 * @param incrementQuantity the quantity to add to the current outcoming quantity.
@@ -387,12 +612,11 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
 	protected Medical updateMedicalOutcomingQuantity(int medicalCode, double incrementQuantity) throws OHServiceException {
-		Medical medical = medicalRepository.findById(medicalCode).orElse(null);
+		Medical medical = medicalRepository.incrementOutQuantity(medicalCode, incrementQuantity);
 		if (medical == null) {
 			throw new OHServiceException(new OHExceptionMessage("Medical '" + medicalCode + "' not found."));
 		}
-		medical.setOutqty(medical.getOutqty() + incrementQuantity);
-		return medicalRepository.save(medical);
+		return medical;
 	}
 
 	/**
@@ -407,14 +631,14 @@ public class MedicalStockIoOperations {
 	 */
 	private MedicalStock updateMedicalStockTable(Medical medical, LocalDate date, int incrementQuantity) throws OHServiceException {
 
-		List<MedicalStock> medicalStockList = medicalStockRepository.findByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
-		MedicalStock medicalStock;
+		// only the latest balance is needed: the ledger is updated incrementally
+		MedicalStock medicalStock = medicalStockRepository.findFirstByMedicalCodeOrderByBalanceDateDesc(medical.getCode()).orElse(null);
 
-		if (medicalStockList.isEmpty() && incrementQuantity < 0) {
+		if (medicalStock == null && incrementQuantity < 0) {
 			throw new OHServiceException(
 							new OHExceptionMessage("Medical '" + medical.getDescription() + "' (" + medical.getCode() + ") not found (not possible)."));
 		}
-		if (medicalStockList.isEmpty()) {
+		if (medicalStock == null) {
 			// first insert
 			medicalStock = new MedicalStock();
 			medicalStock.setMedical(medical);
@@ -423,7 +647,6 @@ public class MedicalStockIoOperations {
 			return medicalStockRepository.save(medicalStock);
 		}
 
-		medicalStock = medicalStockList.get(0);
 		if (TimeTools.isSameDay(date, medicalStock.getBalanceDate())) {
 			// update if the same date
 			int balance = medicalStock.getBalance();
@@ -446,6 +669,35 @@ public class MedicalStockIoOperations {
 		return medicalStockRepository.save(newMedicalStock);
 	}
 
+	/**
+	 * Adds the increments to the {@link MovementMonthlyTotal} of the medical, ward, movement type and month of the specified {@link Movement},
+	 * inserting it if missing, and removes it when it has no more movements.
+	 *
+	 * @param movement the movement.
+	 * @param incrementQuantity the quantity to add (remove if negative) to the monthly total.
+	 * @param incrementMovements the number of movements to add (remove if negative) to the monthly total.
+	 */
+	private void updateMovementMonthlyTotal(Movement movement, int incrementQuantity, int incrementMovements) {
+		MovementMonthlyTotalId id = MovementMonthlyTotal.getId(movement);
+		movementMonthlyTotalRepository.insertOrIncrement(id.getMedicalCode(), id.getWardCode(), id.getMovementTypeCode(), id.getPeriod(),
+						incrementQuantity, incrementMovements);
+		if (incrementMovements < 0) {
+			movementMonthlyTotalRepository.deleteIfEmpty(id.getMedicalCode(), id.getWardCode(), id.getMovementTypeCode(), id.getPeriod());
+		}
+	}
+
+	/**
+	 * Adds the increment to the {@link LotStock} of the specified medical and lot in the specified ward, inserting it if missing.
+	 *
+	 * @param medical the medical.
+	 * @param lot the lot.
+	 * @param ward the ward, {@code null} for the main store.
+	 * @param incrementQuantity the quantity to add (remove if negative) to the lot stock.
+	 */
+	private void updateLotStock(Medical medical, Lot lot, Ward ward, double incrementQuantity) {
+		lotStockRepository.insertOrIncrement(medical.getCode(), LotStock.getLotCode(lot), LotStock.getWardCode(ward), incrementQuantity);
+	}
+
 	/**
 	 * Updates medical quantity for the specified ward.
 	 * 
@@ -466,6 +718,7 @@ public class MedicalStockIoOperations {
 			medicalWard = new MedicalWard(ward, medical, quantity, 0, lot);
 			medicalStockWardRepository.insertMedicalWard(ward.getCode(), medical.getCode(), (double) quantity, lot.getCode());
 		}
+		updateLotStock(medical, lot, ward, quantity);
 		return medicalStockWardRepository.save(medicalWard);
 	}
 
@@ -489,20 +742,7 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the movements.
 	 */
 	public List<Movement> getMovements(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-		// TODO: investigate whether findMovementWhereDatesAndId() could return a List<Movement> directly
-		// to remove the need to fetch the movements later in the loop below
-		List<Integer> pMovementCode = movRepository.findMovementWhereDatesAndId(wardId, TimeTools.truncateToSeconds(dateFrom),
-						TimeTools.truncateToSeconds(dateTo));
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+		return movRepository.findMovementWhereDatesAndId(wardId, TimeTools.truncateToSeconds(dateFrom), TimeTools.truncateToSeconds(dateTo));
 	}
 
 	/**
@@ -532,24 +772,139 @@ public class MedicalStockIoOperations {
 					LocalDateTime lotPrepTo,
 					LocalDateTime lotDueFrom,
 					LocalDateTime lotDueTo) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-
-		List<Integer> pMovementCode = movRepository.findMovementWhereData(medicalCode, medicalType, wardId, movType,
+		return movRepository.findMovementWhereData(medicalCode, medicalType, wardId, movType,
 						TimeTools.truncateToSeconds(movFrom),
 						TimeTools.truncateToSeconds(movTo),
 						TimeTools.truncateToSeconds(lotPrepFrom),
 						TimeTools.truncateToSeconds(lotPrepTo),
 						TimeTools.truncateToSeconds(lotDueFrom),
 						TimeTools.truncateToSeconds(lotDueTo));
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+	}
+
+	/**
+	 * Retrieves a page of the stored {@link Movement} with the specified criteria, with the same ordering of
+	 * {@link #getMovements(Integer, String, String, String, LocalDateTime, LocalDateTime, LocalDateTime, LocalDateTime, LocalDateTime, LocalDateTime)}.
+	 *
+	 * @param medicalCode the {@link Medical} code (optional).
+	 * @param medicalType the {@link MedicalType} code (optional).
+	 * @param wardId the {@link Ward} id (optional).
+	 * @param movType the {@link MovementType} code or {@code "+"}/{@code "-"} for all charge/discharge types (optional).
+	 * @param movFrom the lower bound for the movement date range (optional).
+	 * @param movTo the upper bound for the movement date range (optional).
+	 * @param lotPrepFrom the lower bound for the lot preparation date range (optional).
+	 * @param lotPrepTo the upper bound for the lot preparation date range (optional).
+	 * @param lotDueFrom the lower bound for the lot due date range (optional).
+	 * @param lotDueTo the lower bound for the lot due date range (optional).
+	 * @param page the page number.
+	 * @param size the page size.
+	 * @return the retrieved page of movements.
+	 * @throws OHServiceException
+	 */
+	public Page<Movement> getMovementsPageable(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					int page,
+					int size) throws OHServiceException {
+		return movRepository.findMovementWhereData(medicalCode, medicalType, wardId, movType,
+						TimeTools.truncateToSeconds(movFrom),
+						TimeTools.truncateToSeconds(movTo),
+						TimeTools.truncateToSeconds(lotPrepFrom),
+						TimeTools.truncateToSeconds(lotPrepTo),
+						TimeTools.truncateToSeconds(lotDueFrom),
+						TimeTools.truncateToSeconds(lotDueTo),
+						PageRequest.of(page, size));
+	}
+
+	/**
+	 * Retrieves the stored {@link Movement}s with the specified criteria using keyset pagination: movements are ordered by date and code (both
+	 * descending) and the page starts right after {@code lastMovement}, so that the cost of each page does not depend on its position.
+	 *
+	 * @param medicalCode the {@link Medical} code (optional).
+	 * @param medicalType the {@link MedicalType} code (optional).
+	 * @param wardId the {@link Ward} id (optional).
+	 * @param movType the {@link MovementType} code or {@code "+"}/{@code "-"} for all charge/discharge types (optional).
+	 * @param movFrom the lower bound for the movement date range (optional).
+	 * @param movTo the upper bound for the movement date range (optional).
+	 * @param lotPrepFrom the lower bound for the lot preparation date range (optional).
+	 * @param lotPrepTo the upper bound for the lot preparation date range (optional).
+	 * @param lotDueFrom the lower bound for the lot due date range (optional).
+	 * @param lotDueTo the lower bound for the lot due date range (optional).
+	 * @param lastMovement the last movement of the previous page, {@code null} for the first page.
+	 * @param size the maximum number of movements to retrieve.
+	 * @return the retrieved movements.
+	 * @throws OHServiceException
+	 */
+	public List<Movement> getMovementsAfter(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					Movement lastMovement,
+					int size) throws OHServiceException {
+		return movRepository.findMovementWhereDataAfter(medicalCode, medicalType, wardId, movType,
+						TimeTools.truncateToSeconds(movFrom),
+						TimeTools.truncateToSeconds(movTo),
+						TimeTools.truncateToSeconds(lotPrepFrom),
+						TimeTools.truncateToSeconds(lotPrepTo),
+						TimeTools.truncateToSeconds(lotDueFrom),
+						TimeTools.truncateToSeconds(lotDueTo),
+						lastMovement != null ? lastMovement.getDate() : null,
+						lastMovement != null ? lastMovement.getCode() : null,
+						size);
+	}
+
+	/**
+	 * Passes all the stored {@link Movement}s with the specified criteria, ordered by date and code (both descending), to the specified consumer.
+	 * Movements are read through a forward-only cursor and detached once consumed, so that large exports run in constant memory.
+	 *
+	 * @param medicalCode the {@link Medical} code (optional).
+	 * @param medicalType the {@link MedicalType} code (optional).
+	 * @param wardId the {@link Ward} id (optional).
+	 * @param movType the {@link MovementType} code or {@code "+"}/{@code "-"} for all charge/discharge types (optional).
+	 * @param movFrom the lower bound for the movement date range (optional).
+	 * @param movTo the upper bound for the movement date range (optional).
+	 * @param lotPrepFrom the lower bound for the lot preparation date range (optional).
+	 * @param lotPrepTo the upper bound for the lot preparation date range (optional).
+	 * @param lotDueFrom the lower bound for the lot due date range (optional).
+	 * @param lotDueTo the lower bound for the lot due date range (optional).
+	 * @param consumer the consumer of each movement.
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public void forEachMovement(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					Consumer<Movement> consumer) throws OHServiceException {
+		movRepository.forEachMovementWhereData(medicalCode, medicalType, wardId, movType,
+						TimeTools.truncateToSeconds(movFrom),
+						TimeTools.truncateToSeconds(movTo),
+						TimeTools.truncateToSeconds(lotPrepFrom),
+						TimeTools.truncateToSeconds(lotPrepTo),
+						TimeTools.truncateToSeconds(lotDueFrom),
+						TimeTools.truncateToSeconds(lotDueTo),
+						consumer);
 	}
 
 	/**
@@ -575,18 +930,7 @@ public class MedicalStockIoOperations {
 					LocalDateTime movTo,
 					String lotCode,
 					MovementOrder order) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-
-		List<Integer> pMovementCode = movRepository.findMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo, lotCode, order);
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+		return movRepository.findMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo, lotCode, order);
 	}
 
 	/**
@@ -598,48 +942,41 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the lot list.
 	 */
 	public List<Lot> getLotsByMedical(Medical medical, boolean removeEmpty) throws OHServiceException {
-		List<Lot> lots = lotRepository.findByMedicalOrderByDueDate(medical.getCode());
-
-		if (lots.isEmpty()) {
-			return Collections.emptyList();
-		}
-
-		// Get all lot IDs
-		List<String> lotCodes = lots.stream().map(Lot::getCode).collect(Collectors.toList());
-
-		// Retrieve quantities in batch
-		List<Object[]> mainStoreQuantities = lotRepository.getMainStoreQuantities(lotCodes);
-		List<Object[]> wardsTotalQuantities = lotRepository.getWardsTotalQuantities(lotCodes);
-
-		// Process mainStoreQuantities and update lots
-		for (Object[] result : mainStoreQuantities) {
-			String lotCode = (String) result[0];
-			int mainStoreQuantity = ((Long) result[1]).intValue();
-
-			// Find the corresponding lot in the lots list
-			Optional<Lot> matchingLot = lots.stream().filter(lot -> lot.getCode().equals(lotCode)).findFirst();
-
-			// Update the lot if found
-			matchingLot.ifPresent(lot -> lot.setMainStoreQuantity(mainStoreQuantity));
-		}
-
-		// Process wardsTotalQuantities and update lots
-		for (Object[] result : wardsTotalQuantities) {
-			String lotCode = (String) result[0];
-			Double wardsTotalQuantity = (Double) result[1];
-
-			// Find the corresponding lot in the lots list
-			Optional<Lot> matchingLot = lots.stream().filter(lot -> lot.getCode().equals(lotCode)).findFirst();
+		// lots and their quantities are retrieved in a single query, empty lots are stripped out by the database
+		List<Object[]> results = removeEmpty
+						? lotRepository.findNonEmptyWithQuantitiesByMedicalOrderByDueDate(medical.getCode())
+						: lotRepository.findWithQuantitiesByMedicalOrderByDueDate(medical.getCode());
+		return toLotsWithQuantities(results);
+	}
 
-			// Update the lot if found
-			matchingLot.ifPresent(lot -> lot.setWardsTotalQuantity(wardsTotalQuantity));
-		}
+	/**
+	 * Retrieves the lots that had at least one {@link Movement} in the specified days, with their current quantities, ordered by medical
+	 * description and expiring first.
+	 *
+	 * @param dateFrom the first day.
+	 * @param dateTo the last day.
+	 * @return a list of {@link Lot}.
+	 * @throws OHServiceException if an error occurs retrieving the lot list.
+	 */
+	public List<Lot> getLotsWithMovementsBetween(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		return toLotsWithQuantities(lotRepository.findWithQuantitiesByMovementDateBetween(TimeTools.getBeginningOfDay(dateFrom),
+						TimeTools.getBeginningOfNextDay(dateTo)));
+	}
 
-		// Remove empty lots
-		if (removeEmpty) {
-			lots.removeIf(lot -> lot.getMainStoreQuantity() <= 0);
+	/**
+	 * Converts rows made of a {@link Lot}, its main store quantity and its wards total quantity into lots with quantities set.
+	 *
+	 * @param results the rows.
+	 * @return the list of {@link Lot}s, in the same order.
+	 */
+	private List<Lot> toLotsWithQuantities(List<Object[]> results) {
+		List<Lot> lots = new ArrayList<>(results.size());
+		for (Object[] result : results) {
+			Lot lot = (Lot) result[0];
+			lot.setMainStoreQuantity(((Number) result[1]).intValue());
+			lot.setWardsTotalQuantity(((Number) result[2]).doubleValue());
+			lots.add(lot);
 		}
-
 		return lots;
 	}
 
@@ -693,7 +1030,8 @@ public class MedicalStockIoOperations {
 	public void deleteMovement(Movement movement) throws OHServiceException {
 		Medical medical = movement.getMedical();
 		int code = medical.getCode();
-		List<MedicalStock> medicalStockList = medicalStockRepository.findByMedicalCodeOrderByBalanceDateDesc(code);
+		// the latest balance and, if any, the previous one are all that is needed to roll back the ledger
+		List<MedicalStock> medicalStockList = medicalStockRepository.findTop2ByMedicalCodeOrderByBalanceDateDesc(code);
 		if (medicalStockList.isEmpty()) {
 			throw new OHServiceException(new OHExceptionMessage("Medical '" + medical.getDescription() + "' (" + code + ") not found (not possible)."));
 		}
@@ -742,6 +1080,8 @@ public class MedicalStockIoOperations {
 			}
 		}
 		movRepository.delete(movement);
+		updateMovementMonthlyTotal(movement, -movement.getQuantity(), -1);
+		updateLotStock(medical, movement.getLot(), null, movType.getType().contains("+") ? -movement.getQuantity() : movement.getQuantity());
 	}
 
 	/**
@@ -755,13 +1095,162 @@ public class MedicalStockIoOperations {
 	}
 
 	/**
-	 * Deletes the specified {@link Lot}.
+	 * Deletes the specified {@link Lot} and its {@link LotStock}s.
 	 *
 	 * @param lot the lot to delete.
 	 * @throws OHServiceException
 	 */
 	public void deleteLot(Lot lot) throws OHServiceException {
+		lotStockRepository.deleteByLotCode(lot.getCode());
 		lotRepository.delete(lot);
 	}
 
+	/**
+	 * Retrieves the {@link MovementMonthlyTotal}s of the specified {@link Medical} between two months, both included.
+	 *
+	 * @param medical the medical.
+	 * @param monthFrom a date in the first month.
+	 * @param monthTo a date in the last month.
+	 * @return the monthly totals, ordered by month, ward and movement type.
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public List<MovementMonthlyTotal> getMovementMonthlyTotals(Medical medical, LocalDate monthFrom, LocalDate monthTo) throws OHServiceException {
+		return movementMonthlyTotalRepository.findByMedicalCodeAndPeriodBetween(medical.getCode(), MovementMonthlyTotal.getPeriod(monthFrom),
+						MovementMonthlyTotal.getPeriod(monthTo));
+	}
+
+	/**
+	 * Computes the average monthly consumption (AMC) of every medical discharged in the twelve months preceding the month of the specified date,
+	 * the same period of the pharmaceutical AMC report.
+	 *
+	 * @param date the date of the report.
+	 * @return the average monthly discharged quantity per medical code.
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, Double> getAverageMonthlyConsumptions(LocalDate date) throws OHServiceException {
+		int periodFrom = MovementMonthlyTotal.getPeriod(date.minusMonths(12));
+		int periodTo = MovementMonthlyTotal.getPeriod(date.minusMonths(1));
+		Map<Integer, Double> consumptions = new HashMap<>();
+		for (Object[] result : movementMonthlyTotalRepository.sumDischargedQuantitiesByMedical(periodFrom, periodTo)) {
+			consumptions.put((Integer) result[0], ((Number) result[1]).doubleValue() / 12);
+		}
+		return consumptions;
+	}
+
+	/**
+	 * Recomputes all the {@link MovementMonthlyTotal}s from the {@link Movement}s.
+	 *
+	 * @return the number of {@link MovementMonthlyTotal}s stored.
+	 * @throws OHServiceException
+	 */
+	public int rebuildMovementMonthlyTotals() throws OHServiceException {
+		movementMonthlyTotalRepository.deleteAllInBatch();
+		List<MovementMonthlyTotal> monthlyTotals = new ArrayList<>();
+		for (Object[] result : movRepository.findAllMonthlyTotals()) {
+			String wardCode = result[1] == null ? MovementMonthlyTotal.NO_WARD : (String) result[1];
+			int period = ((Number) result[3]).intValue() * 100 + ((Number) result[4]).intValue();
+			MovementMonthlyTotalId id = new MovementMonthlyTotalId((Integer) result[0], wardCode, (String) result[2], period);
+			monthlyTotals.add(new MovementMonthlyTotal(id, ((Number) result[5]).longValue(), ((Number) result[6]).intValue()));
+		}
+		movementMonthlyTotalRepository.saveAll(monthlyTotals);
+		LOGGER.info("{} movement monthly totals rebuilt", monthlyTotals.size());
+		return monthlyTotals.size();
+	}
+
+	/**
+	 * Retrieves the {@link LotStock}s of the specified {@link Medical}: the quantity of each lot in the main store and in each ward.
+	 *
+	 * @param medical the medical.
+	 * @return the lot stocks, ordered by lot and ward.
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public List<LotStock> getLotStocks(Medical medical) throws OHServiceException {
+		return lotStockRepository.findByMedicalCode(medical.getCode());
+	}
+
+	/**
+	 * Retrieves the total quantity of the specified medicals, main store and wards included, from their {@link LotStock}s.
+	 *
+	 * @param medicalCodes the medical codes.
+	 * @return the total quantity per medical code, medicals without lot stocks are missing.
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, Double> getStockQuantities(List<Integer> medicalCodes) throws OHServiceException {
+		Map<Integer, Double> quantities = new HashMap<>();
+		if (medicalCodes.isEmpty()) {
+			return quantities;
+		}
+		for (Object[] result : lotStockRepository.sumQuantitiesByMedicals(medicalCodes)) {
+			quantities.put((Integer) result[0], ((Number) result[1]).doubleValue());
+		}
+		return quantities;
+	}
+
+	/**
+	 * Compares the stored {@link LotStock}s with the quantities computed from the {@link Movement}s, for the main store, and from the
+	 * {@link MedicalWard}s, for the wards.
+	 *
+	 * @return the {@link LotStock}s that differ from the computed ones, with the computed quantity (zero if nothing is computed for them).
+	 * @throws OHServiceException
+	 */
+	@Transactional(readOnly = true)
+	public List<LotStock> verifyLotStocks() throws OHServiceException {
+		Map<LotStockId, Double> quantities = computeLotStocks();
+		Map<LotStockId, Double> storedQuantities = new HashMap<>();
+		for (Object[] result : lotStockRepository.findAllQuantities()) {
+			LotStockId id = new LotStockId((Integer) result[0], (String) result[1], (String) result[2]);
+			storedQuantities.put(id, ((Number) result[3]).doubleValue());
+			quantities.putIfAbsent(id, 0.0);
+		}
+		List<LotStock> differences = new ArrayList<>();
+		for (Map.Entry<LotStockId, Double> entry : quantities.entrySet()) {
+			double storedQuantity = storedQuantities.getOrDefault(entry.getKey(), 0.0);
+			if (Math.abs(storedQuantity - entry.getValue()) > LOT_STOCK_TOLERANCE) {
+				LotStockId id = entry.getKey();
+				LOGGER.warn("Lot stock of medical {}, lot '{}', ward '{}' is {} instead of {}", id.getMedicalCode(), id.getLotCode(), id.getWardCode(),
+								storedQuantity, entry.getValue());
+				differences.add(new LotStock(id, entry.getValue()));
+			}
+		}
+		return differences;
+	}
+
+	/**
+	 * Recomputes all the {@link LotStock}s from the {@link Movement}s, for the main store, and from the {@link MedicalWard}s, for the wards.
+	 *
+	 * @return the number of {@link LotStock}s stored.
+	 * @throws OHServiceException
+	 */
+	public int rebuildLotStocks() throws OHServiceException {
+		lotStockRepository.deleteAllInBatch();
+		Map<LotStockId, Double> quantities = computeLotStocks();
+		for (Map.Entry<LotStockId, Double> entry : quantities.entrySet()) {
+			LotStockId id = entry.getKey();
+			lotStockRepository.insertOrUpdate(id.getMedicalCode(), id.getLotCode(), id.getWardCode(), entry.getValue());
+		}
+		LOGGER.info("{} lot stocks rebuilt", quantities.size());
+		return quantities.size();
+	}
+
+	/**
+	 * Computes the quantity of each lot in the main store, from the {@link Movement}s, and in each ward, from the {@link MedicalWard}s.
+	 *
+	 * @return the quantities per {@link LotStockId}.
+	 */
+	private Map<LotStockId, Double> computeLotStocks() {
+		Map<LotStockId, Double> quantities = new HashMap<>();
+		for (Object[] result : movRepository.findAllLotQuantities()) {
+			quantities.put(new LotStockId((Integer) result[0], (String) result[1], LotStock.NO_WARD), ((Number) result[2]).doubleValue());
+		}
+		for (Object[] result : medicalStockWardRepository.findAllLotQuantities()) {
+			String lotCode = result[1] == null ? LotStock.NO_LOT : (String) result[1];
+			quantities.merge(new LotStockId((Integer) result[0], lotCode, (String) result[2]), ((Number) result[3]).doubleValue(), Double::sum);
+		}
+		return quantities;
+	}
+
 }
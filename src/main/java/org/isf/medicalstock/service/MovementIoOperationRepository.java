@@ -23,9 +23,12 @@ package org.isf.medicalstock.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.isf.medicalstock.model.Lot;
 import org.isf.medicalstock.model.Movement;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -34,9 +37,15 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface MovementIoOperationRepository extends JpaRepository<Movement, Integer>, MovementIoOperationRepositoryCustom {
 
+	@Override
+	@EntityGraph(value = Movement.GRAPH_PRINT, type = EntityGraphType.LOAD)
+	Optional<Movement> findById(Integer id);
+
+	@EntityGraph(value = Movement.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select m from Movement m join m.medical med where med.code = :code")
 	List<Movement> findAllByMedicalCode(@Param("code") Integer code);
 
+	@EntityGraph(value = Movement.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select m from Movement m join m.medical med where med.code = :code")
 	Movement findAllByMedicalCodeOrderByLot_(@Param("code") Integer code);
 
@@ -47,6 +56,7 @@ public interface MovementIoOperationRepository extends JpaRepository<Movement, I
 					"where lot.code=:lot")
 	List<Integer> findAllByLot(@Param("lot") String lot);
 
+	@EntityGraph(value = Movement.GRAPH_LIST, type = EntityGraphType.LOAD)
 	@Query(value = "select mov from Movement mov " +
 					"join mov.type movtype " +
 					"left join mov.lot lot " +
@@ -54,6 +64,7 @@ public interface MovementIoOperationRepository extends JpaRepository<Movement, I
 					"where mov.refNo = :refNo order by mov.date, mov.refNo")
 	List<Movement> findAllByRefNo(@Param("refNo") String refNo);
 
+	@EntityGraph(value = Movement.GRAPH_LIST, type = EntityGraphType.LOAD)
 	List<Movement> findByLot(Lot lot);
 
 	@Query(value = "select max(mov.date) from Movement mov")
@@ -68,4 +79,12 @@ public interface MovementIoOperationRepository extends JpaRepository<Movement, I
 	@Query("select count(m) from Movement m where active=1")
 	long countAllActiveMovements();
 
+	@Query("select m.medical.code, w.code, m.type.code, year(m.date), month(m.date), sum(m.quantity), count(m) from Movement m left join m.ward w "
+					+ "group by m.medical.code, w.code, m.type.code, year(m.date), month(m.date)")
+	List<Object[]> findAllMonthlyTotals();
+
+	@Query("select m.medical.code, m.lot.code, sum(case when m.type.type like '+%' then m.quantity else -m.quantity end) from Movement m "
+					+ "group by m.medical.code, m.lot.code")
+	List<Object[]> findAllLotQuantities();
+
 }
@@ -23,20 +23,52 @@ package org.isf.medicalstock.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstock.service.MedicalStockIoOperations.MovementOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MovementIoOperationRepositoryCustom {
 
-	List<Integer> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo);
+	List<Movement> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo);
 
-	List<Integer> findMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
+	List<Movement> findMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
 			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
 			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo);
 
-	List<Integer> findMovementForPrint(String medicalDescription, String medicalTypeCode, String wardId,
+	Page<Movement> findMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
+			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
+			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo, Pageable pageable);
+
+	/**
+	 * Keyset pagination on (date, code), both descending: returns at most {@code limit} movements that follow the movement identified by
+	 * {@code lastDate} and {@code lastCode} ({@code null} for the first page).
+	 */
+	List<Movement> findMovementWhereDataAfter(Integer medicalCode, String medicalType, String wardId, String movType,
+			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
+			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo,
+			LocalDateTime lastDate, Integer lastCode, int limit);
+
+	/**
+	 * Forward-only, read-only stream ordered by (date, code) descending; it must be consumed and closed within the current transaction.
+	 */
+	Stream<Movement> streamMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
+			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
+			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo);
+
+	/**
+	 * Passes every movement of {@link #streamMovementWhereData} to the consumer, detaching it afterwards so that memory usage stays constant.
+	 */
+	void forEachMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
+			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
+			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo, Consumer<Movement> consumer);
+
+	List<Movement> findMovementForPrint(String medicalDescription, String medicalTypeCode, String wardId,
 			String movType, LocalDateTime movFrom, LocalDateTime movTo, String lotCode, MovementOrder order);
 
 }
@@ -24,11 +24,15 @@ package org.isf.medicalstock.service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
@@ -41,6 +45,9 @@ import org.isf.medstockmovtype.model.MovementType;
 import org.isf.medtype.model.MedicalType;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -53,20 +60,32 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 	private static final String MEDICAL = "medical";
 	private static final String LOT = "lot";
 	private static final String TYPE = "type";
+	private static final String SUPPLIER = "supplier";
 	private static final String DESCRIPTION = "description";
+	private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+	private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+	private static final int STREAM_FETCH_SIZE = 500;
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public List<Integer> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
-		return getMovementWhereDatesAndId(wardId, dateFrom, dateTo);
+	public List<Movement> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
+		Root<Movement> root = query.from(Movement.class);
+		fetchAssociations(root);
+		query.select(root);
+
+		List<Order> orderList = new ArrayList<>();
+		orderList.add(builder.desc(root.get(DATE)));
+		orderList.add(builder.desc(root.get(REF_NO)));
+		query.where(getMovementWhereDatesAndIdPredicates(builder, root, wardId, dateFrom, dateTo)).orderBy(orderList);
+		return entityManager.createQuery(query).getResultList();
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public List<Integer> findMovementWhereData(
+	public List<Movement> findMovementWhereData(
 					Integer medicalCode,
 					String medicalType,
 					String wardId,
@@ -77,47 +96,90 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 					LocalDateTime lotPrepTo,
 					LocalDateTime lotDueFrom,
 					LocalDateTime lotDueTo) {
-		return getMovementWhereData(medicalCode, medicalType, wardId, movType, movFrom, movTo,
-						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
+		Root<Movement> root = query.from(Movement.class);
+		fetchAssociations(root);
+		query.select(root);
+		query.where(getMovementWhereDataPredicates(builder, root, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo)).orderBy(getMovementWhereDataOrder(builder, root));
+		return entityManager.createQuery(query).getResultList();
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public List<Integer> findMovementForPrint(
-					String medicalDescription,
-					String medicalTypeCode,
+	public Page<Movement> findMovementWhereData(
+					Integer medicalCode,
+					String medicalType,
 					String wardId,
 					String movType,
 					LocalDateTime movFrom,
 					LocalDateTime movTo,
-					String lotCode,
-					MovementOrder order) {
-		return getMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo,
-						lotCode, order);
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					Pageable pageable) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+		CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+		Root<Movement> countRoot = countQuery.from(Movement.class);
+		countQuery.select(builder.count(countRoot));
+		countQuery.where(getMovementWhereDataPredicates(builder, countRoot, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo));
+		long total = entityManager.createQuery(countQuery).getSingleResult();
+
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
+		Root<Movement> root = query.from(Movement.class);
+		fetchAssociations(root);
+		query.select(root);
+		query.where(getMovementWhereDataPredicates(builder, root, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo)).orderBy(getMovementWhereDataOrder(builder, root));
+		List<Movement> content = entityManager.createQuery(query)
+						.setFirstResult((int) pageable.getOffset())
+						.setMaxResults(pageable.getPageSize())
+						.getResultList();
+		return new PageImpl<>(content, pageable, total);
 	}
 
-	private List<Integer> getMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
+	@Override
+	public List<Movement> findMovementWhereDataAfter(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					LocalDateTime lastDate,
+					Integer lastCode,
+					int limit) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
-		List<Predicate> predicates = new ArrayList<>();
+		fetchAssociations(root);
+		query.select(root);
 
-		if ((dateFrom != null) && (dateTo != null)) {
-			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(dateFrom), TimeTools.getBeginningOfNextDay(dateTo)));
+		List<Predicate> predicates = new ArrayList<>(List.of(getMovementWhereDataPredicates(builder, root, medicalCode, medicalType, wardId, movType,
+						movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo)));
+		if (lastDate != null && lastCode != null) {
+			// keyset condition: (date, code) < (lastDate, lastCode)
+			predicates.add(builder.or(
+							builder.lessThan(root.<LocalDateTime> get(DATE), lastDate),
+							builder.and(
+											builder.equal(root.<LocalDateTime> get(DATE), lastDate),
+											builder.lessThan(root.<Integer> get(CODE), lastCode))));
 		}
-		if (wardId != null && !wardId.equals("")) {
-			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
-		}
-
-		List<Order> orderList = new ArrayList<>();
-		orderList.add(builder.desc(root.get(DATE)));
-		orderList.add(builder.desc(root.get(REF_NO)));
-		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
-		return entityManager.createQuery(query).getResultList();
+		query.where(predicates.toArray(new Predicate[] {})).orderBy(getKeysetOrder(builder, root));
+		return entityManager.createQuery(query)
+						.setMaxResults(limit)
+						.getResultList();
 	}
 
-	private List<Integer> getMovementWhereData(
+	@Override
+	public Stream<Movement> streamMovementWhereData(
 					Integer medicalCode,
 					String medicalType,
 					String wardId,
@@ -129,49 +191,46 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 					LocalDateTime lotDueFrom,
 					LocalDateTime lotDueTo) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
-		List<Predicate> predicates = new ArrayList<>();
-
-		if (medicalCode != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<String> get(CODE), medicalCode));
-		}
-		if (medicalType != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE).<String> get(CODE), medicalType));
-		}
-		if ((movFrom != null) && (movTo != null)) {
-			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(movFrom), TimeTools.getBeginningOfNextDay(movTo)));
-		}
-		if ((lotPrepFrom != null) && (lotPrepTo != null)) {
-			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("preparationDate"), TimeTools.getBeginningOfDay(lotPrepFrom),
-							TimeTools.getBeginningOfNextDay(lotPrepTo)));
-		}
-		if ((lotDueFrom != null) && (lotDueTo != null)) {
-			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("dueDate"), TimeTools.getBeginningOfDay(lotDueFrom),
-							TimeTools.getBeginningOfNextDay(lotDueTo)));
-		}
-		if ("+".equals(movType)) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
-
-		} else if ("-".equals(movType)) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
+		fetchAssociations(root);
+		query.select(root);
+		query.where(getMovementWhereDataPredicates(builder, root, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo)).orderBy(getKeysetOrder(builder, root));
+		TypedQuery<Movement> typedQuery = entityManager.createQuery(query)
+						.setHint(HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+						.setHint(HINT_READ_ONLY, true);
+		return typedQuery.getResultStream();
+	}
 
-		} else if (movType != null) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(CODE), movType));
-		}
-		if (wardId != null) {
-			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
+	@Override
+	public void forEachMovementWhereData(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					Consumer<Movement> consumer) {
+		try (Stream<Movement> movements = streamMovementWhereData(medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo)) {
+			movements.forEach(movement -> {
+				consumer.accept(movement);
+				// keep the persistence context from growing with the result set
+				entityManager.detach(movement);
+				if (movement.getLot() != null) {
+					entityManager.detach(movement.getLot());
+				}
+			});
 		}
-
-		List<Order> orderList = new ArrayList<>();
-		orderList.add(builder.desc(root.get(CODE)));
-		orderList.add(builder.desc(root.get(REF_NO)));
-		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
-		return entityManager.createQuery(query).getResultList();
 	}
 
-	private List<Integer> getMovementForPrint(
+	@Override
+	public List<Movement> findMovementForPrint(
 					String medicalDescription,
 					String medicalTypeCode,
 					String wardId,
@@ -181,9 +240,10 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 					String lotCode,
 					MovementOrder order) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
+		fetchAssociations(root);
+		query.select(root);
 		List<Predicate> predicates = new ArrayList<>();
 
 		if (medicalDescription != null) {
@@ -228,4 +288,92 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 		return entityManager.createQuery(query).getResultList();
 	}
 
+	/**
+	 * Fetches in the same select all the many-to-one associations of a {@link Movement} (and the type of its {@link Medical}), so that the returned
+	 * movements are fully hydrated without further queries. Left joins are used in order not to change the result set.
+	 *
+	 * @param root the {@link Movement} root.
+	 */
+	private void fetchAssociations(Root<Movement> root) {
+		root.fetch(MEDICAL, JoinType.LEFT).fetch(TYPE, JoinType.LEFT);
+		root.fetch(TYPE, JoinType.LEFT);
+		root.fetch(WARD, JoinType.LEFT);
+		root.fetch(LOT, JoinType.LEFT);
+		root.fetch(SUPPLIER, JoinType.LEFT);
+	}
+
+	private Predicate[] getMovementWhereDatesAndIdPredicates(CriteriaBuilder builder, Root<Movement> root, String wardId, LocalDateTime dateFrom,
+					LocalDateTime dateTo) {
+		List<Predicate> predicates = new ArrayList<>();
+
+		if ((dateFrom != null) && (dateTo != null)) {
+			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(dateFrom), TimeTools.getBeginningOfNextDay(dateTo)));
+		}
+		if (wardId != null && !wardId.equals("")) {
+			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
+		}
+		return predicates.toArray(new Predicate[] {});
+	}
+
+	private Predicate[] getMovementWhereDataPredicates(
+					CriteriaBuilder builder,
+					Root<Movement> root,
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo) {
+		List<Predicate> predicates = new ArrayList<>();
+
+		if (medicalCode != null) {
+			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<String> get(CODE), medicalCode));
+		}
+		if (medicalType != null) {
+			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE).<String> get(CODE), medicalType));
+		}
+		if ((movFrom != null) && (movTo != null)) {
+			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(movFrom), TimeTools.getBeginningOfNextDay(movTo)));
+		}
+		if ((lotPrepFrom != null) && (lotPrepTo != null)) {
+			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("preparationDate"), TimeTools.getBeginningOfDay(lotPrepFrom),
+							TimeTools.getBeginningOfNextDay(lotPrepTo)));
+		}
+		if ((lotDueFrom != null) && (lotDueTo != null)) {
+			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("dueDate"), TimeTools.getBeginningOfDay(lotDueFrom),
+							TimeTools.getBeginningOfNextDay(lotDueTo)));
+		}
+		if ("+".equals(movType)) {
+			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
+
+		} else if ("-".equals(movType)) {
+			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
+
+		} else if (movType != null) {
+			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(CODE), movType));
+		}
+		if (wardId != null) {
+			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
+		}
+		return predicates.toArray(new Predicate[] {});
+	}
+
+	private List<Order> getKeysetOrder(CriteriaBuilder builder, Root<Movement> root) {
+		List<Order> orderList = new ArrayList<>();
+		orderList.add(builder.desc(root.get(DATE)));
+		orderList.add(builder.desc(root.get(CODE)));
+		return orderList;
+	}
+
+	private List<Order> getMovementWhereDataOrder(CriteriaBuilder builder, Root<Movement> root) {
+		List<Order> orderList = new ArrayList<>();
+		orderList.add(builder.desc(root.get(CODE)));
+		orderList.add(builder.desc(root.get(REF_NO)));
+		return orderList;
+	}
+
 }
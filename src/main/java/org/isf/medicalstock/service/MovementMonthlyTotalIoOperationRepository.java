@@ -0,0 +1,60 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import java.util.List;
+
+import org.isf.medicalstock.model.MovementMonthlyTotal;
+import org.isf.medicalstock.model.MovementMonthlyTotalId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MovementMonthlyTotalIoOperationRepository extends JpaRepository<MovementMonthlyTotal, MovementMonthlyTotalId> {
+
+	@Modifying
+	@Query(value = "INSERT INTO OH_MEDICALDSRSTOCKMOV_MONTHLY (MMM_MDSR_ID, MMM_WRD_ID_A, MMM_MMVT_ID_A, MMM_PERIOD, MMM_QTY, MMM_COUNT) "
+					+ "VALUES (:medical, :ward, :type, :period, :quantity, :movements) "
+					+ "ON DUPLICATE KEY UPDATE MMM_QTY = MMM_QTY + :quantity, MMM_COUNT = MMM_COUNT + :movements", nativeQuery = true)
+	void insertOrIncrement(@Param("medical") int medicalCode, @Param("ward") String wardCode, @Param("type") String movementTypeCode,
+					@Param("period") int period, @Param("quantity") long quantity, @Param("movements") int movements);
+
+	@Modifying
+	@Query(value = "DELETE FROM OH_MEDICALDSRSTOCKMOV_MONTHLY WHERE MMM_MDSR_ID = :medical AND MMM_WRD_ID_A = :ward AND MMM_MMVT_ID_A = :type "
+					+ "AND MMM_PERIOD = :period AND MMM_COUNT <= 0", nativeQuery = true)
+	void deleteIfEmpty(@Param("medical") int medicalCode, @Param("ward") String wardCode, @Param("type") String movementTypeCode,
+					@Param("period") int period);
+
+	@Query("select t from MovementMonthlyTotal t where t.id.medicalCode = :medical and t.id.period between :periodFrom and :periodTo "
+					+ "order by t.id.period, t.id.wardCode, t.id.movementTypeCode")
+	List<MovementMonthlyTotal> findByMedicalCodeAndPeriodBetween(@Param("medical") int medicalCode, @Param("periodFrom") int periodFrom,
+					@Param("periodTo") int periodTo);
+
+	@Query("select t.id.medicalCode, sum(t.quantity) from MovementMonthlyTotal t, MovementType mt "
+					+ "where mt.code = t.id.movementTypeCode and mt.type like '-%' and t.id.period between :periodFrom and :periodTo "
+					+ "group by t.id.medicalCode")
+	List<Object[]> sumDischargedQuantitiesByMedical(@Param("periodFrom") int periodFrom, @Param("periodTo") int periodTo);
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.isf.medicalstock.model.LotSequence;
+import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * {@link LotCodeGenerator} backed by a database counter (hi-lo): each instance reserves a block of values from {@code OH_MEDICALDSRLOT_SEQUENCE} in
+ * its own short transaction and then hands them out from memory, so that generating a code needs no lookup and concurrent transactions (or
+ * processes) never receive the same code.
+ * <p>
+ * Codes are prefixed with {@value #PREFIX} in order to keep them apart from the numeric codes generated by previous versions.
+ */
+@Component
+public class SequenceLotCodeGenerator implements LotCodeGenerator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SequenceLotCodeGenerator.class);
+
+	public static final String PREFIX = "A";
+
+	static final String SEQUENCE_NAME = "LOT_CODE";
+
+	static final int BLOCK_SIZE = 100;
+
+	private final LotSequenceIoOperationRepository repository;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private volatile Block currentBlock;
+
+	public SequenceLotCodeGenerator(LotSequenceIoOperationRepository lotSequenceIoOperationRepository, PlatformTransactionManager transactionManager) {
+		this.repository = lotSequenceIoOperationRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@Override
+	public String generateLotCode() throws OHServiceException {
+		while (true) {
+			Block block = currentBlock;
+			if (block != null) {
+				long value = block.next.getAndIncrement();
+				if (value < block.limit) {
+					return PREFIX + value;
+				}
+			}
+			synchronized (this) {
+				if (currentBlock == block) {
+					currentBlock = reserveBlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reserves the next block of values, committing the counter update independently of the caller's transaction so that the row lock is held only
+	 * for the time of the update.
+	 *
+	 * @return the reserved block.
+	 * @throws OHServiceException if the block cannot be reserved.
+	 */
+	private Block reserveBlock() throws OHServiceException {
+		try {
+			Long first = transactionTemplate.execute(status -> reserveBlockInTransaction());
+			LOGGER.debug("Reserved lot codes from {} to {}", first, first + BLOCK_SIZE - 1);
+			return new Block(first, first + BLOCK_SIZE);
+		} catch (DataIntegrityViolationException e) {
+			// another process created the counter at the same time: it exists now
+			Long first = transactionTemplate.execute(status -> reserveBlockInTransaction());
+			return new Block(first, first + BLOCK_SIZE);
+		} catch (RuntimeException e) {
+			LOGGER.error(e.getMessage(), e);
+			throw new OHServiceException(e, new OHExceptionMessage("Unable to generate a new lot code."));
+		}
+	}
+
+	private Long reserveBlockInTransaction() {
+		LotSequence sequence = repository.findByNameForUpdate(SEQUENCE_NAME).orElse(null);
+		if (sequence == null) {
+			sequence = new LotSequence(SEQUENCE_NAME, 1);
+		}
+		long first = sequence.getNextValue();
+		sequence.setNextValue(first + BLOCK_SIZE);
+		repository.saveAndFlush(sequence);
+		return first;
+	}
+
+	/**
+	 * Range of reserved values, {@code limit} excluded.
+	 */
+	private static final class Block {
+
+		private final AtomicLong next;
+
+		private final long limit;
+
+		private Block(long first, long limit) {
+			this.next = new AtomicLong(first);
+			this.limit = limit;
+		}
+	}
+}
@@ -128,6 +128,23 @@ public class MovWardBrowserManager {
 		return ioOperations.getWardMovements(wardId, dateFrom, dateTo);
 	}
 
+	/**
+	 * Gets one page of the movement ward with the specified criteria.
+	 *
+	 * @param wardId the ward id.
+	 * @param dateFrom the lower bound for the movement date range.
+	 * @param dateTo the upper bound for the movement date range.
+	 * @param patient the patient the movements are for, or {@code null} for any.
+	 * @param page the zero-based page index.
+	 * @param size the page size.
+	 * @return the retrieved movements.
+	 * @throws OHServiceException
+	 */
+	public List<MovementWard> getMovementWard(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo, Patient patient, int page, int size)
+					throws OHServiceException {
+		return ioOperations.getWardMovements(wardId, dateFrom, dateTo, patient != null ? patient.getCode() : null, page, size);
+	}
+
 	/**
 	 * Gets all the movement ward with the specified criteria.
 	 *
@@ -65,6 +65,10 @@ public interface MedicalStockWardIoOperationRepository extends JpaRepository<Med
 	@Query(value = "INSERT INTO OH_MEDICALDSRWARD (MDSRWRD_WRD_ID_A, MDSRWRD_MDSR_ID, MDSRWRD_IN_QTI, MDSRWRD_OUT_QTI, MDSRWRD_LT_ID_A) VALUES (?, ?, ?, '0', ?)", nativeQuery = true)
 	void insertMedicalWard(@Param("ward") String ward, @Param("medical") int medical, @Param("quantity") Double quantity, @Param("lot") String lot);
 
+	@Query(value = "select medWard.id.medical.code, lot.code, medWard.id.ward.code, sum(medWard.in_quantity - medWard.out_quantity) " +
+			"from MedicalWard medWard left join medWard.id.lot lot group by medWard.id.medical.code, lot.code, medWard.id.ward.code")
+	List<Object[]> findAllLotQuantities();
+
 	@Query(value = "SELECT * FROM OH_MEDICALDSRWARD WHERE MDSRWRD_WRD_ID_A = :ward", nativeQuery = true)
 	List<MedicalWard> findAllWhereWard(@Param("ward") char wardId);
 
@@ -78,4 +82,12 @@ public interface MedicalStockWardIoOperationRepository extends JpaRepository<Med
 	@Query(value = "select medWard from MedicalWard medWard where medWard.id.ward.code=:ward and medWard.id.medical.code = :medical")
 	List<MedicalWard> findAllWhereWardAndMedical(@Param("ward") String wardId, @Param("medical") int medId);
 
+	@Query(value = "select medWard from MedicalWard medWard where medWard.id.ward.code=:ward " +
+			"and medWard.in_quantity <> medWard.out_quantity")
+	List<MedicalWard> findAllWhereWardAndNotEmpty(@Param("ward") String wardId);
+
+	@Query(value = "select medWard from MedicalWard medWard where medWard.id.ward.code=:ward and medWard.id.medical.code = :medical " +
+			"and medWard.in_quantity <> medWard.out_quantity")
+	List<MedicalWard> findAllWhereWardAndMedicalAndNotEmpty(@Param("ward") String wardId, @Param("medical") int medId);
+
 }
@@ -24,11 +24,16 @@ package org.isf.medicalstockward.service;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.isf.medicalstockward.model.MedicalWard;
+import org.isf.medicalstockward.model.MovementWard;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MedicalStockWardIoOperationRepositoryCustom {
 
-	List<Integer> findAllWardMovement(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo);
+	List<MovementWard> findAllWardMovement(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo, Integer patientCode, Pageable pageable);
+
+	List<MedicalWard> findTotalQuantityWhereWardGroupByMedical(String wardId);
 
 }
@@ -23,20 +23,30 @@ package org.isf.medicalstockward.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 
 import org.apache.commons.lang3.StringUtils;
+import org.isf.medicals.model.Medical;
+import org.isf.medicalstockward.model.MedicalWard;
 import org.isf.medicalstockward.model.MovementWard;
+import org.isf.patient.model.Patient;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -45,18 +55,33 @@ public class MedicalStockWardIoOperationRepositoryImpl implements MedicalStockWa
 	private static final String WARD = "ward";
 	private static final String DATE = "date";
 	private static final String CODE = "code";
+	private static final String WARD_TO = "wardTo";
+	private static final String WARD_FROM = "wardFrom";
+	private static final String LOT = "lot";
+	private static final String MEDICAL = "medical";
+	private static final String TYPE = "type";
+	private static final String PATIENT = "patient";
+	private static final String PATIENT_CONSENSUS = "patientConsensus";
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
 	@SuppressWarnings("unchecked")
 	@Override
-	public List<Integer> findAllWardMovement(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
+	public List<MovementWard> findAllWardMovement(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo, Integer patientCode, Pageable pageable) {
 
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<MovementWard> query = builder.createQuery(MovementWard.class);
 		Root<MovementWard> root = query.from(MovementWard.class);
-		query.select(root.<Integer>get(CODE));
+		// every to-one association is eager: fetch them here instead of one select per movement
+		root.fetch(WARD, JoinType.LEFT);
+		root.fetch(WARD_TO, JoinType.LEFT);
+		root.fetch(WARD_FROM, JoinType.LEFT);
+		root.fetch(LOT, JoinType.LEFT);
+		root.fetch(MEDICAL, JoinType.LEFT).fetch(TYPE, JoinType.LEFT);
+		Join<MovementWard, Patient> patient = (Join<MovementWard, Patient>) root.<MovementWard, Patient>fetch(PATIENT, JoinType.LEFT);
+		patient.fetch(PATIENT_CONSENSUS, JoinType.LEFT);
+		query.select(root);
 		List<Predicate> predicates = new ArrayList<>();
 
 		if (StringUtils.isNotEmpty(wardId)) {
@@ -65,12 +90,54 @@ public class MedicalStockWardIoOperationRepositoryImpl implements MedicalStockWa
 		if ((dateFrom != null) && (dateTo != null)) {
 			predicates.add(builder.between(root.<LocalDateTime>get(DATE), TimeTools.getBeginningOfDay(dateFrom), TimeTools.getBeginningOfNextDay(dateTo)));
 		}
+		if (patientCode != null) {
+			predicates.add(builder.equal(patient.<Integer>get(CODE), patientCode));
+		}
 
 		List<Order> orderList = new ArrayList<>();
 		orderList.add(builder.asc(root.get(DATE)));
+		orderList.add(builder.asc(root.get(CODE)));
 
 		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
-		return entityManager.createQuery(query).getResultList();
+		TypedQuery<MovementWard> typedQuery = entityManager.createQuery(query);
+		if (pageable != null && pageable.isPaged()) {
+			typedQuery.setFirstResult((int) pageable.getOffset());
+			typedQuery.setMaxResults(pageable.getPageSize());
+		}
+		return typedQuery.getResultList();
+	}
+
+	@Override
+	public List<MedicalWard> findTotalQuantityWhereWardGroupByMedical(String wardId) {
+		// a medical is listed as long as one of its lots is not empty, with the total over all its lots
+		List<Object[]> totals = entityManager.createQuery(
+						"select medWard.id.medical.code, sum(medWard.in_quantity - medWard.out_quantity) from MedicalWard medWard " +
+										"where medWard.id.ward.code = :ward group by medWard.id.medical.code " +
+										"having sum(case when medWard.in_quantity <> medWard.out_quantity then 1 else 0 end) > 0 " +
+										"order by medWard.id.medical.code", Object[].class)
+						.setParameter("ward", wardId)
+						.getResultList();
+		if (totals.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Map<Integer, Double> quantities = new LinkedHashMap<>();
+		for (Object[] total : totals) {
+			quantities.put((Integer) total[0], ((Number) total[1]).doubleValue());
+		}
+		Map<Integer, Medical> medicals = new HashMap<>();
+		entityManager.createQuery("select medical from Medical medical left join fetch medical.type where medical.code in :codes", Medical.class)
+						.setParameter("codes", quantities.keySet())
+						.getResultList()
+						.forEach(medical -> medicals.put(medical.getCode(), medical));
+		Ward ward = entityManager.find(Ward.class, wardId);
+
+		List<MedicalWard> medicalWards = new ArrayList<>(quantities.size());
+		quantities.forEach((code, qty) -> {
+			MedicalWard medicalWard = new MedicalWard(medicals.get(code), qty);
+			medicalWard.setWard(ward);
+			medicalWards.add(medicalWard);
+		});
+		return medicalWards;
 	}
 
 }
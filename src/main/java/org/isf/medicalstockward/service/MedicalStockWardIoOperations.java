@@ -22,13 +22,14 @@
 package org.isf.medicalstockward.service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.isf.medicals.model.Medical;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotStock;
 import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstock.service.LotIoOperationRepository;
+import org.isf.medicalstock.service.LotStockIoOperationRepository;
 import org.isf.medicalstockward.model.MedicalWard;
 import org.isf.medicalstockward.model.MovementWard;
 import org.isf.patient.model.Patient;
@@ -36,6 +37,8 @@ import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -53,12 +56,16 @@ public class MedicalStockWardIoOperations {
 
 	private LotIoOperationRepository lotRepository;
 
+	private LotStockIoOperationRepository lotStockRepository;
+
 	public MedicalStockWardIoOperations(MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository,
 	                                    MovementWardIoOperationRepository movementWardIoOperationRepository,
-	                                    LotIoOperationRepository lotIoOperationRepository) {
+	                                    LotIoOperationRepository lotIoOperationRepository,
+	                                    LotStockIoOperationRepository lotStockIoOperationRepository) {
 		this.repository = medicalStockWardIoOperationRepository;
 		this.movementRepository = movementWardIoOperationRepository;
 		this.lotRepository = lotIoOperationRepository;
+		this.lotStockRepository = lotStockIoOperationRepository;
 	}
 
 	/**
@@ -70,15 +77,25 @@ public class MedicalStockWardIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the movements.
 	 */
 	public List<MovementWard> getWardMovements(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
-		List<MovementWard> pMovementWard = new ArrayList<>();
+		return repository.findAllWardMovement(wardId, TimeTools.truncateToSeconds(dateFrom), TimeTools.truncateToSeconds(dateTo), null,
+						Pageable.unpaged());
+	}
 
-		List<Integer> pMovementWardCode = new ArrayList<>(repository.findAllWardMovement(wardId, TimeTools.truncateToSeconds(dateFrom),
-						TimeTools.truncateToSeconds(dateTo)));
-		for (Integer code : pMovementWardCode) {
-			MovementWard movementWard = movementRepository.findById(code).orElse(null);
-			pMovementWard.add(movementWard);
-		}
-		return pMovementWard;
+	/**
+	 * Get one page of the {@link MovementWard}s with the specified criteria, ordered by date.
+	 * @param wardId the ward id.
+	 * @param dateFrom the lower bound for the movement date range.
+	 * @param dateTo the upper bound for the movement date range.
+	 * @param patientCode the code of the {@link Patient} the movements are for, or {@code null} for any.
+	 * @param page the zero-based page index.
+	 * @param size the page size.
+	 * @return the retrieved movements.
+	 * @throws OHServiceException if an error occurs retrieving the movements.
+	 */
+	public List<MovementWard> getWardMovements(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo, Integer patientCode, int page, int size)
+					throws OHServiceException {
+		return repository.findAllWardMovement(wardId, TimeTools.truncateToSeconds(dateFrom), TimeTools.truncateToSeconds(dateTo), patientCode,
+						PageRequest.of(page, size));
 	}
 
 	/**
@@ -210,6 +227,8 @@ public class MedicalStockWardIoOperations {
 				repository.save(medicalWard);
 			}
 			repository.updateOutQuantity(Math.abs(qty), ward, medical, lot);
+			lotStockRepository.insertOrIncrement(medical, lot, wardTo, Math.abs(qty));
+			lotStockRepository.insertOrIncrement(medical, lot, ward, -Math.abs(qty));
 			return;
 		}
 
@@ -229,6 +248,7 @@ public class MedicalStockWardIoOperations {
 				repository.updateOutQuantity(qty, ward, medical, lot); // TODO: change to jpa
 			}
 		}
+		lotStockRepository.insertOrIncrement(medical, lot, ward, -qty);
 	}
 
 	/**
@@ -255,21 +275,14 @@ public class MedicalStockWardIoOperations {
 	public List<MedicalWard> getMedicalsWard(String wardId, int medId, boolean stripeEmpty) throws OHServiceException {
 		List<MedicalWard> medicalWards;
 		if (medId == 0) {
-			medicalWards = repository.findAllWhereWard(wardId);
+			medicalWards = stripeEmpty ? repository.findAllWhereWardAndNotEmpty(wardId) : repository.findAllWhereWard(wardId);
 		} else {
-			medicalWards = repository.findAllWhereWardAndMedical(wardId, medId);
+			medicalWards = stripeEmpty ? repository.findAllWhereWardAndMedicalAndNotEmpty(wardId, medId) : repository.findAllWhereWardAndMedical(wardId, medId);
 		}
-		for (int i = 0; i < medicalWards.size(); i++) {
-			double qty = medicalWards.get(i).getIn_quantity() - medicalWards.get(i).getOut_quantity();
-			medicalWards.get(i).setQty(qty);
-
-			if (stripeEmpty && qty == 0) {
-				medicalWards.remove(i);
-				i = i - 1;
-			}
+		for (MedicalWard medicalWard : medicalWards) {
+			medicalWard.setQty((double) (medicalWard.getIn_quantity() - medicalWard.getOut_quantity()));
 		}
 		return medicalWards;
-
 	}
 
 	public List<MovementWard> findAllForPatient(Patient patient) {
@@ -288,20 +301,7 @@ public class MedicalStockWardIoOperations {
 	 * @throws OHServiceException
 	 */
 	public List<MedicalWard> getMedicalsWardTotalQuantity(char wardId) throws OHServiceException {
-		String wardID = String.valueOf(wardId);
-		List<MedicalWard> medicalWards = getMedicalsWard(wardId, true);
-
-		List<MedicalWard> medicalWardsQty = new ArrayList<>();
-
-		for (MedicalWard medicalWard : medicalWards) {
-
-			if (!medicalWardsQty.contains(medicalWard)) {
-				Double qty = repository.findQuantityInWardWhereMedicalAndWard(medicalWard.getId().getMedical().getCode(), wardID);
-				medicalWard.setQty(qty);
-				medicalWardsQty.add(medicalWard);
-			}
-		}
-		return medicalWardsQty;
+		return repository.findTotalQuantityWhereWardGroupByMedical(String.valueOf(wardId));
 	}
 
 	/**
@@ -328,22 +328,27 @@ public class MedicalStockWardIoOperations {
 	}
 
 	/**
-	 * Updates the specified {@link MedicalWard}.
+	 * Updates the specified {@link MedicalWard} and its {@link LotStock}.
 	 * @param medWard the medical ward to update
 	 * @return the updated {@link MedicalWard} object.
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
 	public MedicalWard updateMedicalWard(MedicalWard medWard) throws OHServiceException {
-		return repository.save(medWard);
+		MedicalWard updatedMedWard = repository.save(medWard);
+		lotStockRepository.insertOrUpdate(medWard.getMedical().getCode(), LotStock.getLotCode(medWard.getLot()), medWard.getWard().getCode(),
+						medWard.getIn_quantity() - medWard.getOut_quantity());
+		return updatedMedWard;
 	}
 
 	/**
-	 * Deletes the specified {@link MedicalWard}.
+	 * Deletes the specified {@link MedicalWard} and its {@link LotStock}.
 	 * @param medWard the medical ward to delete
 	 * @throws OHServiceException if an error occurs during the delete.
 	 */
 	public void deleteMedicalWard(MedicalWard medWard) throws OHServiceException {
 		repository.delete(medWard);
+		lotStockRepository.deleteByMedicalCodeAndLotCodeAndWardCode(medWard.getMedical().getCode(), LotStock.getLotCode(medWard.getLot()),
+						medWard.getWard().getCode());
 	}
 
 	/**
@@ -32,6 +32,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
@@ -49,6 +52,19 @@ import com.drew.lang.annotations.Nullable;
 
 @Entity
 @Table(name="OH_OPD")
+@NamedEntityGraph(name = Opd.GRAPH_LIST, attributeNodes = {
+		@NamedAttributeNode("ward"), @NamedAttributeNode(value = "patient", subgraph = "patient"), @NamedAttributeNode("disease"),
+		@NamedAttributeNode("disease2"), @NamedAttributeNode("disease3"), @NamedAttributeNode("nextVisit")
+}, subgraphs = @NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")))
+@NamedEntityGraph(name = Opd.GRAPH_DETAIL, attributeNodes = {
+		@NamedAttributeNode("ward"), @NamedAttributeNode(value = "patient", subgraph = "patient"), @NamedAttributeNode(value = "disease", subgraph = "disease"),
+		@NamedAttributeNode(value = "disease2", subgraph = "disease"), @NamedAttributeNode(value = "disease3", subgraph = "disease"),
+		@NamedAttributeNode(value = "nextVisit", subgraph = "visit")
+}, subgraphs = {
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")),
+		@NamedSubgraph(name = "disease", attributeNodes = @NamedAttributeNode("diseaseType")),
+		@NamedSubgraph(name = "visit", attributeNodes = @NamedAttributeNode("ward"))
+})
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "OPD_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "OPD_CREATED_DATE", updatable = false))
@@ -57,6 +73,16 @@ import com.drew.lang.annotations.Nullable;
 @AttributeOverride(name = "lastModifiedDate", column = @Column(name = "OPD_LAST_MODIFIED_DATE"))
 public class Opd extends Auditable<String> {
 
+	/**
+	 * Fetch plan of the OPD lists: all the associations are joined to the OPDs select.
+	 */
+	public static final String GRAPH_LIST = "Opd.list";
+
+	/**
+	 * Fetch plan of a single OPD (detail view and print): the list plan plus the disease types and the next visit ward.
+	 */
+	public static final String GRAPH_DETAIL = "Opd.detail";
+
 	@Id
 	@GeneratedValue(strategy=GenerationType.IDENTITY)
 	@Column(name="OPD_ID") 
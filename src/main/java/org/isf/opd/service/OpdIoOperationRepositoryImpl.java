@@ -40,6 +40,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
 public class OpdIoOperationRepositoryImpl implements OpdIoOperationRepositoryCustom {
+
+	private static final String HINT_LOAD_GRAPH = "jakarta.persistence.loadgraph";
 	
 	@PersistenceContext
 	private EntityManager entityManager;
@@ -117,7 +119,8 @@ public class OpdIoOperationRepositoryImpl implements OpdIoOperationRepositoryCus
 		);
 		query.where(cb.and(predicates.toArray(new Predicate[0])));
 
-		return entityManager.createQuery(query);
+		return entityManager.createQuery(query)
+				.setHint(HINT_LOAD_GRAPH, entityManager.getEntityGraph(Opd.GRAPH_LIST));
 	}
 
 }
@@ -294,6 +294,31 @@ public class PatientBrowserManager {
 		return ioOperations.getPatientsByOneOfFieldsLike(keyword);
 	}
 
+	/**
+	 * Method that returns the codes of the {@link Patient}s not logically deleted having the passed String in the same fields of
+	 * {@link #getPatientsByOneOfFieldsLike(String)}, best matches first.
+	 *
+	 * @param keyword
+	 *            - String to search, {@code null} for full list
+	 * @param limit
+	 *            - the maximum number of codes to return
+	 * @return the list of codes (could be empty)
+	 * @throws OHServiceException
+	 */
+	public List<Integer> getPatientCodesByOneOfFieldsLike(String keyword, int limit) throws OHServiceException {
+		return ioOperations.getPatientCodesByOneOfFieldsLike(keyword, limit);
+	}
+
+	/**
+	 * Rebuilds the search index used by {@link #getPatientsByOneOfFieldsLike(String)} from all the {@link Patient}s not logically deleted.
+	 *
+	 * @return the number of indexed patients
+	 * @throws OHServiceException
+	 */
+	public int rebuildSearchIndex() throws OHServiceException {
+		return ioOperations.rebuildSearchIndex();
+	}
+
 	public PatientProfilePhoto retrievePatientProfilePhoto(Patient patient) throws OHServiceException {
 		return ioOperations.retrievePatientProfilePhoto(patient);
 	}
@@ -0,0 +1,53 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.model;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Entry of the {@link Patient} search index: the patient contains the normalized three characters long gram in one of its searchable fields.
+ */
+@Entity
+@Table(name = "OH_PATIENT_SEARCH_GRAM", indexes = { @Index(name = "IDX_PATIENT_SEARCH_GRAM_PAT_ID", columnList = "PSG_PAT_ID") })
+public class PatientSearchGram {
+
+	@EmbeddedId
+	private PatientSearchGramId id;
+
+	public PatientSearchGram() {
+	}
+
+	public PatientSearchGram(String gram, Integer patientCode) {
+		this.id = new PatientSearchGramId(gram, patientCode);
+	}
+
+	public PatientSearchGramId getId() {
+		return id;
+	}
+
+	public void setId(PatientSearchGramId id) {
+		this.id = id;
+	}
+}
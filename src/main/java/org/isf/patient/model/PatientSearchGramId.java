@@ -0,0 +1,83 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotNull;
+
+@SuppressWarnings("serial")
+@Embeddable
+public class PatientSearchGramId implements Serializable {
+
+	@NotNull
+	@Column(name = "PSG_GRAM")
+	private String gram;
+
+	@NotNull
+	@Column(name = "PSG_PAT_ID")
+	private Integer patientCode;
+
+	public PatientSearchGramId() {
+	}
+
+	public PatientSearchGramId(String gram, Integer patientCode) {
+		this.gram = gram;
+		this.patientCode = patientCode;
+	}
+
+	public String getGram() {
+		return gram;
+	}
+
+	public void setGram(String gram) {
+		this.gram = gram;
+	}
+
+	public Integer getPatientCode() {
+		return patientCode;
+	}
+
+	public void setPatientCode(Integer patientCode) {
+		this.patientCode = patientCode;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(gram, patientCode);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PatientSearchGramId)) {
+			return false;
+		}
+		PatientSearchGramId other = (PatientSearchGramId) obj;
+		return Objects.equals(gram, other.gram) && Objects.equals(patientCode, other.patientCode);
+	}
+}
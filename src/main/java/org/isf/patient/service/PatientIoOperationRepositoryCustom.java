@@ -29,4 +29,6 @@ public interface PatientIoOperationRepositoryCustom {
 
 	List<Patient> findByFieldsContainingWordsFromLiteral(String regex);
 
+	List<Integer> findCodesByFieldsContainingWordsFromLiteral(String regex, int limit);
+
 }
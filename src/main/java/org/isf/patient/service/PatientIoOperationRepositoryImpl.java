@@ -25,35 +25,65 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 
 import org.isf.patient.model.Patient;
+import org.isf.patient.model.PatientSearchGram;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
 public class PatientIoOperationRepositoryImpl implements PatientIoOperationRepositoryCustom {
 
+	private static final String[] SEARCHABLE_FIELDS = { "code", "firstName", "secondName", "city", "address", "telephone", "note", "taxCode" };
+
+	private static final int SCORE_EQUALS = 3;
+
+	private static final int SCORE_STARTS_WITH = 2;
+
+	private static final int SCORE_CONTAINS = 1;
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
-	@SuppressWarnings("unchecked")
+	private final PatientSearchGramIoOperationRepository searchGramRepository;
+
+	public PatientIoOperationRepositoryImpl(PatientSearchGramIoOperationRepository searchGramRepository) {
+		this.searchGramRepository = searchGramRepository;
+	}
+
 	@Override
 	public List<Patient> findByFieldsContainingWordsFromLiteral(String literal) {
+		String[] words = getWordsToSearchForInPatientsRepository(literal);
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Patient> query = cb.createQuery(Patient.class);
+		Root<Patient> patientRoot = query.from(Patient.class);
+		query.select(patientRoot);
 		return this.entityManager.
-				createQuery(buildSearchQuery(literal)).
+				createQuery(createQuerySearchingForPatientContainingGivenWordsInHisProperties(words, query, patientRoot)).
 				getResultList();
 	}
 
-	private CriteriaQuery<Patient> buildSearchQuery(String regex) {
-		String[] words = getWordsToSearchForInPatientsRepository(regex);
-		return createQuerySearchingForPatientContainingGivenWordsInHisProperties(words);
+	@Override
+	public List<Integer> findCodesByFieldsContainingWordsFromLiteral(String literal, int limit) {
+		String[] words = getWordsToSearchForInPatientsRepository(literal);
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Integer> query = cb.createQuery(Integer.class);
+		Root<Patient> patientRoot = query.from(Patient.class);
+		query.select(patientRoot.get("code"));
+		return this.entityManager.
+				createQuery(createQuerySearchingForPatientContainingGivenWordsInHisProperties(words, query, patientRoot)).
+				setMaxResults(limit).
+				getResultList();
 	}
 
 	private String[] getWordsToSearchForInPatientsRepository(String regex) {
@@ -67,28 +97,76 @@ public class PatientIoOperationRepositoryImpl implements PatientIoOperationRepos
 		return words;
 	}
 
-	private CriteriaQuery<Patient> createQuerySearchingForPatientContainingGivenWordsInHisProperties(String[] words) {
+	private <T> CriteriaQuery<T> createQuerySearchingForPatientContainingGivenWordsInHisProperties(String[] words, CriteriaQuery<T> query,
+					Root<Patient> patientRoot) {
 		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Patient> query = cb.createQuery(Patient.class);
-		Root<Patient> patientRoot = query.from(Patient.class);
-		query.select(patientRoot);
 		List<Predicate> where = new ArrayList<>();
 
 		for (String word : words) {
 			where.add(wordExistsInOneOfPatientFields(word, cb, patientRoot));
 		}
 
+		Set<String> grams = PatientSearchIndex.getGrams(words);
+		if (!grams.isEmpty() && searchGramRepository.isComplete()) {
+			// candidates are the patients having all the grams of the words, then filtered by the exact predicates above
+			where.add(patientRoot.get("code").in(patientsHavingAllGrams(grams, query, cb)));
+		}
+
 		where.add(cb.or(
 				cb.equal(patientRoot.get("deleted"), 'N'),
 				cb.isNull(patientRoot.get("deleted"))
 		));
 
 		query.where(cb.and(where.toArray(new Predicate[0])));
-		query.orderBy(cb.desc(patientRoot.get("code")));
+		if (words.length > 0) {
+			query.orderBy(cb.desc(score(words, cb, patientRoot)), cb.desc(patientRoot.get("code")));
+		} else {
+			query.orderBy(cb.desc(patientRoot.get("code")));
+		}
 
 		return query;
 	}
 
+	private Subquery<Integer> patientsHavingAllGrams(Set<String> grams, CriteriaQuery<?> query, CriteriaBuilder cb) {
+		Subquery<Integer> subquery = query.subquery(Integer.class);
+		Root<PatientSearchGram> gramRoot = subquery.from(PatientSearchGram.class);
+		Path<Integer> patientCode = gramRoot.get("id").<Integer> get("patientCode");
+		subquery.select(patientCode)
+				.where(gramRoot.get("id").get("gram").in(grams))
+				.groupBy(patientCode)
+				.having(cb.equal(cb.count(gramRoot), (long) grams.size()));
+		return subquery;
+	}
+
+	/**
+	 * Ranks a matching patient: for each word, a field token equal to the word is worth more than a token starting with it, which is worth more
+	 * than a token just containing it.
+	 */
+	private Expression<Integer> score(String[] words, CriteriaBuilder cb, Root<Patient> root) {
+		Expression<Integer> score = cb.literal(0);
+		for (String word : words) {
+			List<Predicate> equals = new ArrayList<>();
+			List<Predicate> startsWith = new ArrayList<>();
+			for (String field : SEARCHABLE_FIELDS) {
+				Expression<String> value = cb.lower(root.get(field).as(String.class));
+				equals.add(cb.or(
+						cb.equal(value, word),
+						cb.like(value, word + " %"),
+						cb.like(value, "% " + word),
+						cb.like(value, "% " + word + " %")));
+				startsWith.add(cb.or(
+						cb.like(value, word + '%'),
+						cb.like(value, "% " + word + '%')));
+			}
+			Expression<Integer> wordScore = cb.<Integer> selectCase()
+					.when(cb.or(equals.toArray(new Predicate[0])), cb.literal(SCORE_EQUALS))
+					.when(cb.or(startsWith.toArray(new Predicate[0])), cb.literal(SCORE_STARTS_WITH))
+					.otherwise(cb.literal(SCORE_CONTAINS));
+			score = cb.sum(score, wordScore);
+		}
+		return score;
+	}
+
 	private Predicate wordExistsInOneOfPatientFields(String word, CriteriaBuilder cb, Root<Patient> root) {
 		return cb.or(
 				cb.like(cb.lower(root.get("code").as(String.class)), like(word)),
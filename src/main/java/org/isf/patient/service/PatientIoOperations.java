@@ -42,7 +42,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -57,6 +59,8 @@ public class PatientIoOperations {
 
 	public static final char NOT_DELETED_STATUS = 'N';
 
+	private static final int SEARCH_INDEX_PAGE_SIZE = 1000;
+
 	private final PatientIoOperationRepository repository;
 
 	private final ApplicationEventPublisher applicationEventPublisher;
@@ -65,11 +69,15 @@ public class PatientIoOperations {
 
 	private final EntityManager entityManager;
 
-	public PatientIoOperations(PatientIoOperationRepository repository, ApplicationEventPublisher applicationEventPublisher, FileSystemPatientPhotoRepository fileSystemPatientPhotoRepository, EntityManager entityManager) {
+	private final PatientSearchGramIoOperationRepository searchGramRepository;
+
+	public PatientIoOperations(PatientIoOperationRepository repository, ApplicationEventPublisher applicationEventPublisher, FileSystemPatientPhotoRepository fileSystemPatientPhotoRepository, EntityManager entityManager,
+					PatientSearchGramIoOperationRepository patientSearchGramIoOperationRepository) {
 		this.repository = repository;
 		this.applicationEventPublisher = applicationEventPublisher;
 		this.fileSystemPatientPhotoRepository = fileSystemPatientPhotoRepository;
 		this.entityManager = entityManager;
+		this.searchGramRepository = patientSearchGramIoOperationRepository;
 	}
 	/**
 	 * Method that returns the full list of {@link Patient}s not logically deleted,
@@ -124,6 +132,57 @@ public class PatientIoOperations {
 		return repository.findByFieldsContainingWordsFromLiteral(keyword);
 	}
 
+	/**
+	 * Method that returns the codes of the {@link Patient}s not logically deleted having all the words of the passed String in one of the fields
+	 * searched by {@link #getPatientsByOneOfFieldsLike(String)}, best matches first (whole words, then prefixes, then substrings).
+	 *
+	 * @param keyword - String to search, use {@code null} for full list
+	 * @param limit - the maximum number of codes to return
+	 * @return the list of codes (could be empty)
+	 * @throws OHServiceException
+	 */
+	public List<Integer> getPatientCodesByOneOfFieldsLike(String keyword, int limit) throws OHServiceException {
+		return repository.findCodesByFieldsContainingWordsFromLiteral(keyword, limit);
+	}
+
+	/**
+	 * Rebuilds the search index of the {@link Patient}s not logically deleted, reading them by pages in code order and clearing the persistence
+	 * context after each page, then marks it as complete. The index is replaced in a single transaction: until it commits, the searches keep
+	 * reading the previous index, or none before the first build.
+	 *
+	 * @return the number of indexed patients.
+	 * @throws OHServiceException
+	 */
+	public int rebuildSearchIndex() throws OHServiceException {
+		searchGramRepository.deleteAllInBatch();
+		int indexed = 0;
+		int lastCode = Integer.MIN_VALUE;
+		List<Patient> patients;
+		do {
+			patients = repository.findByCodeGreaterThan(lastCode, PageRequest.of(0, SEARCH_INDEX_PAGE_SIZE, Sort.by("code")));
+			for (Patient patient : patients) {
+				if (patient.getDeleted() != 'Y') {
+					searchGramRepository.indexPatient(patient);
+					indexed++;
+				}
+				lastCode = patient.getCode();
+			}
+			entityManager.flush();
+			entityManager.clear();
+		} while (patients.size() == SEARCH_INDEX_PAGE_SIZE);
+		searchGramRepository.setComplete(true);
+		LOGGER.info("{} patients indexed for the search", indexed);
+		return indexed;
+	}
+
+	/**
+	 * @return {@code true} if the search index is complete and used by the searches, {@code false} before its first build.
+	 * @throws OHServiceException
+	 */
+	public boolean isSearchIndexComplete() throws OHServiceException {
+		return searchGramRepository.isComplete();
+	}
+
 	/**
 	 * Method that gets a {@link Patient}s by his/her ID.
 	 *
@@ -182,12 +241,15 @@ public class PatientIoOperations {
 	public Patient savePatient(Patient patient) {
 		boolean isLoadProfilePhotoFromDB = LOAD_FROM_DB.equals(GeneralData.PATIENTPHOTOSTORAGE);
 		if (isLoadProfilePhotoFromDB) {
-			return repository.save(patient);
+			Patient patientSaved = repository.save(patient);
+			searchGramRepository.indexPatient(patientSaved);
+			return patientSaved;
 		}
 		try {
 			PatientProfilePhoto photo = patient.getPatientProfilePhoto();
 			patient.setPatientProfilePhoto(null);
 			Patient patientSaved = repository.save(patient);
+			searchGramRepository.indexPatient(patientSaved);
 			((Session) this.entityManager.getDelegate()).evict(patient);
 			if (photo != null && photo.getPhoto() != null) {
 				fileSystemPatientPhotoRepository.save(GeneralData.PATIENTPHOTOSTORAGE, patient.getCode(), photo.getPhoto());
@@ -209,7 +271,9 @@ public class PatientIoOperations {
 	 * @throws OHServiceException
 	 */
 	public Patient updatePatient(Patient patient) throws OHServiceException {
-		return repository.save(patient);
+		Patient patientSaved = repository.save(patient);
+		searchGramRepository.indexPatient(patientSaved);
+		return patientSaved;
 	}
 
 	/**
@@ -232,6 +296,7 @@ public class PatientIoOperations {
 			fileSystemPatientPhotoRepository.delete(GeneralData.PATIENTPHOTOSTORAGE, patient.getCode());
 		}
 		repository.updateDeleted(patient.getCode());
+		searchGramRepository.deleteByPatientCode(patient.getCode());
 	}
 
 	/**
@@ -265,6 +330,7 @@ public class PatientIoOperations {
 	 */
 	public void mergePatientHistory(Patient mergedPatient, Patient obsoletePatient) throws OHServiceException {
 		repository.updateDeleted(obsoletePatient.getCode());
+		searchGramRepository.deleteByPatientCode(obsoletePatient.getCode());
 		applicationEventPublisher.publishEvent(new PatientMergedEvent(obsoletePatient, mergedPatient));
 	}
 
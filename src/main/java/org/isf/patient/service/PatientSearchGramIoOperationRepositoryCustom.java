@@ -0,0 +1,47 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.service;
+
+import org.isf.patient.model.Patient;
+
+public interface PatientSearchGramIoOperationRepositoryCustom {
+
+	/**
+	 * Replaces the search index entries of the specified {@link Patient} with the ones of its current fields.
+	 *
+	 * @param patient the patient to index.
+	 */
+	void indexPatient(Patient patient);
+
+	/**
+	 * @return {@code true} if all the {@link Patient}s are indexed, so that the searches can read the index.
+	 */
+	boolean isComplete();
+
+	/**
+	 * Marks the index as complete, or not.
+	 *
+	 * @param complete {@code true} once all the {@link Patient}s are indexed.
+	 */
+	void setComplete(boolean complete);
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.isf.patient.model.Patient;
+import org.isf.patient.model.PatientSearchGram;
+import org.isf.patient.model.PatientSearchIndexStatus;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+public class PatientSearchGramIoOperationRepositoryImpl implements PatientSearchGramIoOperationRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public void indexPatient(Patient patient) {
+		entityManager.createQuery("delete from PatientSearchGram g where g.id.patientCode = :code")
+						.setParameter("code", patient.getCode())
+						.executeUpdate();
+		List<PatientSearchGram> grams = new ArrayList<>();
+		for (String gram : PatientSearchIndex.getGrams(patient)) {
+			PatientSearchGram patientSearchGram = new PatientSearchGram(gram, patient.getCode());
+			entityManager.persist(patientSearchGram);
+			grams.add(patientSearchGram);
+		}
+		// the grams are never read as entities: keep them out of the persistence context so the patient can be indexed again
+		entityManager.flush();
+		grams.forEach(entityManager::detach);
+	}
+
+	@Override
+	public boolean isComplete() {
+		PatientSearchIndexStatus status = entityManager.find(PatientSearchIndexStatus.class, PatientSearchIndexStatus.ID);
+		return status != null && status.isComplete();
+	}
+
+	@Override
+	public void setComplete(boolean complete) {
+		PatientSearchIndexStatus status = entityManager.find(PatientSearchIndexStatus.class, PatientSearchIndexStatus.ID);
+		if (status == null) {
+			status = new PatientSearchIndexStatus();
+			entityManager.persist(status);
+		}
+		status.setComplete(complete);
+	}
+}
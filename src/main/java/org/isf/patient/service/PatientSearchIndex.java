@@ -0,0 +1,113 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.service;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.isf.patient.model.Patient;
+
+/**
+ * Helpers shared by the writers and the readers of the {@link Patient} search index.
+ * <p>
+ * The searchable fields are split on spaces and every {@link #normalize(String) normalized} token is indexed with all its substrings of
+ * {@value #GRAM_LENGTH} characters; a searched word (that never contains spaces) can be contained in a field only if the field contains all the
+ * grams of the word.
+ */
+public final class PatientSearchIndex {
+
+	public static final int GRAM_LENGTH = 3;
+
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+	private PatientSearchIndex() {
+	}
+
+	/**
+	 * Folds a value the way the {@code utf8_general_ci} collation of the index compares it: lower case, without accents and with {@code ß} as
+	 * {@code s}, so that two grams equal for the database are equal strings too.
+	 *
+	 * @param value the value.
+	 * @return the normalized value.
+	 */
+	public static String normalize(String value) {
+		String decomposed = Normalizer.normalize(value.toLowerCase(), Normalizer.Form.NFD);
+		return COMBINING_MARKS.matcher(decomposed).replaceAll("").replace('ß', 's');
+	}
+
+	/**
+	 * @param patient the patient.
+	 * @return the normalized values of the fields searched by {@link PatientIoOperationRepositoryCustom#findByFieldsContainingWordsFromLiteral(String)}.
+	 */
+	private static List<String> getSearchableValues(Patient patient) {
+		return Arrays.asList(patient.getCode(), patient.getFirstName(), patient.getSecondName(), patient.getCity(), patient.getAddress(),
+						patient.getTelephone(), patient.getNote(), patient.getTaxCode())
+						.stream()
+						.filter(Objects::nonNull)
+						.map(value -> normalize(String.valueOf(value)))
+						.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param value the value, normalized.
+	 * @return the grams of the space separated tokens of the value; tokens shorter than {@value #GRAM_LENGTH} characters have no grams.
+	 */
+	public static Set<String> getGrams(String value) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (String token : value.split(" ")) {
+			for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+				grams.add(token.substring(i, i + GRAM_LENGTH));
+			}
+		}
+		return grams;
+	}
+
+	/**
+	 * @param words the searched words, without spaces.
+	 * @return the grams of all the {@link #normalize(String) normalized} words: a patient matching all the words has all of them.
+	 */
+	public static Set<String> getGrams(String[] words) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (String word : words) {
+			grams.addAll(getGrams(normalize(word)));
+		}
+		return grams;
+	}
+
+	/**
+	 * @param patient the patient.
+	 * @return the grams of all the searchable fields of the patient.
+	 */
+	static Set<String> getGrams(Patient patient) {
+		Set<String> grams = new LinkedHashSet<>();
+		for (String value : getSearchableValues(patient)) {
+			grams.addAll(getGrams(value));
+		}
+		return grams;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the {@link org.isf.patient.model.Patient} search index in background after the first startup, once per application run and only while
+ * it is not complete: afterwards it is kept up to date by {@link PatientIoOperations}. Until the build commits, the searches do not read the
+ * index and keep matching the patients fields only.
+ */
+@Component
+public class PatientSearchIndexInitializer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PatientSearchIndexInitializer.class);
+
+	PatientIoOperations patientIoOperations;
+
+	private Thread build;
+
+	public PatientSearchIndexInitializer(PatientIoOperations patientIoOperations) {
+		this.patientIoOperations = patientIoOperations;
+	}
+
+	@EventListener
+	public synchronized void handle(ContextRefreshedEvent contextRefreshedEvent) {
+		if (build == null) {
+			build = new Thread(this::buildSearchIndex, "patient-search-index");
+			build.setDaemon(true);
+			build.start();
+		}
+	}
+
+	/**
+	 * Waits for the end of the build started at startup, if any.
+	 *
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void awaitBuild() throws InterruptedException {
+		Thread thread;
+		synchronized (this) {
+			thread = build;
+		}
+		if (thread != null) {
+			thread.join();
+		}
+	}
+
+	private void buildSearchIndex() {
+		try {
+			if (!patientIoOperations.isSearchIndexComplete()) {
+				patientIoOperations.rebuildSearchIndex();
+			}
+		} catch (Exception e) {
+			LOGGER.error("The patient search index could not be built, the searches will not use it", e);
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2023 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A report rendered in background by {@link org.isf.stat.manager.AsyncReportManager}, polled by its id.
+ */
+public class ReportJobDto {
+
+	public enum Status {
+		QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+	}
+
+	private final String id;
+	private final String jasperFileName;
+	private final String key;
+	private final LocalDateTime submittedAt;
+	private volatile Status status = Status.QUEUED;
+	private volatile JasperReportResultDto result;
+	private volatile String errorMessage;
+	private volatile LocalDateTime finishedAt;
+
+	public ReportJobDto(String id, String jasperFileName, String key, LocalDateTime submittedAt) {
+		this.id = id;
+		this.jasperFileName = jasperFileName;
+		this.key = key;
+		this.submittedAt = submittedAt;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getJasperFileName() {
+		return jasperFileName;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public LocalDateTime getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public JasperReportResultDto getResult() {
+		return result;
+	}
+
+	public void setResult(JasperReportResultDto result) {
+		this.result = result;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public void setErrorMessage(String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+
+	public LocalDateTime getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setFinishedAt(LocalDateTime finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	public boolean isFinished() {
+		return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2023 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.manager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.isf.stat.dto.JasperReportResultDto;
+import org.isf.stat.dto.ReportJobDto;
+import org.isf.stat.dto.ReportJobDto.Status;
+import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
+import org.isf.utils.time.TimeTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders reports in background on a bounded pool of workers, so that long reports do not hold the thread that asked for them.
+ * <p>
+ * Each report is identified by its jasper file: at most {@link #DEFAULT_CONCURRENCY_LIMIT} reports of the same file are rendered at the same time, the
+ * others wait in a queue. Submitting a report identical (same jasper file and parameters) to one still queued or running returns the existing job.
+ * Finished jobs can be polled for {@link #JOB_RETENTION_HOURS} hours.
+ */
+@Component
+public class AsyncReportManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncReportManager.class);
+
+	private static final int WORKERS = 4;
+	private static final int MAX_UNFINISHED_JOBS = 50;
+	private static final int DEFAULT_CONCURRENCY_LIMIT = 1;
+	private static final int JOB_RETENTION_HOURS = 1;
+
+	@FunctionalInterface
+	public interface ReportTask {
+
+		JasperReportResultDto render() throws OHServiceException;
+	}
+
+	private JasperReportsManager jasperReportsManager;
+
+	private final ExecutorService executor;
+
+	private final Map<String, ReportJobDto> jobs = new HashMap<>();
+
+	private final Map<String, ReportJobDto> unfinishedJobs = new HashMap<>();
+
+	private final Map<String, Deque<PendingReport>> pendingReports = new HashMap<>();
+
+	private final Map<String, Integer> runningReports = new HashMap<>();
+
+	private final Map<String, Integer> concurrencyLimits = new HashMap<>();
+
+	private final Map<String, Future<?>> futures = new HashMap<>();
+
+	public AsyncReportManager(JasperReportsManager jasperReportsManager) {
+		this.jasperReportsManager = jasperReportsManager;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(WORKERS, runnable -> {
+			Thread thread = new Thread(runnable, "report-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queues the pharmaceutical stock report. A {@code null} date, meaning now, is kept as is in the parameters so that identical requests are
+	 * recognized, and is resolved when the report is rendered.
+	 */
+	public ReportJobDto submitPharmaceuticalStockPdf(LocalDateTime date, String jasperFileName, String filter, String groupBy, String sortBy)
+					throws OHServiceException {
+		return submitReport(jasperFileName, Arrays.asList(date, filter, groupBy, sortBy),
+						() -> jasperReportsManager.getGenericReportPharmaceuticalStockPdf(date, jasperFileName, filter, groupBy, sortBy));
+	}
+
+	/**
+	 * Queues the pharmaceutical AMC report. A {@code null} date, meaning now, is resolved when the report is rendered.
+	 */
+	public ReportJobDto submitPharmaceuticalAMCPdf(LocalDateTime date, String jasperFileName) throws OHServiceException {
+		return submitReport(jasperFileName, Arrays.asList(date),
+						() -> jasperReportsManager.GenericReportPharmaceuticalAMCPdf(date, jasperFileName));
+	}
+
+	public ReportJobDto submitBillPdf(Integer billID, String jasperFileName) throws OHServiceException {
+		return submitReport(jasperFileName, Arrays.asList(billID),
+						() -> jasperReportsManager.getGenericReportBillPdf(billID, jasperFileName, false, false));
+	}
+
+	/**
+	 * Queues the rendering of a report.
+	 *
+	 * @param jasperFileName the jasper file of the report, used to limit the concurrency.
+	 * @param parameters the parameters of the report, used with the jasper file to recognize identical requests.
+	 * @param task the rendering of the report.
+	 * @return the job of the report, an existing one if an identical report is already queued or running.
+	 * @throws OHServiceException if too many reports are already queued or running.
+	 */
+	public synchronized ReportJobDto submitReport(String jasperFileName, List<?> parameters, ReportTask task) throws OHServiceException {
+		String key = jasperFileName + parameters;
+		ReportJobDto unfinishedJob = unfinishedJobs.get(key);
+		if (unfinishedJob != null) {
+			return unfinishedJob;
+		}
+		evictFinishedJobs();
+		if (unfinishedJobs.size() >= MAX_UNFINISHED_JOBS) {
+			throw new OHServiceException(new OHExceptionMessage("Too many reports are being generated, please try again later."));
+		}
+		ReportJobDto job = new ReportJobDto(UUID.randomUUID().toString(), jasperFileName, key, TimeTools.getNow());
+		jobs.put(job.getId(), job);
+		unfinishedJobs.put(key, job);
+		pendingReports.computeIfAbsent(jasperFileName, name -> new ArrayDeque<>()).add(new PendingReport(job, task));
+		dispatch(jasperFileName);
+		return job;
+	}
+
+	/**
+	 * Returns the job with the given id, {@code null} if it is unknown or was finished more than {@link #JOB_RETENTION_HOURS} hours ago.
+	 */
+	public synchronized ReportJobDto getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * Cancels a queued or running report. A queued report is never rendered. A running report is only marked as cancelled and its worker is
+	 * interrupted, but Jasper does not stop filling a report when interrupted: the rendering goes on until it completes, writing its file and
+	 * keeping the slot of its jasper file busy until then, and only its result is discarded.
+	 *
+	 * @param jobId the id of the job.
+	 * @return {@code true} if the job was cancelled, {@code false} if it is unknown or already finished.
+	 */
+	public synchronized boolean cancel(String jobId) {
+		ReportJobDto job = jobs.get(jobId);
+		if (job == null || job.isFinished()) {
+			return false;
+		}
+		Deque<PendingReport> pending = pendingReports.get(job.getJasperFileName());
+		if (pending != null) {
+			pending.removeIf(pendingReport -> pendingReport.job == job);
+		}
+		Future<?> future = futures.get(jobId);
+		if (future != null && job.getStatus() == Status.RUNNING) {
+			future.cancel(true);
+		}
+		finish(job, Status.CANCELLED, null, null);
+		return true;
+	}
+
+	/**
+	 * Sets how many reports of the given jasper file can be rendered at the same time.
+	 */
+	public synchronized void setConcurrencyLimit(String jasperFileName, int limit) {
+		concurrencyLimits.put(jasperFileName, Math.max(1, limit));
+		dispatch(jasperFileName);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void dispatch(String jasperFileName) {
+		Deque<PendingReport> pending = pendingReports.get(jasperFileName);
+		int limit = concurrencyLimits.getOrDefault(jasperFileName, DEFAULT_CONCURRENCY_LIMIT);
+		while (pending != null && !pending.isEmpty() && runningReports.getOrDefault(jasperFileName, 0) < limit) {
+			PendingReport pendingReport = pending.poll();
+			runningReports.merge(jasperFileName, 1, Integer::sum);
+			futures.put(pendingReport.job.getId(), executor.submit(() -> render(pendingReport)));
+		}
+		if (pending != null && pending.isEmpty()) {
+			pendingReports.remove(jasperFileName);
+		}
+	}
+
+	private void render(PendingReport pendingReport) {
+		ReportJobDto job = pendingReport.job;
+		try {
+			synchronized (this) {
+				if (job.isFinished()) {
+					return;
+				}
+				job.setStatus(Status.RUNNING);
+			}
+			JasperReportResultDto result = pendingReport.task.render();
+			synchronized (this) {
+				finish(job, Status.COMPLETED, result, null);
+			}
+		} catch (OHServiceException e) {
+			LOGGER.error("Report {} failed", job.getJasperFileName(), e);
+			synchronized (this) {
+				finish(job, Status.FAILED, null, e.getMessages().isEmpty() ? e.getMessage() : e.getMessages().get(0).getMessage());
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Report {} failed", job.getJasperFileName(), e);
+			synchronized (this) {
+				finish(job, Status.FAILED, null, e.getMessage());
+			}
+		} finally {
+			synchronized (this) {
+				futures.remove(job.getId());
+				runningReports.merge(job.getJasperFileName(), -1, Integer::sum);
+				dispatch(job.getJasperFileName());
+			}
+		}
+	}
+
+	private void finish(ReportJobDto job, Status status, JasperReportResultDto result, String errorMessage) {
+		if (job.isFinished()) {
+			return;
+		}
+		job.setResult(result);
+		job.setErrorMessage(errorMessage);
+		job.setFinishedAt(TimeTools.getNow());
+		job.setStatus(status);
+		unfinishedJobs.remove(job.getKey());
+	}
+
+	private void evictFinishedJobs() {
+		LocalDateTime oldest = TimeTools.getNow().minusHours(JOB_RETENTION_HOURS);
+		jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(oldest));
+	}
+
+	private static final class PendingReport {
+
+		private final ReportJobDto job;
+
+		private final ReportTask task;
+
+		private PendingReport(ReportJobDto job, ReportTask task) {
+			this.job = job;
+			this.task = task;
+		}
+	}
+}
@@ -23,7 +23,6 @@ package org.isf.stat.manager;
 
 import java.io.File;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -31,6 +30,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -40,6 +40,8 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,6 +58,7 @@ import org.isf.stat.dto.JasperReportResultDto;
 import org.isf.utils.db.DbQueryLogger;
 import org.isf.utils.db.UTF8Control;
 import org.isf.utils.excel.ExcelExporter;
+import org.isf.utils.exception.OHException;
 import org.isf.utils.exception.OHReportException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
@@ -70,7 +73,6 @@ import net.sf.jasperreports.engine.JRChild;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRExpressionChunk;
 import net.sf.jasperreports.engine.JRParameter;
-import net.sf.jasperreports.engine.JRQuery;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
@@ -91,10 +93,20 @@ public class JasperReportsManager {
 
 	private static final String RPT_BASE = "rpt_base";
 
+	private static final Pattern QUERY_PARAMETER_PATTERN = Pattern.compile("\\$P(!?)\\{(\\w+)\\}");
+
+	/**
+	 * The values allowed for the {@code $P!{...}} parameters, which Jasper pastes as text in the query instead of binding them.
+	 */
+	private static final Map<String, Set<String>> LITERAL_QUERY_PARAMETER_VALUES = Map.of(
+					"sortBy", Set.of("MDSR_ID", "MDSR_CODE", "MDSR_DESC", "MDSR_MDSRT_ID_A", "MDSRT_ID_A", "MDSRT_DESC"));
+
 	private HospitalBrowsingManager hospitalManager;
 
 	private DataSource dataSource;
 
+	private final Map<String, CachedReport> reportCache = new ConcurrentHashMap<>();
+
 	public JasperReportsManager(HospitalBrowsingManager hospitalBrowsingManager, DataSource dataSource) {
 		this.hospitalManager = hospitalBrowsingManager;
 		this.dataSource = dataSource;
@@ -467,26 +479,14 @@ public class JasperReportsManager {
 			String dateTodayQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("TODAY_DATE"), YYYY_MM_DD);
 			String dateStartQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("START_DATE"), YYYY_MM_DD);
 			String dateEndQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("END_DATE"), YYYY_MM_DD);
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
-
-			String queryString = query.getText();
-			queryString = queryString.replace("$P{TODAY_DATE}", '\'' + dateTodayQuery + '\'');
-			queryString = queryString.replace("$P{START_DATE}", '\'' + dateStartQuery + '\'');
-			queryString = queryString.replace("$P{END_DATE}", '\'' + dateEndQuery + '\'');
+			JasperReport jasperReport = loadReport(compileJasperFilename(RPT_BASE, jasperFileName)).getJasperReport();
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("TODAY_DATE", dateTodayQuery);
+			queryParameters.put("START_DATE", dateStartQuery);
+			queryParameters.put("END_DATE", dateEndQuery);
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -513,33 +513,21 @@ public class JasperReportsManager {
 				date = TimeTools.getNow();
 			}
 			String dateQuery = TimeTools.formatDateTime(date, YYYY_MM_DD);
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
+			JasperReport jasperReport = loadReport(compileJasperFilename(RPT_BASE, jasperFileName)).getJasperReport();
 
-			String queryString = query.getText();
-			queryString = queryString.replace("$P{todate}", '\'' + dateQuery + '\'');
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("todate", dateQuery);
 			if (groupBy != null) {
-				queryString = queryString.replace("$P{groupBy}", '\'' + groupBy + '\'');
+				queryParameters.put("groupBy", groupBy);
 			}
 			if (sortBy != null) {
-				queryString = queryString.replace("$P!{sortBy}", '\'' + sortBy + '\'');
+				queryParameters.put("sortBy", sortBy);
 			}
 			if (filter != null) {
-				queryString = queryString.replace("$P{filter}", '\'' + filter + '\'');
+				queryParameters.put("filter", filter);
 			}
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
-
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -634,31 +622,19 @@ public class JasperReportsManager {
 			String dateFromQuery = TimeTools.formatDateTime(dateFrom, YYYY_MM_DD);
 			String dateToQuery = TimeTools.formatDateTime(dateTo, YYYY_MM_DD);
 
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
+			JasperReport jasperReport = loadReport(compileJasperFilename(RPT_BASE, jasperFileName)).getJasperReport();
 
-			String queryString = query.getText();
-			queryString = queryString.replace("$P{fromdate}", '\'' + dateFromQuery + '\'');
-			queryString = queryString.replace("$P{todate}", '\'' + dateToQuery + '\'');
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", dateFromQuery);
+			queryParameters.put("todate", dateToQuery);
 			if (medical != null) {
-				queryString = queryString.replace("$P{productID}", "'" + medical.getCode() + '\'');
+				queryParameters.put("productID", String.valueOf(medical.getCode()));
 			}
 			if (ward != null) {
-				queryString = queryString.replace("$P{WardCode}", '\'' + ward.getCode() + '\'');
+				queryParameters.put("WardCode", ward.getCode());
 			}
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
-
-			File exportFile = new File(exportFileName);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFileName));
 
 		} catch (Exception e) {
 			LOGGER.error("", e);
@@ -799,25 +775,13 @@ public class JasperReportsManager {
 
 		try {
 			String filename = compileJasperFilename(jasperFileFolder, jasperFileName);
-			File jasperFile = new File(filename);
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
-			String queryString = query.getText();
-
-			queryString = queryString.replace("$P{fromdate}", "'" + java.sql.Date.valueOf(fromDate) + '\'');
-			queryString = queryString.replace("$P{todate}", "'" + java.sql.Date.valueOf(toDate) + '\'');
+			JasperReport jasperReport = loadReport(filename).getJasperReport();
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", java.sql.Date.valueOf(fromDate));
+			queryParameters.put("todate", java.sql.Date.valueOf(toDate));
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFilename));
 		} catch (Exception exception) {
 			throw new OHReportException(exception, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
 		}
@@ -827,27 +791,16 @@ public class JasperReportsManager {
 					throws OHServiceException {
 
 		try {
-			File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
-			String queryString = query.getText();
+			JasperReport jasperReport = loadReport(compileJasperFilename(jasperFileFolder, jasperFileName)).getJasperReport();
 
 			String dateFromQuery = TimeTools.formatDateTime(TimeTools.getDate(fromDate, DD_MM_YYYY), YYYY_MM_DD);
 			String dateToQuery = TimeTools.formatDateTime(TimeTools.getDate(toDate, DD_MM_YYYY), YYYY_MM_DD);
 
-			queryString = queryString.replace("$P{fromdate}", '\'' + dateFromQuery + '\'');
-			queryString = queryString.replace("$P{todate}", '\'' + dateToQuery + '\'');
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", dateFromQuery);
+			queryParameters.put("todate", dateToQuery);
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
-
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFilename));
 		} catch (Exception exception) {
 			throw new OHReportException(exception, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
 		}
@@ -872,23 +825,13 @@ public class JasperReportsManager {
 					throws OHServiceException {
 
 		try {
-			File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-			JRQuery query = jasperReport.getMainDataset().getQuery();
-			String queryString = query.getText();
-			queryString = queryString.replace("$P{year}", "'" + year + '\'');
-			queryString = queryString.replace("$P{month}", "'" + month + '\'');
+			JasperReport jasperReport = loadReport(compileJasperFilename(jasperFileFolder, jasperFileName)).getJasperReport();
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("year", String.valueOf(year));
+			queryParameters.put("month", String.valueOf(month));
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryToExcel(jasperReport, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -984,13 +927,38 @@ public class JasperReportsManager {
 	}
 
 	private void addSubReportsBundleParameters(String jasperFileFolder, String jasperFileName, Map<String, Object> parameters) throws JRException {
-		File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-		final JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+		List<String> subreportNames = loadReport(compileJasperFilename(jasperFileFolder, jasperFileName)).getSubreportNames();
+		for (String subreportName : subreportNames) {
+			// the existing reports only declare SUBREPORT_RESOURCE_BUNDLE_1, the last subreport found wins as it always did
+			addReportBundleParameter("SUBREPORT_RESOURCE_BUNDLE_1", subreportName, parameters);
+		}
+	}
+
+	/**
+	 * Returns the compiled report stored in the given file, loading it from disk only the first time and whenever the file has been modified since.
+	 */
+	private CachedReport loadReport(String jasperFilename) throws JRException {
+		File jasperFile = new File(jasperFilename);
+		long lastModified = jasperFile.lastModified();
+		CachedReport cachedReport = reportCache.get(jasperFilename);
+		if (cachedReport == null || cachedReport.getLastModified() != lastModified) {
+			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			cachedReport = new CachedReport(jasperReport, lastModified, findSubreportNames(jasperReport));
+			reportCache.put(jasperFilename, cachedReport);
+		}
+		return cachedReport;
+	}
+
+	private static List<String> findSubreportNames(JasperReport jasperReport) {
+		List<String> subreportNames = new ArrayList<>();
 		JRBand[] bands = jasperReport.getAllBands(); // Get all bands
+		if (bands == null) {
+			return subreportNames;
+		}
+		Pattern pattern = Pattern.compile("\"(.*)\"");
 		for (JRBand band : bands) {
 			List<JRChild> elements = band.getChildren(); // Get all children
 			for (JRChild child : elements) {
-				int index = 1;
 				if (child instanceof JRBaseSubreport) { // This is a subreport
 					JRBaseSubreport subreport = (JRBaseSubreport) child;
 					String expression = ""; // Lets find out the expression used
@@ -1002,18 +970,56 @@ public class JasperReportsManager {
 					/*
 					 * add indexed subreport bundle
 					 */
-					Pattern pattern = Pattern.compile("\"(.*)\"");
 					Matcher matcher = pattern.matcher(expression);
 					if (matcher.find()) {
 						String subreportName = matcher.group(1).split("\\.")[0];
 						LOGGER.debug("found a subreport: {}", subreportName);
-						addReportBundleParameter("SUBREPORT_RESOURCE_BUNDLE_" + index, subreportName, parameters);
+						subreportNames.add(subreportName);
 					} else {
 						LOGGER.error(">> unexpected subreport expression {}", expression);
 					}
 				}
 			}
 		}
+		return subreportNames;
+	}
+
+	/**
+	 * Runs the main query of the report and exports its rows to the given file, in Excel 97-2003 format if its extension is {@code .xls}.
+	 * The {@code $P{...}} parameters of the query with a value in {@code queryParameters} are bound as statement parameters. The
+	 * {@code $P!{...}} parameters are replaced by their value, as Jasper does, only if it is one of {@link #LITERAL_QUERY_PARAMETER_VALUES}.
+	 */
+	private void exportQueryToExcel(JasperReport jasperReport, Map<String, Object> queryParameters, File exportFile) throws OHException {
+		List<Object> bindValues = new ArrayList<>();
+		Matcher matcher = QUERY_PARAMETER_PATTERN.matcher(jasperReport.getMainDataset().getQuery().getText());
+		StringBuilder queryString = new StringBuilder();
+		while (matcher.find()) {
+			String name = matcher.group(2);
+			if (!queryParameters.containsKey(name)) {
+				matcher.appendReplacement(queryString, Matcher.quoteReplacement(matcher.group()));
+			} else if (matcher.group(1).isEmpty()) {
+				matcher.appendReplacement(queryString, "?");
+				bindValues.add(queryParameters.get(name));
+			} else {
+				String value = String.valueOf(queryParameters.get(name));
+				if (!LITERAL_QUERY_PARAMETER_VALUES.getOrDefault(name, Set.of()).contains(value)) {
+					throw new OHException("Value '" + value + "' not allowed for the query parameter " + name);
+				}
+				matcher.appendReplacement(queryString, Matcher.quoteReplacement(value));
+			}
+		}
+		matcher.appendTail(queryString);
+
+		DbQueryLogger dbQuery = new DbQueryLogger(dataSource);
+		dbQuery.getData(queryString.toString(), bindValues, resultSet -> {
+			ExcelExporter xlsExport = new ExcelExporter();
+			if (exportFile.getName().endsWith(".xls")) {
+				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
+			} else {
+				xlsExport.exportResultsetToExcel(resultSet, exportFile);
+			}
+			return null;
+		});
 	}
 
 	private String getPatientPhotoFile(String patID) {
@@ -1040,12 +1046,11 @@ public class JasperReportsManager {
 
 	private JasperReportResultDto generateJasperReport(String jasperFilename, String filename, Map<String, Object> parameters)
 					throws JRException, SQLException {
-		File jasperFile = new File(jasperFilename);
-		final JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-		Connection connection = dataSource.getConnection();
-		JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, connection);
-		connection.close();
-		return new JasperReportResultDto(jasperPrint, jasperFilename, filename);
+		final JasperReport jasperReport = loadReport(jasperFilename).getJasperReport();
+		try (Connection connection = dataSource.getConnection()) {
+			JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, connection);
+			return new JasperReportResultDto(jasperPrint, jasperFilename, filename);
+		}
 	}
 
 	private String compileJasperFilename(String folderName, String jasperFileName) {
@@ -1097,4 +1102,30 @@ public class JasperReportsManager {
 		return Optional.ofNullable(localDate).map(t -> Date.from(t.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant())).orElse(null);
 	}
 
+	private static final class CachedReport {
+
+		private final JasperReport jasperReport;
+
+		private final long lastModified;
+
+		private final List<String> subreportNames;
+
+		private CachedReport(JasperReport jasperReport, long lastModified, List<String> subreportNames) {
+			this.jasperReport = jasperReport;
+			this.lastModified = lastModified;
+			this.subreportNames = subreportNames;
+		}
+
+		private JasperReport getJasperReport() {
+			return jasperReport;
+		}
+
+		private long getLastModified() {
+			return lastModified;
+		}
+
+		private List<String> getSubreportNames() {
+			return subreportNames;
+		}
+	}
 }
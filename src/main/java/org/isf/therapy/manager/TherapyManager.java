@@ -24,11 +24,13 @@ package org.isf.therapy.manager;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.manager.MedicalBrowsingManager;
 import org.isf.medicals.model.Medical;
-import org.isf.medicalstockward.manager.MovWardBrowserManager;
+import org.isf.medicalstock.manager.MovBrowserManager;
 import org.isf.menu.manager.UserBrowsingManager;
 import org.isf.patient.manager.PatientBrowserManager;
 import org.isf.patient.model.Patient;
@@ -55,15 +57,15 @@ public class TherapyManager {
 
 	private MedicalBrowsingManager medManager;
 
-	private MovWardBrowserManager wardManager;
+	private MovBrowserManager movManager;
 
 	public TherapyManager(TherapyIoOperations therapyIoOperations, SmsOperations smsOperations, PatientBrowserManager patientBrowserManager,
-	                      MedicalBrowsingManager medicalBrowsingManager, MovWardBrowserManager movWardBrowserManager) {
+	                      MedicalBrowsingManager medicalBrowsingManager, MovBrowserManager movBrowserManager) {
 		this.ioOperations = therapyIoOperations;
 		this.smsOp = smsOperations;
 		this.patientManager = patientBrowserManager;
 		this.medManager = medicalBrowsingManager;
-		this.wardManager = movWardBrowserManager;
+		this.movManager = movBrowserManager;
 	}
 
 	/**
@@ -257,7 +259,9 @@ public class TherapyManager {
 	@TranslateOHServiceException
 	public List<Medical> getMedicalsOutOfStock(List<Therapy> therapies) throws OHServiceException {
 		List<Medical> medOutStock = new ArrayList<>();
-		List<Medical> medArray = medManager.getMedicals();
+		// main store and wards quantities of all the medicals at once, from the lot stocks
+		List<Integer> medicalCodes = therapies.stream().map(th -> th.getMedical().getCode()).distinct().collect(Collectors.toList());
+		Map<Integer, Double> stockQuantities = movManager.getStockQuantities(medicalCodes);
 
 		double neededQty;
 		double actualQty;
@@ -281,10 +285,8 @@ public class TherapyManager {
 				neededQty = qty * freq * dayCount;
 
 				// CALCULATING STOCK QUANTITIES
-				Medical med = medArray.get(medArray.indexOf(th.getMedical()));
-				actualQty = med.getInitialqty() + med.getInqty() - med.getOutqty(); // MAIN STORE
-				int currentQuantity = wardManager.getCurrentQuantityInWard(null, med);
-				actualQty += currentQuantity;
+				Medical med = th.getMedical();
+				actualQty = med.getInitialqty() + stockQuantities.getOrDefault(med.getCode(), 0.0); // MAIN STORE AND WARDS
 
 				if (neededQty > actualQty && !medOutStock.contains(med)) {
 					medOutStock.add(med);
@@ -21,41 +21,104 @@
  */
 package org.isf.utils.db;
 
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
 
 import org.isf.generaldata.MessageBundle;
+import org.isf.menu.manager.Context;
 import org.isf.utils.exception.OHException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Class that executes a query using the connection defined in DbSingleJpaConn; thus a single connection is reused for all queries.
- * The various methods that open a connection with the autocommit flag set to false have the responsibility
- * of doing the commit/rollback operation
+ * Class that executes a query on a connection borrowed from the application {@link DataSource} pool.
+ * The connection, the statement and the resultset live only for the duration of the call: the resultset is handed to a
+ * {@link ResultSetHandler} and everything is closed when the handler returns.
  */
 public class DbQueryLogger {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(DbQueryLogger.class);
-    
+
 	/**
-     * Method that executes a query and returns a resultset
-     * @param aQuery
-     * @param autocommit
-     * @return ResultSet
-     * @throws OHException
-     */
-	public ResultSet getData(String aQuery, boolean autocommit) throws OHException {
+	 * Rows fetched from the server at a time, so that large resultsets are streamed instead of being loaded at once
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
+	public static final int DEFAULT_QUERY_TIMEOUT_SECONDS = 600;
+
+	/**
+	 * Consumes the resultset of a query while its connection is open
+	 *
+	 * @param <T> the type of the result
+	 */
+	@FunctionalInterface
+	public interface ResultSetHandler<T> {
+
+		T handle(ResultSet resultSet) throws SQLException, IOException, OHException;
+	}
+
+	private final DataSource dataSource;
+
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	private int queryTimeout = DEFAULT_QUERY_TIMEOUT_SECONDS;
+
+	public DbQueryLogger() {
+		this(Context.getApplicationContext().getBean(DataSource.class));
+	}
+
+	public DbQueryLogger(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * Method that executes a query without parameters and passes the resultset to the handler
+	 * @param aQuery
+	 * @param handler
+	 * @return the value returned by the handler
+	 * @throws OHException
+	 */
+	public <T> T getData(String aQuery, ResultSetHandler<T> handler) throws OHException {
+		return getData(aQuery, Collections.emptyList(), handler);
+	}
+
+	/**
+	 * Method that executes a query and passes the resultset to the handler
+	 * @param aQuery - the query, with a {@code ?} placeholder for each parameter
+	 * @param parameters - the values bound to the placeholders, in order
+	 * @param handler
+	 * @return the value returned by the handler
+	 * @throws OHException
+	 */
+	public <T> T getData(String aQuery, List<?> parameters, ResultSetHandler<T> handler) throws OHException {
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("Query {}", sanitize(aQuery));
+			LOGGER.debug("Query {} {}", sanitize(aQuery), parameters);
 		}
-		try {
-			Connection conn = DbSingleJpaConn.getConnection();
-			conn.setAutoCommit(autocommit);
-			Statement stat = conn.createStatement();
-			return stat.executeQuery(aQuery);
+		try (Connection conn = dataSource.getConnection();
+						PreparedStatement stat = conn.prepareStatement(aQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			stat.setFetchSize(fetchSize);
+			stat.setQueryTimeout(queryTimeout);
+			for (int i = 0; i < parameters.size(); i++) {
+				stat.setObject(i + 1, parameters.get(i));
+			}
+			try (ResultSet resultSet = stat.executeQuery()) {
+				return handler.handle(resultSet);
+			}
 		} catch (OHException e) {
 			throw e;
 		} catch (SQLException e) {
@@ -32,17 +32,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Singleton, provide db connection used on persistence unit
+ * Singleton, provide db connection used on persistence unit; a connection no longer valid is replaced.
+ * Queries should rather use {@link DbQueryLogger}, which borrows a connection from the pool for each call.
  */
 public class DbSingleJpaConn {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DbSingleJpaConn.class);
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
 	private static Connection connection;
 
 	private DbSingleJpaConn() { }
 
 	public static Connection getConnection() throws OHException {
-		if (connection == null) {
+		if (connection == null || !isValid(connection)) {
 			try {
 				connection = createConnection();
 			} catch (Exception e) {
@@ -54,6 +56,14 @@ public class DbSingleJpaConn {
 		return connection;
 	}
 
+	private static boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
 	private static Connection createConnection() throws SQLException, IOException, OHException {
 		DbJpaUtil jpa = new DbJpaUtil();
 		if (jpa.getEntityManager() == null) {
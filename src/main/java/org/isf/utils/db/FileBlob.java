@@ -0,0 +1,183 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.utils.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+
+import org.hibernate.engine.jdbc.BinaryStream;
+import org.hibernate.engine.jdbc.BlobImplementer;
+
+/**
+ * Read-only {@link Blob} backed by a file.
+ * <p>
+ * The content is read from the file only when it is asked for, so a big file (e.g. a DICOM study) is never loaded in memory: it is streamed
+ * to the database by Hibernate ({@link BlobImplementer}) and can be copied to another file or read through {@link #getBinaryStream()}.
+ */
+public class FileBlob implements Blob, BlobImplementer, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final File file;
+
+	public FileBlob(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public long length() {
+		return file.length();
+	}
+
+	@Override
+	public byte[] getBytes(long pos, int length) throws SQLException {
+		if (pos < 1 || length < 0) {
+			throw new SQLException("Invalid position " + pos + " or length " + length);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long start = pos - 1;
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - start)));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					return Arrays.copyOf(buffer.array(), buffer.position());
+				}
+			}
+			return buffer.array();
+		} catch (IOException e) {
+			throw new SQLException("Unable to read " + file, e);
+		}
+	}
+
+	@Override
+	public InputStream getBinaryStream() throws SQLException {
+		try {
+			return new FileInputStream(file);
+		} catch (IOException e) {
+			throw new SQLException("Unable to read " + file, e);
+		}
+	}
+
+	@Override
+	public InputStream getBinaryStream(long pos, long length) throws SQLException {
+		return new ByteArrayInputStream(getBytes(pos, (int) Math.min(length, Integer.MAX_VALUE)));
+	}
+
+	@Override
+	public long position(byte[] pattern, long start) throws SQLException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public long position(Blob pattern, long start) throws SQLException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public int setBytes(long pos, byte[] bytes) throws SQLException {
+		throw new SQLFeatureNotSupportedException("FileBlob is read-only");
+	}
+
+	@Override
+	public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+		throw new SQLFeatureNotSupportedException("FileBlob is read-only");
+	}
+
+	@Override
+	public OutputStream setBinaryStream(long pos) throws SQLException {
+		throw new SQLFeatureNotSupportedException("FileBlob is read-only");
+	}
+
+	@Override
+	public void truncate(long len) throws SQLException {
+		throw new SQLFeatureNotSupportedException("FileBlob is read-only");
+	}
+
+	@Override
+	public void free() {
+	}
+
+	/**
+	 * Used by Hibernate to bind the content with {@code setBinaryStream}, without copying it in a byte array first.
+	 */
+	@Override
+	public BinaryStream getUnderlyingStream() {
+		return new BinaryStream() {
+
+			private InputStream stream;
+
+			@Override
+			public InputStream getInputStream() {
+				if (stream == null) {
+					try {
+						stream = new FileInputStream(file);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return stream;
+			}
+
+			@Override
+			public byte[] getBytes() {
+				try (InputStream input = new FileInputStream(file)) {
+					return input.readAllBytes();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			@Override
+			public long getLength() {
+				return length();
+			}
+
+			@Override
+			public void release() {
+				if (stream != null) {
+					try {
+						stream.close();
+					} catch (IOException e) {
+						// nothing to do, the stream was only read
+					}
+					stream = null;
+				}
+			}
+		};
+	}
+}
@@ -39,10 +39,13 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.swing.JFileChooser;
 import javax.swing.JTable;
@@ -54,21 +57,30 @@ import org.apache.poi.hssf.usermodel.HSSFRichTextString;
 import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.isf.generaldata.MessageBundle;
 import org.isf.utils.exception.OHException;
 
 public class ExcelExporter {
 
+	/**
+	 * Number of rows kept in memory by the streaming xlsx exports, older rows are flushed to a temporary file
+	 */
+	public static final int DEFAULT_ROW_ACCESS_WINDOW_SIZE = 100;
+
+	private static final int MAX_EXCEL97_ROW_INDEX = SpreadsheetVersion.EXCEL97.getLastRowIndex();
+
+	private static final int MAX_EXCEL2007_ROW_INDEX = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+	private int rowAccessWindowSize = DEFAULT_ROW_ACCESS_WINDOW_SIZE;
 	private CharsetEncoder encoder;
 	private Locale currentLocale;
 	private Workbook workbook;
@@ -77,7 +89,6 @@ public class ExcelExporter {
 	private CellStyle dateTimeStyle;
 	private CellStyle bigDecimalStyle;
 	private CellStyle headerStyle;
-	private CreationHelper createHelper;
 
 	public ExcelExporter() {
 		encoder = StandardCharsets.UTF_8.newEncoder();
@@ -86,6 +97,14 @@ public class ExcelExporter {
 		currentLocale = Locale.getDefault();
 	}
 
+	/**
+	 * @param rowAccessWindowSize - the number of rows kept in memory by the xlsx exports
+	 */
+	public ExcelExporter(int rowAccessWindowSize) {
+		this();
+		this.rowAccessWindowSize = rowAccessWindowSize;
+	}
+
 	private void initStyles() {
 
 		headerStyle = workbook.createCellStyle();
@@ -286,25 +305,35 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportDataToCSV(Collection data, File exportFile) throws IOException, OHException {
+		writeDataToCSV(data.iterator(), exportFile);
+	}
+
+	/**
+	 * Export a {@link Stream} of {@link Map}s to CSV, one row per map, without holding the rows in memory
+	 *
+	 * @param data
+	 * @param exportFile
+	 * @throws IOException
+	 */
+	public void exportDataToCSV(Stream<? extends Map<?, ?>> data, File exportFile) throws IOException {
+		writeDataToCSV(data.iterator(), exportFile);
+	}
 
-		try (FileWriter outFile = new FileWriter(exportFile)) {
+	private void writeDataToCSV(Iterator<?> data, File exportFile) throws IOException {
+		try (BufferedWriter outFile = new BufferedWriter(new FileWriter(exportFile))) {
 			boolean header = false;
-			for (Object map : data) {
-				Map thisMap = ((Map) map);
+			while (data.hasNext()) {
+				Map<?, ?> thisMap = (Map<?, ?>) data.next();
 				if (!header) {
-					Set columns = thisMap.keySet();
-					for (Object column : columns) {
+					for (Object column : thisMap.keySet()) {
 						outFile.write(column.toString() + ';');
 					}
 					outFile.write("\n");
 					header = true;
 				}
 
-				String strVal;
-				Collection values = thisMap.values();
-				for (Object value : values) {
-					strVal = convertValue(value);
-					outFile.write(strVal + ';');
+				for (Object value : thisMap.values()) {
+					outFile.write(convertValue(value) + ';');
 				}
 				outFile.write("\n");
 			}
@@ -360,46 +389,46 @@ public class ExcelExporter {
 	 */
 	public void exportTableToExcel(JTable jtable, File file, int columnCount) throws IOException {
 		TableModel model = jtable.getModel();
-		FileOutputStream fileStream = new FileOutputStream(file);
-
-		workbook = new XSSFWorkbook();
-		createHelper = workbook.getCreationHelper();
-
-		Sheet worksheet = workbook.createSheet();
-		initStyles();
+		SXSSFWorkbook streamingWorkbook = createStreamingWorkbook();
+		try (FileOutputStream fileStream = new FileOutputStream(file)) {
+			Sheet worksheet = workbook.createSheet();
 
-		Row headers = worksheet.createRow((short) 0);
-		int colCount;
-		if (columnCount == -1) {
-			colCount = model.getColumnCount();
-		} else {
-			colCount = columnCount;
-		}
-		for (int i = 0; i < colCount; i++) {
-			Cell cell = headers.createCell((short) i);
-			RichTextString value = createHelper.createRichTextString(model.getColumnName(i));
-			cell.setCellStyle(headerStyle);
-			cell.setCellValue(value);
-		}
+			Row headers = worksheet.createRow(0);
+			int colCount;
+			if (columnCount == -1) {
+				colCount = model.getColumnCount();
+			} else {
+				colCount = columnCount;
+			}
+			for (int i = 0; i < colCount; i++) {
+				Cell cell = headers.createCell(i);
+				cell.setCellStyle(headerStyle);
+				cell.setCellValue(model.getColumnName(i));
+			}
 
-		int rowCount = model.getRowCount();
-		for (int i = 0; i < rowCount; i++) {
-			int index = i + 1;
-			Row row = worksheet.createRow(index);
+			int rowCount = model.getRowCount();
+			for (int i = 0; i < rowCount; i++) {
+				int index = i + 1;
+				Row row = worksheet.createRow(index);
 
-			for (int j = 0; j < colCount; j++) {
-				Cell cell = row.createCell((short) j);
-				Object value = model.getValueAt(i, j);
-				setValueForExcel(cell, value);
+				for (int j = 0; j < colCount; j++) {
+					Cell cell = row.createCell(j);
+					Object value = model.getValueAt(i, j);
+					setValueForExcel(cell, value);
+				}
 			}
+			workbook.write(fileStream);
+			fileStream.flush();
+		} finally {
+			closeStreamingWorkbook(streamingWorkbook);
 		}
-		workbook.write(fileStream);
-		fileStream.flush();
-		fileStream.close();
 	}
 
 	/**
 	 * Export a {@link ResultSet} to Excel using Apache POI library
+	 * <p>
+	 * Rows are streamed to the file, only the last {@code rowAccessWindowSize} of them are kept in memory. Sheets are limited to 1048576 rows,
+	 * the export continues on a new sheet when a sheet is full.
 	 *
 	 * @param resultSet
 	 * @param exportFile
@@ -407,49 +436,45 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportResultsetToExcel(ResultSet resultSet, File exportFile) throws IOException, OHException {
+		SXSSFWorkbook streamingWorkbook = createStreamingWorkbook();
 		try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
+			ResultSetMetaData rsmd = resultSet.getMetaData();
 
-			workbook = new XSSFWorkbook();
-			createHelper = workbook.getCreationHelper();
-
-			Sheet worksheet = workbook.createSheet();
-			initStyles();
-
-			Row headers = worksheet.createRow((short) 0);
-			try {
-				ResultSetMetaData rsmd = resultSet.getMetaData();
+			int colCount = rsmd.getColumnCount();
+			List<String> columns = new ArrayList<>(colCount);
+			for (int i = 0; i < colCount; i++) {
+				columns.add(rsmd.getColumnName(i + 1));
+			}
+			Sheet worksheet = createSheet(columns);
 
-				int colCount = rsmd.getColumnCount();
-				for (int i = 0; i < colCount; i++) {
-					Cell cell = headers.createCell((short) i);
-					RichTextString value = createHelper.createRichTextString(rsmd.getColumnName(i + 1));
-					cell.setCellStyle(headerStyle);
-					cell.setCellValue(value);
+			int index = 1;
+			while (resultSet.next()) {
+				if (index > MAX_EXCEL2007_ROW_INDEX) {
+					worksheet = createSheet(columns);
+					index = 1;
 				}
+				Row row = worksheet.createRow(index);
 
-				int index = 1;
-				while (resultSet.next()) {
-					Row row = worksheet.createRow(index);
-
-					for (int j = 0; j < colCount; j++) {
-						Object value = resultSet.getObject(j + 1);
-						Cell cell = row.createCell((short) j);
-						setValueForExcel(cell, value);
-					}
-					index++;
+				for (int j = 0; j < colCount; j++) {
+					Object value = resultSet.getObject(j + 1);
+					Cell cell = row.createCell(j);
+					setValueForExcel(cell, value);
 				}
-				workbook.write(fileStream);
-				fileStream.flush();
-			} catch (FileNotFoundException e) {
-				throw new OHException(e.getLocalizedMessage());
+				index++;
 			}
+			workbook.write(fileStream);
+			fileStream.flush();
+		} catch (FileNotFoundException e) {
+			throw new OHException(e.getLocalizedMessage());
 		} catch (SQLException e) {
 			throw new OHException(MessageBundle.getMessage("angal.sql.problemsoccurredwiththesqlinstruction.msg"), e);
+		} finally {
+			closeStreamingWorkbook(streamingWorkbook);
 		}
 	}
 
 	/**
-	 * Export a {@link ResultSet} to Excel using Apache POI library
+	 * Export a {@link Collection} of {@link Map}s to Excel using Apache POI library
 	 *
 	 * @param data
 	 * @param exportFile
@@ -457,45 +482,84 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportDataToExcel(Collection data, File exportFile) throws IOException, OHException {
-		FileOutputStream fileStream = new FileOutputStream(exportFile);
+		writeDataToExcel(data.iterator(), exportFile);
+	}
 
-		workbook = new XSSFWorkbook();
-		createHelper = workbook.getCreationHelper();
-		Sheet worksheet = workbook.createSheet();
-		initStyles();
+	/**
+	 * Export a {@link Stream} of {@link Map}s to Excel, one row per map, without holding the rows in memory
+	 * <p>
+	 * Sheets are limited to 1048576 rows, the export continues on a new sheet when a sheet is full.
+	 *
+	 * @param data
+	 * @param exportFile
+	 * @throws IOException
+	 */
+	public void exportDataToExcel(Stream<? extends Map<?, ?>> data, File exportFile) throws IOException {
+		writeDataToExcel(data.iterator(), exportFile);
+	}
 
-		Row headers = worksheet.createRow((short) 0);
-		boolean header = false;
-		int index = 1;
-		for (Object map : data) {
-			Map thisMap = ((Map) map);
-			if (!header) {
-				Set columns = thisMap.keySet();
-				int h = 0;
-				for (Object column : columns) {
-					Cell cell = headers.createCell((short) h);
-					RichTextString value = createHelper.createRichTextString(column.toString());
-					cell.setCellStyle(headerStyle);
-					cell.setCellValue(value);
-					h++;
+	private void writeDataToExcel(Iterator<?> data, File exportFile) throws IOException {
+		SXSSFWorkbook streamingWorkbook = createStreamingWorkbook();
+		try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
+			Sheet worksheet = null;
+			List<String> columns = null;
+			int index = 1;
+			while (data.hasNext()) {
+				Map<?, ?> thisMap = (Map<?, ?>) data.next();
+				if (columns == null) {
+					columns = new ArrayList<>();
+					for (Object column : thisMap.keySet()) {
+						columns.add(column.toString());
+					}
+					worksheet = createSheet(columns);
+				}
+				if (index > MAX_EXCEL2007_ROW_INDEX) {
+					worksheet = createSheet(columns);
+					index = 1;
 				}
-				header = true;
-				continue;
-			}
 
-			Row row = worksheet.createRow(index);
-			Collection values = thisMap.values();
-			int j = 0;
-			for (Object value : values) {
-				Cell cell = row.createCell((short) j);
-				setValueForExcel(cell, value);
-				j++;
+				Row row = worksheet.createRow(index);
+				int j = 0;
+				for (Object value : thisMap.values()) {
+					Cell cell = row.createCell(j);
+					setValueForExcel(cell, value);
+					j++;
+				}
+				index++;
 			}
-			index++;
+			if (worksheet == null) {
+				workbook.createSheet();
+			}
+			workbook.write(fileStream);
+			fileStream.flush();
+		} finally {
+			closeStreamingWorkbook(streamingWorkbook);
 		}
-		workbook.write(fileStream);
-		fileStream.flush();
-		fileStream.close();
+	}
+
+	private Sheet createSheet(List<String> columns) {
+		Sheet worksheet = workbook.createSheet();
+		Row headers = worksheet.createRow(0);
+		for (int i = 0; i < columns.size(); i++) {
+			Cell cell = headers.createCell(i);
+			cell.setCellStyle(headerStyle);
+			cell.setCellValue(columns.get(i));
+		}
+		return worksheet;
+	}
+
+	private SXSSFWorkbook createStreamingWorkbook() {
+		SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+		streamingWorkbook.setCompressTempFiles(true);
+		workbook = streamingWorkbook;
+		initStyles();
+		return streamingWorkbook;
+	}
+
+	private void closeStreamingWorkbook(SXSSFWorkbook streamingWorkbook) throws IOException {
+		// removes the temporary files holding the flushed rows
+		streamingWorkbook.dispose();
+		streamingWorkbook.close();
 	}
 
 	private void setValueForExcel(Cell cell, Object value) {
@@ -526,8 +590,7 @@ public class ExcelExporter {
 				Long val = (Long) value;
 				cell.setCellValue(val);
 			} else {
-				RichTextString val = createHelper.createRichTextString(value.toString());
-				cell.setCellValue(val);
+				cell.setCellValue(value.toString());
 			}
 		}
 	}
@@ -559,7 +622,7 @@ public class ExcelExporter {
 		HSSFSheet worksheet = (HSSFSheet) workbook.createSheet();
 		initStyles();
 
-		HSSFRow headers = worksheet.createRow((short) 0);
+		HSSFRow headers = worksheet.createRow(0);
 		int colCount;
 		if (columnCount == -1) {
 			colCount = model.getColumnCount();
@@ -567,7 +630,7 @@ public class ExcelExporter {
 			colCount = columnCount;
 		}
 		for (int i = 0; i < colCount; i++) {
-			HSSFCell cell = headers.createCell((short) i);
+			HSSFCell cell = headers.createCell(i);
 			HSSFRichTextString value = new HSSFRichTextString(model.getColumnName(i));
 			cell.setCellStyle(headerStyle);
 			cell.setCellValue(value);
@@ -576,10 +639,10 @@ public class ExcelExporter {
 		int rowCount = model.getRowCount();
 		for (int i = 0; i < rowCount; i++) {
 			int index = i + 1;
-			HSSFRow row = worksheet.createRow((short) index);
+			HSSFRow row = worksheet.createRow(index);
 
 			for (int j = 0; j < colCount; j++) {
-				HSSFCell cell = row.createCell((short) j);
+				HSSFCell cell = row.createCell(j);
 				Object value = model.getValueAt(i, j);
 				setValueForExcelOLD(cell, value);
 			}
@@ -591,6 +654,8 @@ public class ExcelExporter {
 
 	/**
 	 * Export a {@link ResultSet} to Excel 97-2003 using Apache POI library
+	 * <p>
+	 * Excel 97-2003 sheets are limited to 65536 rows, the export continues on a new sheet when a sheet is full.
 	 *
 	 * @param resultSet
 	 * @param exportFile
@@ -601,28 +666,29 @@ public class ExcelExporter {
 		try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
 
 			workbook = new HSSFWorkbook();
-			HSSFSheet worksheet = (HSSFSheet) workbook.createSheet();
 			initStyles();
 
-			HSSFRow headers = worksheet.createRow((short) 0);
 			try {
 				ResultSetMetaData rsmd = resultSet.getMetaData();
 
 				int colCount = rsmd.getColumnCount();
+				List<String> columns = new ArrayList<>(colCount);
 				for (int i = 0; i < colCount; i++) {
-					HSSFCell cell = headers.createCell((short) i);
-					HSSFRichTextString value = new HSSFRichTextString(rsmd.getColumnName(i + 1));
-					cell.setCellStyle(headerStyle);
-					cell.setCellValue(value);
+					columns.add(rsmd.getColumnName(i + 1));
 				}
+				HSSFSheet worksheet = createSheetOLD(columns);
 
 				int index = 1;
 				while (resultSet.next()) {
-					HSSFRow row = worksheet.createRow((short) index);
+					if (index > MAX_EXCEL97_ROW_INDEX) {
+						worksheet = createSheetOLD(columns);
+						index = 1;
+					}
+					HSSFRow row = worksheet.createRow(index);
 
 					for (int j = 0; j < colCount; j++) {
 						Object value = resultSet.getObject(j + 1);
-						HSSFCell cell = row.createCell((short) j);
+						HSSFCell cell = row.createCell(j);
 						setValueForExcelOLD(cell, value);
 					}
 					index++;
@@ -636,7 +702,9 @@ public class ExcelExporter {
 	}
 
 	/**
-	 * Export a {@link ResultSet} to Excel 97-2003 using Apache POI library
+	 * Export a {@link Collection} of {@link Map}s to Excel 97-2003 using Apache POI library
+	 * <p>
+	 * Excel 97-2003 sheets are limited to 65536 rows, the export continues on a new sheet when a sheet is full.
 	 *
 	 * @param data
 	 * @param exportFile
@@ -644,44 +712,54 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportDataToExcelOLD(Collection data, File exportFile) throws IOException, OHException {
-		FileOutputStream fileStream = new FileOutputStream(exportFile);
+		try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
 
-		workbook = new HSSFWorkbook();
-		HSSFSheet worksheet = (HSSFSheet) workbook.createSheet();
-		initStyles();
+			workbook = new HSSFWorkbook();
+			initStyles();
 
-		HSSFRow headers = worksheet.createRow((short) 0);
-		boolean header = false;
-		int index = 1;
-		for (Object map : data) {
-			Map thisMap = ((Map) map);
-			if (!header) {
-				Set columns = thisMap.keySet();
-				int h = 0;
-				for (Object column : columns) {
-					HSSFCell cell = headers.createCell((short) h);
-					HSSFRichTextString value = new HSSFRichTextString(column.toString());
-					cell.setCellStyle(headerStyle);
-					cell.setCellValue(value);
-					h++;
+			HSSFSheet worksheet = null;
+			List<String> columns = null;
+			int index = 1;
+			for (Object map : data) {
+				Map<?, ?> thisMap = (Map<?, ?>) map;
+				if (columns == null) {
+					columns = new ArrayList<>();
+					for (Object column : thisMap.keySet()) {
+						columns.add(column.toString());
+					}
+					worksheet = createSheetOLD(columns);
+				}
+				if (index > MAX_EXCEL97_ROW_INDEX) {
+					worksheet = createSheetOLD(columns);
+					index = 1;
 				}
-				header = true;
-				continue;
-			}
 
-			HSSFRow row = worksheet.createRow((short) index);
-			Collection values = thisMap.values();
-			int j = 0;
-			for (Object value : values) {
-				HSSFCell cell = row.createCell((short) j);
-				setValueForExcelOLD(cell, value);
-				j++;
+				HSSFRow row = worksheet.createRow(index);
+				int j = 0;
+				for (Object value : thisMap.values()) {
+					HSSFCell cell = row.createCell(j);
+					setValueForExcelOLD(cell, value);
+					j++;
+				}
+				index++;
 			}
-			index++;
+			if (worksheet == null) {
+				workbook.createSheet();
+			}
+			workbook.write(fileStream);
+			fileStream.flush();
 		}
-		workbook.write(fileStream);
-		fileStream.flush();
-		fileStream.close();
+	}
+
+	private HSSFSheet createSheetOLD(List<String> columns) {
+		HSSFSheet worksheet = (HSSFSheet) workbook.createSheet();
+		HSSFRow headers = worksheet.createRow(0);
+		for (int i = 0; i < columns.size(); i++) {
+			HSSFCell cell = headers.createCell(i);
+			cell.setCellStyle(headerStyle);
+			cell.setCellValue(new HSSFRichTextString(columns.get(i)));
+		}
+		return worksheet;
 	}
 
 	private void setValueForExcelOLD(HSSFCell cell, Object value) {
@@ -21,8 +21,6 @@
  */
 package org.isf.utils.time;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -318,13 +316,15 @@ public class TimeTools {
 		String query = " SELECT NOW( ) as time ";
 		DbQueryLogger dbQuery = new DbQueryLogger();
 		try {
-			ResultSet resultSet = dbQuery.getData(query, true);
-			while (resultSet.next()) {
-				String date = resultSet.getString("time");
-				DateTimeFormatter formatter = DateTimeFormatter.ofPattern(YYYY_MM_DD_HH_MM_SS);
-				return LocalDateTime.parse(date, formatter);
-			}
-		} catch (SQLException | OHException | DateTimeParseException exception) {
+			return dbQuery.getData(query, resultSet -> {
+				while (resultSet.next()) {
+					String date = resultSet.getString("time");
+					DateTimeFormatter formatter = DateTimeFormatter.ofPattern(YYYY_MM_DD_HH_MM_SS);
+					return LocalDateTime.parse(date, formatter);
+				}
+				return null;
+			});
+		} catch (OHException exception) {
 			LOGGER.error(exception.getMessage(), exception);
 		}
 		return null;
@@ -24,7 +24,6 @@ package org.isf.ward.service;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.isf.admission.model.Admission;
 import org.isf.admission.service.AdmissionIoOperationRepository;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
@@ -60,8 +59,7 @@ public class WardIoOperations {
 	 * @throws OHServiceException
 	 */
 	public int getCurrentOccupation(Ward ward) throws OHServiceException {
-		List<Admission> admissions = new ArrayList<>(admissionRepository.findAllWhereWard(ward.getCode()));
-		return admissions.size();
+		return (int) admissionRepository.countAllWhereWard(ward.getCode());
 	}
 
 	/**
@@ -30,8 +30,14 @@ import java.util.stream.Stream;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.isf.patient.service.PatientSearchIndexInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -44,6 +50,19 @@ public class OHCoreTestCase {
 	@PersistenceContext
 	public EntityManager entityManager;
 
+	@Autowired
+	private PatientSearchIndexInitializer patientSearchIndexInitializer;
+
+	private Boolean statisticsEnabled;
+
+	/**
+	 * Lets the patient search index build started with the context end first, so that it does not mark the index complete during a test.
+	 */
+	@BeforeEach
+	public void awaitPatientSearchIndexBuild() throws InterruptedException {
+		patientSearchIndexInitializer.awaitBuild();
+	}
+
 	public void cleanH2InMemoryDb() {
 		List<Object[]> showTables = entityManager.createNativeQuery("SHOW TABLES")
 			.getResultList();
@@ -60,6 +79,37 @@ public class OHCoreTestCase {
 		entityManager.createNativeQuery("SET REFERENTIAL_INTEGRITY TRUE").executeUpdate();
 	}
 
+	/**
+	 * Writes and detaches the fixtures, then starts counting the statements from zero, so that the statements budget of a query can be checked
+	 * with {@link Statistics#getPrepareStatementCount()}.
+	 */
+	public Statistics startStatementsCount() {
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = getStatistics();
+		if (statisticsEnabled == null) {
+			statisticsEnabled = statistics.isStatisticsEnabled();
+		}
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+		return statistics;
+	}
+
+	/**
+	 * Puts back the statistics setting found by {@link #startStatementsCount()}, the session factory being shared by all the test classes.
+	 */
+	@AfterEach
+	public void stopStatementsCount() {
+		if (statisticsEnabled != null) {
+			getStatistics().setStatisticsEnabled(statisticsEnabled);
+			statisticsEnabled = null;
+		}
+	}
+
+	private Statistics getStatistics() {
+		return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+	}
+
 	public void executeSQLScript(String fileName) {
 		entityManager.createNativeQuery("SET REFERENTIAL_INTEGRITY FALSE").executeUpdate();
 		try {
@@ -29,6 +29,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.accounting.manager.BillBrowserManager;
 import org.isf.accounting.model.Bill;
@@ -173,6 +174,20 @@ class Tests extends OHCoreTestCase {
 		assertThat(bills).contains(foundBill);
 	}
 
+	@Test
+	void testIoGetBillsStatementsBudget() throws Exception {
+		setupTestBill(false);
+		Statistics statistics = startStatementsCount();
+
+		List<Bill> bills = accountingIoOperation.getBills();
+
+		assertThat(bills).hasSize(1);
+		assertThat(bills.get(0).getPriceList().getName()).isNotNull();
+		assertThat(bills.get(0).getBillPatient().getName()).isNotNull();
+		// the bills with the price list, the patient and the admission
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1);
+	}
+
 	@Test
 	void testIoGetBill() throws Exception {
 		int id = setupTestBill(false);
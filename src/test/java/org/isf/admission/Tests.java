@@ -30,6 +30,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.admission.manager.AdmissionBrowserManager;
 import org.isf.admission.model.Admission;
@@ -67,6 +68,7 @@ import org.isf.patient.TestPatient;
 import org.isf.patient.manager.PatientBrowserManager;
 import org.isf.patient.model.Patient;
 import org.isf.patient.service.PatientIoOperationRepository;
+import org.isf.patient.service.PatientIoOperations;
 import org.isf.pregtreattype.TestPregnantTreatmentType;
 import org.isf.pregtreattype.model.PregnantTreatmentType;
 import org.isf.pregtreattype.service.PregnantTreatmentTypeIoOperationRepository;
@@ -80,6 +82,7 @@ import org.isf.ward.model.Ward;
 import org.isf.ward.service.WardIoOperationRepository;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -114,6 +117,8 @@ class Tests extends OHCoreTestCase {
 	@Autowired
 	PatientIoOperationRepository patientIoOperationRepository;
 	@Autowired
+	PatientIoOperations patientIoOperations;
+	@Autowired
 	AdmissionTypeIoOperationRepository admissionTypeIoOperationRepository;
 	@Autowired
 	DiseaseTypeIoOperationRepository diseaseTypeIoOperationRepository;
@@ -189,6 +194,38 @@ class Tests extends OHCoreTestCase {
 		assertThat(patients.get(0).getAdmission().getId()).isEqualTo(foundAdmission.getId());
 	}
 
+	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
+	@MethodSource("maternityRestartInJune")
+	void testGetAdmittedPatientsPage(boolean maternityRestartInJune) throws Exception {
+		GeneralData.MATERNITYRESTARTINJUNE = maternityRestartInJune;
+		int id = setupTestAdmission(false);
+		Admission foundAdmission = admissionIoOperation.getAdmission(id);
+		List<AdmittedPatient> patients = admissionIoOperation.getAdmittedPatients();
+		List<AdmittedPatient> firstPage = admissionIoOperation.getAdmittedPatients(null, null, null, 0, 1);
+		assertThat(firstPage).hasSize(1);
+		assertThat(firstPage.get(0).getPatient().getCode()).isEqualTo(patients.get(0).getPatient().getCode());
+		assertThat(firstPage.get(0).getAdmission().getId()).isEqualTo(foundAdmission.getId());
+		assertThat(admissionIoOperation.getAdmittedPatients(null, null, null, patients.size(), 1)).isEmpty();
+	}
+
+	@Test
+	void testGetAdmittedPatientsThroughSearchIndex() throws Exception {
+		int id = setupTestAdmission(false);
+		Patient patient = admissionIoOperation.getAdmission(id).getPatient();
+		assertThat(admissionIoOperation.getAdmittedPatients("testfirstname"))
+				.extracting(admittedPatient -> admittedPatient.getPatient().getCode())
+				.containsExactly(patient.getCode());
+
+		patientIoOperations.rebuildSearchIndex();
+		// saved without updating the index: once the index is complete, the search does not scan it any more
+		Patient notIndexed = testPatient.setup(false);
+		patientIoOperationRepository.saveAndFlush(notIndexed);
+
+		assertThat(admissionIoOperation.getAdmittedPatients("testfirstname"))
+				.extracting(admittedPatient -> admittedPatient.getPatient().getCode())
+				.containsExactly(patient.getCode());
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	void testGetAdmittedPatientWithDateRanges(boolean maternityRestartInJune) throws Exception {
@@ -309,6 +346,22 @@ class Tests extends OHCoreTestCase {
 		assertThat(admissions.get(0).getId()).isEqualTo(foundAdmission.getId());
 	}
 
+	@Test
+	void testIoGetAdmissionsByAdmissionDateStatementsBudget() throws Exception {
+		setupTestAdmission(false);
+		LocalDateTime dateFrom = LocalDateTime.parse("2000-01-01T10:11:30");
+		LocalDateTime dateTo = LocalDateTime.parse("2023-05-05T10:11:30");
+		Statistics statistics = startStatementsCount();
+
+		List<Admission> admissions = admissionIoOperation.getAdmissionsByAdmissionDate(dateFrom, dateTo);
+
+		assertThat(admissions).hasSize(1);
+		assertThat(admissions.get(0).getWard().getDescription()).isNotNull();
+		assertThat(admissions.get(0).getDiseaseOut3().getType()).isNotNull();
+		// the admissions with their associations, plus the disease types and the patient consensus at most
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	void testIoGetDischargesByDatePageable(boolean maternityRestartInJune) throws Exception {
@@ -588,6 +641,16 @@ class Tests extends OHCoreTestCase {
 		assertThat(result).isEqualTo(1);
 	}
 
+	@Test
+	void testIoGetUsedWardBeds() throws Exception {
+		int id = setupTestAdmission(false);
+		Admission foundAdmission = admissionIoOperation.getAdmission(id);
+		String wardCode = foundAdmission.getWard().getCode();
+		assertThat(admissionIoOperation.getUsedWardBeds()).containsEntry(wardCode, 1);
+		admissionIoOperation.setDeleted(id);
+		assertThat(admissionIoOperation.getUsedWardBeds()).doesNotContainKey(wardCode);
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	@Transactional
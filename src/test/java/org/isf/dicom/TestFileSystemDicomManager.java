@@ -25,10 +25,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
 
@@ -179,6 +184,28 @@ class TestFileSystemDicomManager extends OHCoreTestCase {
 		cleanupDicomFiles(dicomFile.getPatId());
 	}
 
+	@Test
+	void testSaveFileContinuesExistingSequence() throws Exception {
+		File sequenceFile = new File("rsc-test/dicom/dicom.storage");
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(sequenceFile))) {
+			oos.writeLong(41);
+		}
+		DicomType dicomType = testDicomType.setup(true);
+		FileDicom dicomFile = testFileDicom.setup(dicomType, true);
+		fileSystemDicomManager.saveFile(dicomFile);
+		FileDicom dicomFile2 = testFileDicom.setup(dicomType, true);
+		dicomFile2.setDicomInstanceUID("TestInstanceUid2");
+		fileSystemDicomManager.saveFile(dicomFile2);
+
+		assertThat(fileSystemDicomManager.getSeriesDetail(0, "TestSeriesNumber")).containsExactly(42L, 43L);
+		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(sequenceFile))) {
+			// a whole block of ids is reserved at once
+			assertThat(ois.readLong()).isGreaterThanOrEqualTo(43L);
+		}
+
+		cleanupDicomFiles(dicomFile.getPatId());
+	}
+
 	@Test
 	void testSaveFileNoSeriesNumber() throws Exception {
 		DicomType dicomType = testDicomType.setup(true);
@@ -214,6 +241,62 @@ class TestFileSystemDicomManager extends OHCoreTestCase {
 		cleanupDicomFiles(dicomFile.getPatId());
 	}
 
+	@Test
+	void testLoadPatientFilesFromIndex() throws Exception {
+		DicomType dicomType = testDicomType.setup(true);
+		FileDicom dicomFile = testFileDicom.setup(dicomType, true);
+		dicomFile.setPatId(3);
+		fileSystemDicomManager.saveFile(dicomFile);
+		FileDicom dicomFile2 = testFileDicom.setup(dicomType, true);
+		dicomFile2.setPatId(3);
+		dicomFile2.setDicomInstanceUID("TestInstanceUid2");
+		fileSystemDicomManager.saveFile(dicomFile2);
+
+		File index = new File("rsc-test/dicom/3/dicom.index");
+		assertThat(index).isFile();
+		assertThat(new File("rsc-test/dicom/3/dicom.index.lock")).isFile();
+		FileDicom[] fileDicoms = fileSystemDicomManager.loadPatientFiles(3);
+		assertThat(fileDicoms).hasSize(1);
+		assertThat(fileDicoms[0].getFrameCount()).isEqualTo(2);
+		assertThat(fileDicoms[0].getDicomInstanceUID()).isEqualTo("TestInstanceUid");
+		assertThat(fileDicoms[0].getDicomThumbnail().length()).isEqualTo(66);
+		Long[] idFiles = fileSystemDicomManager.getSeriesDetail(3, "TestSeriesNumber");
+		assertThat(idFiles).hasSize(2).isSorted();
+
+		// the index is rebuilt from the folders when missing
+		assertThat(index.delete()).isTrue();
+		fileDicoms = fileSystemDicomManager.loadPatientFiles(3);
+		assertThat(fileDicoms).hasSize(1);
+		assertThat(fileDicoms[0].getFrameCount()).isEqualTo(2);
+		assertThat(fileSystemDicomManager.getSeriesDetail(3, "TestSeriesNumber")).containsExactly(idFiles);
+		assertThat(fileSystemDicomManager.exist(dicomFile2)).isTrue();
+
+		cleanupDicomFiles(3);
+	}
+
+	@Test
+	void testSaveFilesIndexesTheBatch() throws Exception {
+		DicomType dicomType = testDicomType.setup(true);
+		FileDicom dicomFile = testFileDicom.setup(dicomType, true);
+		dicomFile.setPatId(3);
+		FileDicom dicomFile2 = testFileDicom.setup(dicomType, true);
+		dicomFile2.setPatId(3);
+		dicomFile2.setDicomInstanceUID("TestInstanceUid2");
+		FileDicom duplicate = testFileDicom.setup(dicomType, true);
+		duplicate.setPatId(3);
+
+		fileSystemDicomManager.saveFiles(List.of(dicomFile, dicomFile2, duplicate));
+
+		assertThat(new File("rsc-test/dicom/3/dicom.index")).isFile();
+		assertThat(fileSystemDicomManager.getSeriesDetail(3, "TestSeriesNumber")).hasSize(2);
+		assertThat(fileSystemDicomManager.exist(dicomFile2)).isTrue();
+		FileDicom[] fileDicoms = fileSystemDicomManager.loadPatientFiles(3);
+		assertThat(fileDicoms).hasSize(1);
+		assertThat(fileDicoms[0].getFrameCount()).isEqualTo(2);
+
+		cleanupDicomFiles(3);
+	}
+
 	@Test
 	void testLoadDetails() throws Exception {
 		FileDicom fileDicom = fileSystemDicomManager.loadDetails(2, 1, "TestSeriesNumber");
@@ -32,6 +32,9 @@ import java.text.ParseException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
@@ -44,6 +47,9 @@ import org.dcm4che3.io.DicomStreamException;
 import org.isf.OHCoreTestCase;
 import org.isf.dicom.manager.AbstractDicomLoader;
 import org.isf.dicom.manager.AbstractThumbnailViewGui;
+import org.isf.dicom.manager.DicomImportPipeline;
+import org.isf.dicom.manager.DicomManagerFactory;
+import org.isf.dicom.manager.DicomManagerInterface;
 import org.isf.dicom.manager.SourceFiles;
 import org.isf.dicom.model.FileDicom;
 import org.isf.dicom.service.DicomIoOperationRepository;
@@ -196,6 +202,46 @@ public class TestSourceFiles extends OHCoreTestCase {
 		}
 	}
 
+	@Test
+	void testDicomImportPipelineImportsDirectory() throws Exception {
+		File directoryFile = getFile("dicomdir");
+		DicomType dicomType = testDicomType.setup(true);
+		FileDicom dicomFile = testFileDicom.setup(dicomType, true);
+		String templateFileName = dicomFile.getFileName();
+		List<Integer> progress = new ArrayList<>();
+		List<File> failures = new ArrayList<>();
+		DicomImportPipeline.Listener listener = new DicomImportPipeline.Listener() {
+
+			@Override
+			public void fileProcessed(int processed, int total) {
+				assertThat(total).isEqualTo(2);
+				progress.add(processed);
+			}
+
+			@Override
+			public void fileFailed(File file, Exception exception) {
+				failures.add(file);
+			}
+		};
+
+		int saved = new DicomImportPipeline(2, 2, 8).importDirectory(dicomFile, directoryFile, PATIENT_ID, listener);
+
+		assertThat(progress).containsExactly(1, 2);
+		assertThat(failures).isEmpty();
+		assertThat(saved).isEqualTo(2);
+		// each file is read into its own copy of the template
+		assertThat(dicomFile.getFileName()).isEqualTo(templateFileName);
+
+		DicomManagerInterface dicomManager = DicomManagerFactory.getManager();
+		List<Long> idFiles = new ArrayList<>();
+		for (FileDicom series : dicomManager.loadPatientFiles(PATIENT_ID)) {
+			idFiles.addAll(Arrays.asList(dicomManager.getSeriesDetail(PATIENT_ID, series.getDicomSeriesNumber())));
+		}
+		assertThat(idFiles).hasSize(2).doesNotHaveDuplicates();
+
+		cleanupDicomFiles(dicomFile.getPatId());
+	}
+
 	@Test
 	void testNewSourceFiles() throws Exception {
 		File file = getFile("case3c_002.dcm");
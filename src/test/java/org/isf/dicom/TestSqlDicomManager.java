@@ -23,6 +23,9 @@ package org.isf.dicom;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Blob;
 import java.text.ParseException;
 
 import org.isf.OHCoreTestCase;
@@ -108,6 +111,22 @@ class TestSqlDicomManager extends OHCoreTestCase {
 		assertThat(result).isNotEmpty();
 	}
 
+	@Test
+	void testSaveFileStreamsDataFromFile() throws Exception {
+		File file = new File(getClass().getResource("case3c_002.dcm").getFile());
+		DicomType dicomType = testDicomType.setup(true);
+		dicomTypeIoOperationRepository.saveAndFlush(dicomType);
+		FileDicom dicomFile = testFileDicom.setup(dicomType, true);
+		dicomFile.setDicomData(file);
+		sqlDicomManager.saveFile(dicomFile);
+		entityManager.flush();
+		entityManager.clear();
+
+		FileDicom fileDicom = sqlDicomManager.loadDetails(dicomFile.getIdFile(), dicomFile.getPatId(), dicomFile.getDicomSeriesNumber());
+		Blob data = fileDicom.getDicomData().getData();
+		assertThat(data.getBytes(1, (int) data.length())).isEqualTo(Files.readAllBytes(file.toPath()));
+	}
+
 	@Test
 	void testExist() throws Exception {
 		DicomType dicomType = testDicomType.setup(true);
@@ -32,6 +32,7 @@ import org.isf.dicom.manager.FileSystemDicomManager;
 import org.isf.dicom.model.FileDicom;
 import org.isf.dicom.service.DicomIoOperationRepository;
 import org.isf.dicom.service.DicomIoOperations;
+import org.isf.dicom.service.DicomThumbnailCache;
 import org.isf.dicomtype.TestDicomType;
 import org.isf.dicomtype.model.DicomType;
 import org.isf.dicomtype.service.DicomTypeIoOperationRepository;
@@ -57,6 +58,8 @@ class Tests extends OHCoreTestCase {
 	@Autowired
 	DicomTypeIoOperationRepository dicomTypeIoOperationRepository;
 	@Autowired
+	DicomThumbnailCache dicomThumbnailCache;
+	@Autowired
 	private ApplicationContext applicationContext;
 
 	@BeforeAll
@@ -126,6 +129,46 @@ class Tests extends OHCoreTestCase {
 		assertThat(dicoms[0].getDicomSeriesDescription()).isEqualTo(foundFileDicom.getDicomSeriesDescription());
 	}
 
+	@Test
+	void testIoLoadPatientFilesCachesThumbnails() throws Exception {
+		dicomThumbnailCache.clear();
+		long code = setupTestFileDicom(false);
+		FileDicom foundFileDicom = dicomIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundFileDicom).isNotNull();
+		byte[] thumbnail = foundFileDicom.getDicomThumbnail().getBytes(1, (int) foundFileDicom.getDicomThumbnail().length());
+
+		FileDicom[] dicoms = dicomIoOperation.loadPatientFiles(foundFileDicom.getPatId());
+		assertThat(dicoms).hasSize(1);
+		assertThat(dicoms[0].getFrameCount()).isEqualTo(1);
+		assertThat(dicoms[0].getDicomThumbnail().getBytes(1, thumbnail.length)).isEqualTo(thumbnail);
+		assertThat(dicomThumbnailCache.get(foundFileDicom.getPatId(), foundFileDicom.getDicomSeriesNumber(), code)).isEqualTo(thumbnail);
+
+		dicoms = dicomIoOperation.loadPatientFiles(foundFileDicom.getPatId());
+		assertThat(dicoms[0].getDicomThumbnail().getBytes(1, thumbnail.length)).isEqualTo(thumbnail);
+
+		dicomIoOperation.deleteSeries(foundFileDicom.getPatId(), foundFileDicom.getDicomSeriesNumber());
+		assertThat(dicomThumbnailCache.getSize()).isZero();
+	}
+
+	@Test
+	void testDicomThumbnailCacheEvictsLeastRecentlyUsed() throws Exception {
+		DicomThumbnailCache cache = new DicomThumbnailCache(10);
+		cache.put(PATIENT_ID, "1", 1, new byte[4]);
+		cache.put(PATIENT_ID, "1", 2, new byte[4]);
+		assertThat(cache.get(PATIENT_ID, "1", 1)).isNotNull();
+		cache.put(PATIENT_ID, "2", 3, new byte[4]);
+
+		assertThat(cache.get(PATIENT_ID, "1", 2)).isNull();
+		assertThat(cache.get(PATIENT_ID, "1", 1)).isNotNull();
+		assertThat(cache.get(PATIENT_ID, "2", 3)).isNotNull();
+		assertThat(cache.getSize()).isEqualTo(8);
+
+		cache.put(PATIENT_ID, "3", 4, new byte[11]);
+		assertThat(cache.get(PATIENT_ID, "3", 4)).isNull();
+		cache.evictSeries(PATIENT_ID, "1");
+		assertThat(cache.getSize()).isEqualTo(4);
+	}
+
 	@Test
 	void testIoExist() throws Exception {
 		long code = setupTestFileDicom(false);
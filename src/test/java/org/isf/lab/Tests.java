@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.exa.TestExam;
 import org.isf.exa.model.Exam;
@@ -57,6 +58,7 @@ import org.isf.utils.pagination.PagedResponse;
 import org.isf.utils.time.TimeTools;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -233,6 +235,22 @@ class Tests extends OHCoreTestCase {
 		assertThat(laboratories.get(0).getCode()).isEqualTo(foundLaboratory.getCode());
 	}
 
+	@Test
+	void testIoGetLaboratoryStatementsBudget() throws Exception {
+		int id = setupTestLaboratory(false);
+		Laboratory foundLaboratory = labIoOperationRepository.findById(id).orElse(null);
+		assertThat(foundLaboratory).isNotNull();
+		Statistics statistics = startStatementsCount();
+
+		List<Laboratory> laboratories = labIoOperation.getLaboratory(null, foundLaboratory.getLabDate(), foundLaboratory.getLabDate());
+
+		assertThat(laboratories).hasSize(1);
+		assertThat(laboratories.get(0).getExam().getExamtype().getDescription()).isNotNull();
+		assertThat(laboratories.get(0).getPatient().getName()).isNotNull();
+		// the laboratories with the exam, the exam type and the patient
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1);
+	}
+
 	@ParameterizedTest(name = "Test with LABEXTENDED={0}")
 	@MethodSource("labExtended")
 	void testIoGetLaboratoryFromPatient(boolean labExtended) throws Exception {
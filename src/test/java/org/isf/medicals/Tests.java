@@ -24,6 +24,7 @@ package org.isf.medicals;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.isf.OHCoreTestCase;
@@ -123,6 +124,30 @@ class Tests extends OHCoreTestCase {
 		assertThat(medical.getCode()).isEqualTo(foundMedical.getCode());
 	}
 
+	@Test
+	void testIoIncrementInAndOutQuantity() throws Exception {
+		int code = setupTestMedical(false);
+		Medical foundMedical = medicalsIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMedical).isNotNull();
+		double inqty = foundMedical.getInqty();
+		double outqty = foundMedical.getOutqty();
+		Integer lock = foundMedical.getLock();
+		LocalDateTime lastModifiedDate = LocalDateTime.of(2000, 1, 1, 0, 0);
+		entityManager.createNativeQuery("UPDATE OH_MEDICALDSR SET MDSR_LAST_MODIFIED_DATE = :date WHERE MDSR_ID = :code")
+						.setParameter("date", lastModifiedDate)
+						.setParameter("code", code)
+						.executeUpdate();
+
+		Medical medical = medicalsIoOperationRepository.incrementInQuantity(code, 10);
+		assertThat(medical.getInqty()).isEqualTo(inqty + 10);
+		assertThat(medical.getLastModifiedDate()).isAfter(lastModifiedDate);
+		medical = medicalsIoOperationRepository.incrementOutQuantity(code, 4);
+		assertThat(medical.getOutqty()).isEqualTo(outqty + 4);
+		assertThat(medical.getLock()).isEqualTo(lock + 2);
+
+		assertThat(medicalsIoOperationRepository.incrementInQuantity(-1, 10)).isNull();
+	}
+
 	@Test
 	void testIoGetMedicals() throws Exception {
 		int code = setupTestMedical(false);
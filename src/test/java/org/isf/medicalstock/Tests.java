@@ -23,6 +23,7 @@ package org.isf.medicalstock;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.lang.reflect.InvocationTargetException;
@@ -32,11 +33,14 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.generaldata.GeneralData;
 import org.isf.medicals.TestMedical;
@@ -45,13 +49,19 @@ import org.isf.medicals.service.MedicalsIoOperationRepository;
 import org.isf.medicalstock.manager.MovBrowserManager;
 import org.isf.medicalstock.manager.MovStockInsertingManager;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotStock;
 import org.isf.medicalstock.model.MedicalStock;
 import org.isf.medicalstock.model.Movement;
+import org.isf.medicalstock.model.MovementMonthlyTotal;
+import org.isf.medicalstock.service.LotCodeGenerator;
 import org.isf.medicalstock.service.LotIoOperationRepository;
+import org.isf.medicalstock.service.LotStockIoOperationRepository;
 import org.isf.medicalstock.service.MedicalStockIoOperationRepository;
 import org.isf.medicalstock.service.MedicalStockIoOperations;
 import org.isf.medicalstock.service.MedicalStockIoOperations.MovementOrder;
 import org.isf.medicalstock.service.MovementIoOperationRepository;
+import org.isf.medicalstock.service.MovementMonthlyTotalIoOperationRepository;
+import org.isf.medicalstock.service.SequenceLotCodeGenerator;
 import org.isf.medicalstockward.model.MedicalWard;
 import org.isf.medicalstockward.model.MovementWard;
 import org.isf.medicalstockward.service.MedicalStockWardIoOperationRepository;
@@ -75,11 +85,13 @@ import org.isf.ward.service.WardIoOperationRepository;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -122,6 +134,12 @@ class Tests extends OHCoreTestCase {
 	SupplierIoOperationRepository supplierIoOperationRepository;
 	@Autowired
 	ApplicationEventPublisher applicationEventPublisher;
+	@Autowired
+	MovementMonthlyTotalIoOperationRepository movementMonthlyTotalIoOperationRepository;
+	@Autowired
+	LotStockIoOperationRepository lotStockIoOperationRepository;
+	@Autowired
+	LotCodeGenerator lotCodeGenerator;
 
 	static Stream<Arguments> automaticlot() {
 		return Stream.of(
@@ -235,6 +253,8 @@ class Tests extends OHCoreTestCase {
 		List<Lot> lots = medicalStockIoOperation.getLotsByMedical(foundMovement.getMedical(), true);
 		assertThat(lots).hasSize(1);
 		assertThat(lots.get(0).getCode()).isEqualTo(foundMovement.getLot().getCode());
+		assertThat(lots.get(0).getMainStoreQuantity()).isEqualTo(foundMovement.getQuantity());
+		assertThat(lots.get(0).getWardsTotalQuantity()).isZero();
 	}
 
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
@@ -247,9 +267,14 @@ class Tests extends OHCoreTestCase {
 
 		foundMovement.setQuantity(0);
 		movementIoOperationRepository.saveAndFlush(foundMovement);
+		medicalStockIoOperation.rebuildLotStocks();
 
 		List<Lot> lots = medicalStockIoOperation.getLotsByMedical(foundMovement.getMedical(), true);
 		assertThat(lots).isEmpty();
+
+		lots = medicalStockIoOperation.getLotsByMedical(foundMovement.getMedical(), false);
+		assertThat(lots).hasSize(1);
+		assertThat(lots.get(0).getMainStoreQuantity()).isZero();
 	}
 
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
@@ -330,6 +355,95 @@ class Tests extends OHCoreTestCase {
 		assertThat(lots).hasSize(1); // first lot should be 0 quantity and stripped by the list
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGetLotsWithMovementsBetween(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		LocalDateTime movementDate = foundMovement.getDate();
+
+		List<Lot> lots = medicalStockIoOperation.getLotsWithMovementsBetween(movementDate, movementDate);
+		assertThat(lots).hasSize(1);
+		assertThat(lots.get(0).getCode()).isEqualTo(foundMovement.getLot().getCode());
+		assertThat(lots.get(0).getMainStoreQuantity()).isEqualTo(foundMovement.getQuantity());
+
+		assertThat(medicalStockIoOperation.getLotsWithMovementsBetween(movementDate.plusDays(1), movementDate.plusDays(2))).isEmpty();
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoMovementMonthlyTotals(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false); // stored without passing through the service
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		Medical medical = foundMovement.getMedical();
+		Lot lot = foundMovement.getLot();
+		assertThat(medicalStockIoOperation.rebuildMovementMonthlyTotals()).isEqualTo(1);
+
+		MovementType dischargeMovementType = testMovementType.setup(false);
+		dischargeMovementType.setCode("discharge");
+		dischargeMovementType.setType("-");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeMovementType);
+		LocalDateTime lastMonth = TimeTools.getNow().minusMonths(1);
+		Movement dischargeMovement = new Movement(medical, dischargeMovementType, null, lot, lastMonth, 3, null, "newReference");
+		medicalStockIoOperation.newMovement(dischargeMovement);
+		medicalStockIoOperation.newMovement(new Movement(medical, dischargeMovementType, null, lot, lastMonth, 3, null, "newReference2"));
+
+		List<MovementMonthlyTotal> monthlyTotals = medicalStockIoOperation.getMovementMonthlyTotals(medical, lastMonth.toLocalDate(),
+			lastMonth.toLocalDate());
+		assertThat(monthlyTotals).extracting(monthlyTotal -> monthlyTotal.getId().getMovementTypeCode()).contains("discharge");
+		MovementMonthlyTotal dischargeTotal = monthlyTotals.stream()
+			.filter(monthlyTotal -> "discharge".equals(monthlyTotal.getId().getMovementTypeCode())).findFirst().get();
+		assertThat(dischargeTotal.getQuantity()).isEqualTo(6);
+		assertThat(dischargeTotal.getMovements()).isEqualTo(2);
+		assertThat(medicalStockIoOperation.getAverageMonthlyConsumptions(TimeTools.getNow().toLocalDate())).containsEntry(medical.getCode(), 0.5);
+
+		medicalStockIoOperation.deleteMovement(dischargeMovement);
+		entityManager.clear();
+		monthlyTotals = medicalStockIoOperation.getMovementMonthlyTotals(medical, lastMonth.toLocalDate(), lastMonth.toLocalDate());
+		assertThat(monthlyTotals).filteredOn(monthlyTotal -> "discharge".equals(monthlyTotal.getId().getMovementTypeCode()))
+			.extracting(MovementMonthlyTotal::getQuantity).containsExactly(3L);
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoLotStocks(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		Medical medical = foundMovement.getMedical();
+		Lot lot = foundMovement.getLot();
+		Ward ward = foundMovement.getWard();
+		int quantity = foundMovement.getQuantity();
+
+		MovementType dischargeMovementType = testMovementType.setup(false);
+		dischargeMovementType.setCode("discharge");
+		dischargeMovementType.setType("-");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeMovementType);
+		List<Movement> movements = new ArrayList<>(2);
+		movements.add(new Movement(medical, dischargeMovementType, ward, lot, TimeTools.getNow(), 2, null, "batchRef"));
+		movements.add(new Movement(medical, dischargeMovementType, ward, lot, TimeTools.getNow(), 3, null, "batchRef"));
+		medicalStockIoOperation.newMultipleDischargingMovements(movements, false);
+
+		assertThat(medicalStockIoOperation.getLotStocks(medical))
+			.extracting(lotStock -> lotStock.getId().getWardCode(), LotStock::getQuantity)
+			.containsExactly(tuple(LotStock.NO_WARD, quantity - 5.0), tuple(ward.getCode(), 5.0));
+		assertThat(medicalStockIoOperation.getStockQuantities(List.of(medical.getCode()))).containsEntry(medical.getCode(), (double) quantity);
+		assertThat(medicalStockIoOperation.getLotsByMedical(medical, false))
+			.extracting(Lot::getMainStoreQuantity, Lot::getWardsTotalQuantity)
+			.containsExactly(tuple(quantity - 5, 5.0));
+		assertThat(medicalStockIoOperation.verifyLotStocks()).isEmpty();
+
+		lotStockIoOperationRepository.insertOrUpdate(medical.getCode(), lot.getCode(), LotStock.NO_WARD, 0);
+		assertThat(medicalStockIoOperation.verifyLotStocks()).extracting(LotStock::getQuantity).containsExactly(quantity - 5.0);
+		assertThat(medicalStockIoOperation.rebuildLotStocks()).isEqualTo(2);
+		assertThat(medicalStockIoOperation.verifyLotStocks()).isEmpty();
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoNewMovementOutGoingLots(boolean in, boolean out, boolean toward) throws Exception {
@@ -466,6 +580,18 @@ class Tests extends OHCoreTestCase {
 		assertThat(result).isTrue();
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGenerateLotCode(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		Set<String> codes = new HashSet<>();
+		for (int i = 0; i < 250; i++) {
+			String code = lotCodeGenerator.generateLotCode();
+			assertThat(code).startsWith(SequenceLotCodeGenerator.PREFIX);
+			assertThat(codes.add(code)).isTrue();
+		}
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoGetMovements(boolean in, boolean out, boolean toward) throws Exception {
@@ -517,6 +643,58 @@ class Tests extends OHCoreTestCase {
 		assertThat(movements.get(0).getCode()).isEqualTo(foundMovement.getCode());
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGetMovementsPageable(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		LocalDateTime fromDate = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+		LocalDateTime toDate = LocalDateTime.of(2000, 3, 3, 0, 0, 0);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		Page<Movement> movements = medicalStockIoOperation.getMovementsPageable(
+			foundMovement.getMedical().getCode(),
+			null,
+			foundMovement.getWard().getCode(),
+			null,
+			fromDate,
+			toDate,
+			null,
+			null,
+			null,
+			null,
+			0,
+			10);
+		assertThat(movements.getTotalElements()).isEqualTo(1);
+		assertThat(movements.getContent().get(0).getCode()).isEqualTo(foundMovement.getCode());
+		assertThat(movements.getContent().get(0).getLot().getCode()).isEqualTo(foundMovement.getLot().getCode());
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGetMovementsAfter(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		List<Movement> firstPage = medicalStockIoOperation.getMovementsAfter(null, null, null, null, null, null, null, null, null, null, null, 10);
+		assertThat(firstPage).hasSize(1);
+		assertThat(firstPage.get(0).getCode()).isEqualTo(foundMovement.getCode());
+		List<Movement> nextPage = medicalStockIoOperation.getMovementsAfter(null, null, null, null, null, null, null, null, null, null,
+			firstPage.get(0), 10);
+		assertThat(nextPage).isEmpty();
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrForEachMovement(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		List<Integer> codes = new ArrayList<>();
+		movBrowserManager.forEachMovement(null, null, null, null, null, null, null, null, null, null, movement -> codes.add(movement.getCode()));
+		assertThat(codes).containsExactly(code);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoGetMovementForPrintDateOrder(boolean in, boolean out, boolean toward) throws Exception {
@@ -637,6 +815,20 @@ class Tests extends OHCoreTestCase {
 		assertThat(movements.get(0).getCode()).isEqualTo(foundMovement.getCode());
 	}
 
+	@Test
+	void testIoGetMovementsByReferenceStatementsBudget() throws Exception {
+		int code = setupTestMovement(false);
+		String refNo = movementIoOperationRepository.findById(code).orElseThrow().getRefNo();
+		Statistics statistics = startStatementsCount();
+
+		List<Movement> movements = medicalStockIoOperation.getMovementsByReference(refNo);
+
+		assertThat(movements).extracting(Movement::getCode).containsExactly(code);
+		assertThat(movements.get(0).getMedical().getDescription()).isNotNull();
+		// the movements with their associations, plus the medical types at most
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrGetMovements(boolean in, boolean out, boolean toward) throws Exception {
@@ -924,6 +1116,42 @@ class Tests extends OHCoreTestCase {
 		GeneralData.AUTOMATICLOT_OUT = automaticlotOut;
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrNewMultipleDischargingMovementsSameMedicalAutomaticLot(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+
+		Medical medical = foundMovement.getMedical();
+		Ward ward = foundMovement.getWard();
+		Lot lot2 = testLot.setup(medical, false); // we are going to create a second lot
+		lot2.setCode("second");
+		medicalStockIoOperation.newMovement(new Movement(medical, foundMovement.getType(), null, lot2, TimeTools.getNow(), 7,
+			foundMovement.getSupplier(), "newReference"));
+
+		MovementType dischargeMovementType = testMovementType.setup(false); // prepare discharge movement
+		dischargeMovementType.setCode("discharge");
+		dischargeMovementType.setType("-");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeMovementType);
+
+		List<Movement> movements = new ArrayList<>(2);
+		movements.add(new Movement(medical, dischargeMovementType, ward, new Lot("", null, null), TimeTools.getNow(), 6, null, "batchRef"));
+		movements.add(new Movement(medical, dischargeMovementType, ward, new Lot("", null, null), TimeTools.getNow(), 9, null, "batchRef"));
+		double outQuantity = medical.getOutqty();
+		GeneralData.AUTOMATICLOT_OUT = true;
+		List<Movement> dischargingMovements = movStockInsertingManager.newMultipleDischargingMovements(movements, "batchRef");
+
+		// the second line is split between the lot left over by the first line and the other lot
+		assertThat(dischargingMovements).hasSize(3);
+		assertThat(dischargingMovements.stream().mapToInt(Movement::getQuantity).sum()).isEqualTo(15);
+		assertThat(medicalsIoOperationRepository.findById(medical.getCode()).get().getOutqty()).isEqualTo(outQuantity + 15);
+		List<Lot> lots = medicalStockIoOperation.getLotsByMedical(medical, true);
+		assertThat(lots.stream().mapToInt(Lot::getMainStoreQuantity).sum()).isEqualTo(2);
+		assertThat(medicalStockWardIoOperationRepository.findQuantityInWardWhereMedicalAndWard(medical.getCode(), ward.getCode())).isEqualTo(15.0);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrStoreLot(boolean in, boolean out, boolean toward) throws Exception {
@@ -1442,7 +1670,8 @@ class Tests extends OHCoreTestCase {
 		int remainQuantity = quantity - quantity / 2; // to overcome tests with not even quantities
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository,
+			movementMonthlyTotalIoOperationRepository, lotStockIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1462,7 +1691,8 @@ class Tests extends OHCoreTestCase {
 		int quantity = movement.getQuantity();
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository,
+			movementMonthlyTotalIoOperationRepository, lotStockIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1478,6 +1708,9 @@ class Tests extends OHCoreTestCase {
 		// new record
 		assertThat(medicalStockList.get(0).getNextMovDate()).isNull();
 		assertThat(medicalStockList.get(0).getDays()).isNull();
+		// latest balance lookups
+		assertThat(medicalStockIoOperationRepository.findFirstByMedicalCodeOrderByBalanceDateDesc(medical.getCode())).contains(medicalStockList.get(0));
+		assertThat(medicalStockIoOperationRepository.findTop2ByMedicalCodeOrderByBalanceDateDesc(medical.getCode())).containsExactlyElementsOf(medicalStockList);
 	}
 
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
@@ -1492,7 +1725,8 @@ class Tests extends OHCoreTestCase {
 		int quantity = 10;
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository,
+			movementMonthlyTotalIoOperationRepository, lotStockIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1512,7 +1746,8 @@ class Tests extends OHCoreTestCase {
 			int quantity = -10;
 
 			MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-				medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+				medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository,
+				movementMonthlyTotalIoOperationRepository, lotStockIoOperationRepository, lotCodeGenerator);
 
 			Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 			method.setAccessible(true);
@@ -1562,6 +1797,7 @@ class Tests extends OHCoreTestCase {
 		lotIoOperationRepository.saveAndFlush(lot);
 		movementIoOperationRepository.saveAndFlush(movement);
 		medicalStockIoOperationRepository.saveAndFlush(medicalStock);
+		medicalStockIoOperation.rebuildLotStocks(); // the movement is stored without passing through the service
 		return movement.getCode();
 	}
 
@@ -23,6 +23,7 @@ package org.isf.medicalstockward;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.data.Offset.offset;
 
 import java.time.LocalDateTime;
@@ -36,8 +37,10 @@ import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperationRepository;
 import org.isf.medicalstock.TestLot;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotStock;
 import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstock.service.LotIoOperationRepository;
+import org.isf.medicalstock.service.MedicalStockIoOperations;
 import org.isf.medicalstock.service.MovementIoOperationRepository;
 import org.isf.medicalstockward.manager.MovWardBrowserManager;
 import org.isf.medicalstockward.model.MedicalWard;
@@ -90,6 +93,8 @@ class Tests extends OHCoreTestCase {
 	@Autowired
 	MedicalStockWardIoOperations medicalStockWardIoOperations;
 	@Autowired
+	MedicalStockIoOperations medicalStockIoOperations;
+	@Autowired
 	MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository;
 	@Autowired
 	MovWardBrowserManager movWardBrowserManager;
@@ -189,6 +194,26 @@ class Tests extends OHCoreTestCase {
 		assertThat(movements.get(0).getCode()).isEqualTo(foundMovement.getCode());
 	}
 
+	@Test
+	void testIoGetWardMovementsPagedAndByPatient() throws Exception {
+		LocalDateTime now = TimeTools.getNow();
+		LocalDateTime fromDate = now.withMonth(1).withDayOfMonth(1);
+		LocalDateTime toDate = now.withMonth(3).withDayOfMonth(3);
+		int code = setupTestMovementWard(false);
+		MovementWard foundMovement = movementWardIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		String wardCode = foundMovement.getWard().getCode();
+		int patientCode = foundMovement.getPatient().getCode();
+
+		List<MovementWard> movements = medicalStockWardIoOperations.getWardMovements(wardCode, fromDate, toDate, patientCode, 0, 10);
+		assertThat(movements).hasSize(1);
+		assertThat(movements.get(0).getCode()).isEqualTo(code);
+		assertThat(movements.get(0).getMedical().getType()).isNotNull();
+
+		assertThat(medicalStockWardIoOperations.getWardMovements(wardCode, fromDate, toDate, patientCode, 1, 10)).isEmpty();
+		assertThat(medicalStockWardIoOperations.getWardMovements(wardCode, fromDate, toDate, patientCode + 1, 0, 10)).isEmpty();
+	}
+
 	@Test
 	void testIoGetCurrentQuantityInWard() throws Exception {
 		MedicalType medicalType = testMedicalType.setup(false);
@@ -293,6 +318,40 @@ class Tests extends OHCoreTestCase {
 		checkMovementWardIntoDb(movementWard.getCode());
 	}
 
+	@Test
+	void testIoNewMovementWardUpdatesLotStocks() throws Exception {
+		MedicalType medicalType = testMedicalType.setup(false);
+		Medical medical = testMedical.setup(medicalType, false);
+		Ward ward = testWard.setup(false);
+		Patient patient = testPatient.setup(false);
+		Lot lot = testLot.setup(medical, false);
+		Ward wardTo = testWard.setup(false);
+		wardTo.setCode("X");
+		medicalTypeIoOperationRepository.saveAndFlush(medicalType);
+		medicalsIoOperationRepository.saveAndFlush(medical);
+		wardIoOperationRepository.saveAndFlush(ward);
+		wardIoOperationRepository.saveAndFlush(wardTo);
+		patientIoOperationRepository.saveAndFlush(patient);
+		lotIoOperationRepository.saveAndFlush(lot);
+		medicalStockWardIoOperations.updateMedicalWard(new MedicalWard(ward, medical, 50.0f, 0.0f, lot));
+
+		// 46 moved to the other ward, then 3 given to a patient there
+		medicalStockWardIoOperations.newMovementWard(testMovementWard.setup(ward, patient, medical, wardTo, null, lot, false));
+		MovementWard movementWard = new MovementWard(wardTo, TimeTools.getNow(), true, patient, 10, 78f, "description", medical, 3.0, "units",
+						null, null, lot);
+		medicalStockWardIoOperations.newMovementWard(movementWard);
+		assertThat(medicalStockIoOperations.getLotStocks(medical))
+						.extracting(lotStock -> lotStock.getId().getWardCode(), LotStock::getQuantity)
+						.containsExactlyInAnyOrder(tuple(ward.getCode(), 4.0), tuple(wardTo.getCode(), 43.0));
+		assertThat(medicalStockIoOperations.verifyLotStocks()).isEmpty();
+
+		entityManager.flush();
+		entityManager.clear();
+		movWardBrowserManager.deleteLastMovementWard(movementWard);
+		assertThat(medicalStockIoOperations.verifyLotStocks()).isEmpty();
+		assertThat(medicalStockIoOperations.getStockQuantities(List.of(medical.getCode()))).containsEntry(medical.getCode(), 50.0);
+	}
+
 	@Test
 	void testIoNewMovementWardWithMedicalWardDefinedNoWardTo() throws Exception {
 		MedicalType medicalType = testMedicalType.setup(false);
@@ -416,6 +475,31 @@ class Tests extends OHCoreTestCase {
 		assertThat(medicalWards).isEmpty();
 	}
 
+	@Test
+	void testIoGetMedicalsWardTotalQuantityAggregatesLots() throws Exception {
+		MedicalWardId code = setupTestMedicalWard(false);
+		MedicalWard medicalWard = medicalStockWardIoOperationRepository.findOneWhereCodeAndMedical(code.getWard().getCode(), code.getMedical().getCode());
+		medicalWard.setIn_quantity(10.0f);
+		medicalWard.setOut_quantity(10.0f);
+		medicalStockWardIoOperationRepository.saveAndFlush(medicalWard);
+		Ward ward = medicalWard.getWard();
+		char wardId = ward.getCode().charAt(0);
+		assertThat(medicalStockWardIoOperations.getMedicalsWardTotalQuantity(wardId)).isEmpty();
+
+		Lot lot = testLot.setup(medicalWard.getMedical(), false);
+		lot.setCode("654321");
+		lotIoOperationRepository.saveAndFlush(lot);
+		medicalStockWardIoOperationRepository.saveAndFlush(new MedicalWard(ward, medicalWard.getMedical(), 5.0f, 2.0f, lot));
+
+		List<MedicalWard> medicalWards = medicalStockWardIoOperations.getMedicalsWardTotalQuantity(wardId);
+		assertThat(medicalWards).hasSize(1);
+		assertThat(medicalWards.get(0).getMedical().getCode()).isEqualTo(medicalWard.getMedical().getCode());
+		assertThat(medicalWards.get(0).getWard().getCode()).isEqualTo(ward.getCode());
+		assertThat(medicalWards.get(0).getQty()).isCloseTo(3.0, offset(0.1));
+		assertThat(medicalStockWardIoOperations.getMedicalsWard(wardId, true)).hasSize(1);
+		assertThat(medicalStockWardIoOperations.getMedicalsWard(wardId, false)).hasSize(2);
+	}
+
 	@Test
 	void testIoGetWardMovementsToPatient() throws Exception {
 		MedicalType medicalType = testMedicalType.setup(false);
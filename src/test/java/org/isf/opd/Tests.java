@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.disease.TestDisease;
 import org.isf.disease.model.Disease;
@@ -58,6 +59,7 @@ import org.isf.ward.model.Ward;
 import org.isf.ward.service.WardIoOperationRepository;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -149,6 +151,19 @@ class Tests extends OHCoreTestCase {
 		assertThat(opds.get(opds.size() - 1).getCode()).isEqualTo(foundOpd.getCode());
 	}
 
+	@Test
+	void testIoGetOpdListStatementsBudget() throws Exception {
+		int code = setupTestOpd(false);
+		Statistics statistics = startStatementsCount();
+
+		List<Opd> opds = opdIoOperation.getOpdList(0);
+
+		assertThat(opds).extracting(Opd::getCode).contains(code);
+		assertThat(opds.get(opds.size() - 1).getNextVisit().getWard()).isNotNull();
+		// the OPDs with their associations, plus the disease types and the patient consensus at most
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+	}
+
 	@ParameterizedTest(name = "Test with OPDEXTENDED={0}")
 	@MethodSource("opdExtended")
 	void testIoGetOpdListPatientId(boolean opdExtended) throws Exception {
@@ -44,6 +44,7 @@ import org.isf.patient.model.Patient;
 import org.isf.patient.model.PatientProfilePhoto;
 import org.isf.patient.service.PatientIoOperationRepository;
 import org.isf.patient.service.PatientIoOperations;
+import org.isf.patient.service.PatientSearchGramIoOperationRepository;
 import org.isf.utils.exception.OHException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.pagination.PagedResponse;
@@ -66,6 +67,8 @@ class Tests extends OHCoreTestCase {
 	PatientIoOperationRepository patientIoOperationRepository;
 	@Autowired
 	PatientBrowserManager patientBrowserManager;
+	@Autowired
+	PatientSearchGramIoOperationRepository patientSearchGramIoOperationRepository;
 
 	@BeforeAll
 	static void setUpClass() {
@@ -190,6 +193,82 @@ class Tests extends OHCoreTestCase {
 		assertThat(patients).isEmpty();
 	}
 
+	@Test
+	void testIoGetPatientsByOneOfFieldsLikeAfterUpdate() throws Exception {
+		// given:
+		Integer code = setupTestPatient(false);
+		Patient foundPatient = patientIoOperation.getPatient(code);
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("zacharias")).isEmpty();
+
+		// when:
+		foundPatient.setFirstName("Zacharias");
+		patientIoOperation.updatePatient(foundPatient);
+
+		// then:
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("chari", 10)).containsExactly(code);
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("zach testsecond", 10)).containsExactly(code);
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("zach unknown", 10)).isEmpty();
+	}
+
+	@Test
+	void testIoGetPatientCodesByOneOfFieldsLikeRanked() throws Exception {
+		// given:
+		Patient containing = testPatient.setup(false);
+		containing.setFirstName("Marianna");
+		Patient starting = testPatient.setup(false);
+		starting.setFirstName("Annabel");
+		Patient equal = testPatient.setup(false);
+		equal.setFirstName("Anna");
+		patientIoOperation.savePatient(equal);
+		patientIoOperation.savePatient(starting);
+		patientIoOperation.savePatient(containing);
+
+		// when:
+		List<Integer> codes = patientIoOperation.getPatientCodesByOneOfFieldsLike("anna", 10);
+
+		// then:
+		assertThat(codes).containsExactly(equal.getCode(), starting.getCode(), containing.getCode());
+	}
+
+	@Test
+	void testIoRebuildSearchIndex() throws Exception {
+		// given:
+		Patient patient = testPatient.setup(false);
+		patient.setFirstName("Zacharias");
+		patientIoOperationRepository.saveAndFlush(patient);
+		assertThat(patientIoOperation.isSearchIndexComplete()).isFalse();
+		// the index is not read until it is complete
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("zacharias", 10)).containsExactly(patient.getCode());
+
+		// when:
+		int indexed = patientIoOperation.rebuildSearchIndex();
+
+		// then:
+		assertThat(indexed).isEqualTo(1);
+		assertThat(patientIoOperation.isSearchIndexComplete()).isTrue();
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("zacharias", 10)).containsExactly(patient.getCode());
+		// saved without updating the index: the complete index is read
+		Patient notIndexed = testPatient.setup(false);
+		notIndexed.setFirstName("Zacharias");
+		patientIoOperationRepository.saveAndFlush(notIndexed);
+		assertThat(patientIoOperation.getPatientCodesByOneOfFieldsLike("zacharias", 10)).containsExactly(patient.getCode());
+	}
+
+	@Test
+	void testIoGetPatientCodesByOneOfFieldsLikeAccents() throws Exception {
+		// given:
+		Patient patient = testPatient.setup(false);
+		patient.setFirstName("José");
+		patient.setSecondName("Jose");
+		patientIoOperation.savePatient(patient);
+
+		// when:
+		List<Integer> codes = patientIoOperation.getPatientCodesByOneOfFieldsLike("JOSÉ", 10);
+
+		// then:
+		assertThat(codes).containsExactly(patient.getCode());
+	}
+
 	@Test
 	void testIoGetPatientFromName() throws Exception {
 		Integer code = setupTestPatient(false);
@@ -766,6 +845,7 @@ class Tests extends OHCoreTestCase {
 	private Integer setupTestPatient(boolean usingSet) throws OHException {
 		Patient patient = testPatient.setup(usingSet);
 		patientIoOperationRepository.saveAndFlush(patient);
+		patientSearchGramIoOperationRepository.indexPatient(patient);
 		return patient.getCode();
 	}
 
@@ -22,13 +22,23 @@
 package org.isf.stat;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import javax.sql.DataSource;
 
@@ -36,7 +46,10 @@ import org.isf.OHCoreTestCase;
 import org.isf.hospital.manager.HospitalBrowsingManager;
 import org.isf.hospital.model.Hospital;
 import org.isf.stat.dto.JasperReportResultDto;
+import org.isf.stat.dto.ReportJobDto;
+import org.isf.stat.manager.AsyncReportManager;
 import org.isf.stat.manager.JasperReportsManager;
+import org.isf.utils.exception.OHReportException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -46,6 +59,8 @@ import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 import org.mockito.stubbing.Answer;
 
+import net.sf.jasperreports.engine.JRDataset;
+import net.sf.jasperreports.engine.JRQuery;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
@@ -68,6 +83,12 @@ class Tests extends OHCoreTestCase {
 	JasperPrint jasperPrint;
 	@Mock
 	Connection connection;
+	@Mock
+	PreparedStatement preparedStatement;
+	@Mock
+	JRDataset jrDataset;
+	@Mock
+	JRQuery jrQuery;
 
 	private AutoCloseable closeable;
 
@@ -167,4 +188,114 @@ class Tests extends OHCoreTestCase {
 			assertThat(jasperReportResultDto.getJasperFile()).containsAnyOf("rpt_base/operationslist.jasper", "rpt_base\\operationslist.jasper");
 		}
 	}
+
+	@Test
+	void testPharmaceuticalStockExcelBindsValuesAndPastesAllowedSortColumn() throws Exception {
+		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class)) {
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource);
+
+			mockedJRLoader.when(() -> JRLoader.loadObject(any(File.class))).thenReturn(jasperReport);
+			when(jasperReport.getMainDataset()).thenReturn(jrDataset);
+			when(jrDataset.getQuery()).thenReturn(jrQuery);
+			when(jrQuery.getText()).thenReturn("select MDSR_DESC from OH_MEDICALDSR where MDSR_CODE like $P{filter} order by $P!{sortBy}");
+			when(dataSource.getConnection()).thenReturn(connection);
+			when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+			when(preparedStatement.executeQuery()).thenThrow(new SQLException("not executed in this test"));
+
+			assertThatThrownBy(() -> jasperReportsManager.getGenericReportPharmaceuticalStockExcel(null, "stock", "stock.xlsx", "A%", null, "MDSR_DESC"))
+							.isInstanceOf(OHReportException.class);
+			verify(connection).prepareStatement(eq("select MDSR_DESC from OH_MEDICALDSR where MDSR_CODE like ? order by MDSR_DESC"), anyInt(), anyInt());
+			verify(preparedStatement).setObject(1, "A%");
+
+			assertThatThrownBy(() -> jasperReportsManager.getGenericReportPharmaceuticalStockExcel(null, "stock", "stock.xlsx", "A%", null,
+							"MDSR_DESC; drop table OH_MEDICALDSR"))
+							.isInstanceOf(OHReportException.class);
+			verify(connection, times(1)).prepareStatement(anyString(), anyInt(), anyInt());
+		}
+	}
+
+	@Test
+	void testCompiledReportIsCached() throws Exception {
+		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
+						MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class);
+						MockedStatic<JasperExportManager> mockedJasperExportManager = mockStatic(JasperExportManager.class)) {
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource);
+
+			when(hospitalBrowsingManager.getHospital()).thenReturn(hospital);
+			when(hospital.getDescription()).thenReturn("Description");
+
+			mockedJRLoader.when(() -> JRLoader.loadObject(any(File.class))).thenReturn(jasperReport);
+			when(dataSource.getConnection()).thenReturn(connection);
+			mockedJasperFillManager.when(() -> JasperFillManager.fillReport(any(JasperReport.class), any(HashMap.class), any(Connection.class)))
+							.thenReturn(jasperPrint);
+			mockedJasperExportManager.when(() -> JasperExportManager.exportReportToPdfFile(any(JasperPrint.class), any(String.class)))
+							.thenAnswer((Answer<Void>) invocation -> null);
+
+			jasperReportsManager.getExamsListPdf();
+			jasperReportsManager.getExamsListPdf();
+
+			mockedJRLoader.verify(() -> JRLoader.loadObject(any(File.class)), times(1));
+			verify(connection, times(2)).close();
+		}
+	}
+
+	@Test
+	void testAsyncReportIsDeduplicatedAndCompleted() throws Exception {
+		AsyncReportManager asyncReportManager = new AsyncReportManager(new JasperReportsManager(hospitalBrowsingManager, dataSource));
+		try {
+			CountDownLatch latch = new CountDownLatch(1);
+			JasperReportResultDto result = new JasperReportResultDto(jasperPrint, "rpt_base/report.jasper", "rpt_base/PDF/report.pdf");
+			ReportJobDto job = asyncReportManager.submitReport("report", List.of(1), () -> {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return result;
+			});
+			assertThat(asyncReportManager.submitReport("report", List.of(1), () -> result)).isSameAs(job);
+
+			ReportJobDto cancelledJob = asyncReportManager.submitReport("report", List.of(2), () -> result);
+			assertThat(cancelledJob.getStatus()).isEqualTo(ReportJobDto.Status.QUEUED);
+			assertThat(asyncReportManager.cancel(cancelledJob.getId())).isTrue();
+			assertThat(asyncReportManager.getJob(cancelledJob.getId()).getStatus()).isEqualTo(ReportJobDto.Status.CANCELLED);
+
+			latch.countDown();
+			for (int i = 0; i < 100 && !job.isFinished(); i++) {
+				Thread.sleep(50);
+			}
+			assertThat(asyncReportManager.getJob(job.getId()).getStatus()).isEqualTo(ReportJobDto.Status.COMPLETED);
+			assertThat(job.getResult()).isSameAs(result);
+		} finally {
+			asyncReportManager.shutdown();
+		}
+	}
+
+	@Test
+	void testAsyncReportWithoutDateIsDeduplicated() throws Exception {
+		AsyncReportManager asyncReportManager = new AsyncReportManager(new JasperReportsManager(hospitalBrowsingManager, dataSource));
+		try {
+			CountDownLatch latch = new CountDownLatch(1);
+			JasperReportResultDto result = new JasperReportResultDto(jasperPrint, "rpt_base/amc.jasper", "rpt_base/PDF/amc.pdf");
+			// keeps the AMC reports queued
+			ReportJobDto blockingJob = asyncReportManager.submitReport("amc", List.of(), () -> {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return result;
+			});
+
+			ReportJobDto job = asyncReportManager.submitPharmaceuticalAMCPdf(null, "amc");
+			assertThat(job.getStatus()).isEqualTo(ReportJobDto.Status.QUEUED);
+			assertThat(asyncReportManager.submitPharmaceuticalAMCPdf(null, "amc")).isSameAs(job);
+
+			assertThat(asyncReportManager.cancel(job.getId())).isTrue();
+			assertThat(asyncReportManager.cancel(blockingJob.getId())).isTrue();
+			latch.countDown();
+		} finally {
+			asyncReportManager.shutdown();
+		}
+	}
 }
@@ -32,6 +32,9 @@ import org.isf.generaldata.GeneralData;
 import org.isf.medicals.TestMedical;
 import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperationRepository;
+import org.isf.medicalstock.model.LotStock;
+import org.isf.medicalstock.model.LotStockId;
+import org.isf.medicalstock.service.LotStockIoOperationRepository;
 import org.isf.medtype.TestMedicalType;
 import org.isf.medtype.model.MedicalType;
 import org.isf.medtype.service.MedicalTypeIoOperationRepository;
@@ -76,6 +79,8 @@ class Tests extends OHCoreTestCase {
 	@Autowired
 	MedicalsIoOperationRepository medicalsIoOperationRepository;
 	@Autowired
+	LotStockIoOperationRepository lotStockIoOperationRepository;
+	@Autowired
 	ApplicationEventPublisher applicationEventPublisher;
 	@Autowired
 	SmsOperations smsOperations;
@@ -322,12 +327,12 @@ class Tests extends OHCoreTestCase {
 	void testMgrGetMedicalsOutOfStockDayActualGreaterThanNeed() throws Exception {
 		MedicalType medicalType = testMedicalType.setup(false);
 		Medical medical = testMedical.setup(medicalType, false);
-		medical.setInqty(10);
-		medical.setOutqty(0);
 		Patient patient = testPatient.setup(false);
 		medicalTypeIoOperationRepository.saveAndFlush(medicalType);
 		medicalsIoOperationRepository.saveAndFlush(medical);
 		patientIoOperationRepository.saveAndFlush(patient);
+		lotStockIoOperationRepository.saveAndFlush(new LotStock(new LotStockId(medical.getCode(), "TestLot", LotStock.NO_WARD), 6));
+		lotStockIoOperationRepository.saveAndFlush(new LotStock(new LotStockId(medical.getCode(), "TestLot", "TW"), 4));
 
 		LocalDateTime[] dates = { TimeTools.getNow(), TimeTools.getNow() };
 		Therapy therapy = new Therapy(1, patient.getCode(), dates, medical, 1.0, "", 1, "TestNote", true, true);
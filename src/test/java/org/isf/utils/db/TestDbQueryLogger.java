@@ -23,8 +23,17 @@ package org.isf.utils.db;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 
@@ -45,6 +54,14 @@ class TestDbQueryLogger {
 	EntityManager entityManagerMock;
 	@Mock
 	ApplicationContext applicationContextMock;
+	@Mock
+	DataSource dataSourceMock;
+	@Mock
+	Connection connectionMock;
+	@Mock
+	PreparedStatement statementMock;
+	@Mock
+	ResultSet resultSetMock;
 
 	private AutoCloseable closeable;
 
@@ -63,10 +80,28 @@ class TestDbQueryLogger {
 	@Test
 	void testNew() throws Exception {
 		when(entityManagerFactoryMock.createEntityManager()).thenReturn(entityManagerMock);
+		when(applicationContextMock.getBean(DataSource.class)).thenReturn(dataSourceMock);
+		when(dataSourceMock.getConnection()).thenThrow(new SQLException("no connection"));
 		DbQueryLogger dbQueryLogger = new DbQueryLogger();
 		assertThat(dbQueryLogger).isNotNull();
 		String query = "SHOW TABLES";
-		assertThatThrownBy(() -> { dbQueryLogger.getData(query, true); })
+		assertThatThrownBy(() -> { dbQueryLogger.getData(query, resultSet -> null); })
 						.isInstanceOf(OHException.class);
 	}
+
+	@Test
+	void testGetDataBindsParametersAndClosesConnection() throws Exception {
+		when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+		when(connectionMock.prepareStatement("SELECT * FROM T WHERE A = ?", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+						.thenReturn(statementMock);
+		when(statementMock.executeQuery()).thenReturn(resultSetMock);
+		DbQueryLogger dbQueryLogger = new DbQueryLogger(dataSourceMock);
+
+		assertThat(dbQueryLogger.getData("SELECT * FROM T WHERE A = ?", List.of("a"), resultSet -> resultSet)).isSameAs(resultSetMock);
+		verify(statementMock).setObject(1, "a");
+		verify(statementMock).setFetchSize(DbQueryLogger.DEFAULT_FETCH_SIZE);
+		verify(resultSetMock).close();
+		verify(statementMock).close();
+		verify(connectionMock).close();
+	}
 }
@@ -0,0 +1,69 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.utils.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLFeatureNotSupportedException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestFileBlob {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testReadsContentFromFile() throws Exception {
+		File file = Files.writeString(tempDir.resolve("data.bin"), "0123456789", StandardCharsets.US_ASCII).toFile();
+		FileBlob fileBlob = new FileBlob(file);
+
+		assertThat(fileBlob.length()).isEqualTo(10);
+		assertThat(fileBlob.getBytes(1, 10)).isEqualTo("0123456789".getBytes(StandardCharsets.US_ASCII));
+		assertThat(fileBlob.getBytes(4, 3)).isEqualTo("345".getBytes(StandardCharsets.US_ASCII));
+		assertThat(fileBlob.getBytes(9, 5)).isEqualTo("89".getBytes(StandardCharsets.US_ASCII));
+		try (InputStream in = fileBlob.getBinaryStream()) {
+			assertThat(in.readAllBytes()).isEqualTo("0123456789".getBytes(StandardCharsets.US_ASCII));
+		}
+		try (InputStream in = fileBlob.getUnderlyingStream().getInputStream()) {
+			assertThat(in.readAllBytes()).isEqualTo("0123456789".getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	@Test
+	void testIsReadOnly() throws Exception {
+		File file = Files.writeString(tempDir.resolve("data.bin"), "0123456789", StandardCharsets.US_ASCII).toFile();
+		FileBlob fileBlob = new FileBlob(file);
+
+		assertThatThrownBy(() -> fileBlob.setBytes(1, new byte[] { 1 }))
+						.isInstanceOf(SQLFeatureNotSupportedException.class);
+		assertThatThrownBy(() -> fileBlob.truncate(0))
+						.isInstanceOf(SQLFeatureNotSupportedException.class);
+	}
+}
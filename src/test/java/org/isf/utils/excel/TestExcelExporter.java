@@ -26,6 +26,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.Date;
 import java.sql.ResultSet;
@@ -33,10 +34,18 @@ import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.swing.JTable;
 
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -170,6 +179,47 @@ class TestExcelExporter {
 		assertThat(Files.exists(outputFile.toPath())).isTrue();
 	}
 
+	@Test
+	void testExportDataStreamToExcel() throws Exception {
+		File outputFile = new File(tempDir, "exportDataStreamToExcel.xlsx");
+		excelExporter = new ExcelExporter(10);
+		excelExporter.exportDataToExcel(IntStream.range(0, 1000).mapToObj(i -> Map.of("id", i)), outputFile);
+		try (Workbook workbook = WorkbookFactory.create(outputFile)) {
+			assertThat(workbook.getSheetAt(0).getLastRowNum()).isEqualTo(1000);
+			assertThat(workbook.getSheetAt(0).getRow(1000).getCell(0).getNumericCellValue()).isEqualTo(999);
+		}
+	}
+
+	@Test
+	void testExportDataStreamToExcelMoreRowsThanASheet() throws Exception {
+		File outputFile = new File(tempDir, "exportDataStreamToExcelMoreRowsThanASheet.xlsx");
+		int lastRowIndex = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+		excelExporter = new ExcelExporter(10);
+		excelExporter.exportDataToExcel(IntStream.range(0, lastRowIndex + 2).mapToObj(i -> Map.of("id", i)), outputFile);
+		// the file is too big to be loaded in a workbook, its second sheet is read as XML instead
+		try (ZipFile zipFile = new ZipFile(outputFile)) {
+			assertThat(zipFile.getEntry("xl/worksheets/sheet3.xml")).isNull();
+			ZipEntry secondSheet = zipFile.getEntry("xl/worksheets/sheet2.xml");
+			assertThat(secondSheet).isNotNull();
+			String secondSheetXml = new String(zipFile.getInputStream(secondSheet).readAllBytes(), StandardCharsets.UTF_8);
+			// the header and the last two rows
+			assertThat(secondSheetXml.split("<row ", -1)).hasSize(4);
+			assertThat(secondSheetXml).contains("<v>" + (lastRowIndex + 1));
+		}
+	}
+
+	@Test
+	void testExportDataToExcelOLDMoreRowsThanASheet() throws Exception {
+		File outputFile = new File(tempDir, "exportDataToExcelOLDMoreRowsThanASheet.xls");
+		List<Map<String, Integer>> data = IntStream.range(0, 70000).mapToObj(i -> Map.of("id", i)).collect(Collectors.toList());
+		excelExporter.exportDataToExcelOLD(data, outputFile);
+		try (Workbook workbook = WorkbookFactory.create(outputFile)) {
+			assertThat(workbook.getNumberOfSheets()).isEqualTo(2);
+			assertThat(workbook.getSheetAt(0).getLastRowNum()).isEqualTo(65535);
+			assertThat(workbook.getSheetAt(1).getLastRowNum()).isEqualTo(70000 - 65535);
+		}
+	}
+
 	class MyCollection implements Collection {
 
 		int rows = 2;